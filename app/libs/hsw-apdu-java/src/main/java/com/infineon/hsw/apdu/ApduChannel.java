@@ -4,13 +4,21 @@
 
 package com.infineon.hsw.apdu;
 
+import com.infineon.hsw.channel.ChannelConstants;
 import com.infineon.hsw.channel.ChannelException;
 import com.infineon.hsw.channel.IChannel;
+import com.infineon.hsw.channel.IChannelPropertyProvider;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Communication channel for APDU structured data packages. The APDUs can be
@@ -34,6 +42,24 @@ public class ApduChannel {
     /** Bit flag to keep original class byte for GET RESPONSE command in T=0 */
     public static final int FLAG_KEEP_CLASS_BYTE = 8;
 
+    /** Default delay in milliseconds before an IDLE event is sent */
+    public static final long DEFAULT_IDLE_DELAY = 200;
+
+    /**
+     * Scheduler shared by all channels for sending delayed BUSY and IDLE
+     * notifications. A single daemon thread guarantees that events are fired
+     * in correct order.
+     */
+    private static final ScheduledExecutorService EVENT_SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ApduChannel events");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     /** Reference of APDU logger instance */
     protected final ApduLogger
             logger = new ApduLogger("com.infineon.hsw.apdu.ApduChannel", null);
@@ -58,22 +84,69 @@ public class ApduChannel {
 
     /** List of all registered state listeners */
     private final List<WeakReference<IStateListener>> statelisteners =
-            new ArrayList<>();
+            new CopyOnWriteArrayList<>();
 
-    /** Timer for sending delayed idle notifications */
-    private final Timer timer = new Timer();
+    /** Delay in milliseconds before an IDLE event is sent or -1 if disabled */
+    private volatile long idleDelay = DEFAULT_IDLE_DELAY;
 
-    /** Timer task for delayed idle notifications */
-    private TimerTask idleTask;
+    /**
+     * Lock making the busy state changes and the idle check atomic, so an
+     * IDLE event cannot be sent for a channel which just became busy again
+     */
+    private final Object stateLock = new Object();
+
+    /**
+     * Time stamp in nanoseconds when the channel became idle, guarded by the
+     * state lock
+     */
+    private long idleSince;
+
+    /**
+     * Marker if a BUSY event has been sent without the matching IDLE event,
+     * guarded by the state lock
+     */
+    private boolean busySignaled;
+
+    /** Marker if the idle check is scheduled */
+    private final AtomicBoolean idleCheckScheduled = new AtomicBoolean();
+
+    /** Reusable task sending the BUSY event */
+    private final Runnable busyNotifier = new Runnable() {
+        @Override
+        public void run() {
+            fireStateChanged(new StateChangeEvent(StateChangeEvent.EV_BUSY));
+        }
+    };
+
+    /** Reusable task checking if the IDLE event has to be sent */
+    private final Runnable idleCheck = new Runnable() {
+        @Override
+        public void run() {
+            checkIdle();
+        }
+    };
 
     /** Marker for idle / busy state */
-    private boolean busy;
+    private volatile boolean busy;
+
+    /** Selection state of the card shared by all command sets */
+    private final ApduSession session = new ApduSession();
+
+    /** Serial executor for asynchronous operations, created on first use */
+    private SerialExecutor executor;
+
+    /**
+     * GET RESPONSE command reused for every 61xx response. CLA and Le are
+     * updated before each use.
+     */
+    private final ApduCommand getResponseCommand;
 
     /**
      * Default constructor to allow derived class different handling of logging.
      */
     public ApduChannel() {
-        // do nothing here
+        getResponseCommand = buildGetResponseCommand();
+        addStateListener(session);
     }
 
     /**
@@ -82,10 +155,50 @@ public class ApduChannel {
      * @param channel synchronous communication channel.
      */
     public ApduChannel(IChannel channel) {
+        getResponseCommand = buildGetResponseCommand();
+        addStateListener(session);
+
         // set channel
         setChannel(channel);
     }
 
+    /**
+     * Helper method that builds the GET RESPONSE command used in T=0.
+     *
+     * @return GET RESPONSE command without Le.
+     */
+    private static ApduCommand buildGetResponseCommand() {
+        try {
+            return new ApduCommand(0x00, 0xC0, 0x00, 0x00, null, 0);
+        } catch (ApduException e) {
+            // cannot happen as no command data is converted
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the selection state of the card, shared by all command sets using
+     * this channel.
+     *
+     * @return session of channel.
+     */
+    public ApduSession getSession() {
+        return session;
+    }
+
+    /**
+     * Get the executor running asynchronous operations of this channel. All
+     * asynchronous command sets using this channel share the executor, so
+     * their operations are executed strictly in order of submission.
+     *
+     * @return serial executor of channel.
+     */
+    public synchronized Executor getExecutor() {
+        if (executor == null)
+            executor = new SerialExecutor();
+        return executor;
+    }
+
     /**
      * Get logger instance.
      *
@@ -145,6 +258,32 @@ public class ApduChannel {
         return channel;
     }
 
+    /**
+     * Returns the maximum APDU length provided by the communication channel
+     * with the property {@link ChannelConstants#MAX_TRANSCEIVE_LENGTH}.
+     *
+     * @return maximum APDU length or 0 if the channel does not provide it.
+     */
+    public int getMaxTransceiveLength() {
+        if (!(channel instanceof IChannelPropertyProvider)) {
+            return 0;
+        }
+        Properties properties =
+                ((IChannelPropertyProvider) channel).getChannelProperties();
+        String value = (properties != null)
+                               ? properties.getProperty(
+                                         ChannelConstants.MAX_TRANSCEIVE_LENGTH)
+                               : null;
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     /**
      * Send APDU command and receive response. If enabled, this method takes
      * care of handling T=0 protocol related APDUs like sending GET RESPONSE
@@ -155,31 +294,199 @@ public class ApduChannel {
      * @throws ApduException in case of communication problems.
      */
     public ApduResponse send(ApduCommand apduCommand) throws ApduException {
-        ApduResponse apduResponse = new ApduResponse("0000", 0);
+        return send(apduCommand, null);
+    }
+
+    /**
+     * Send an APDU command whose byte stream has already been encoded, e.g.
+     * by an {@link ApduScript}. The stream is used for the first transmission
+     * of the command, further transmissions (GET RESPONSE, 6Cxx) are handled
+     * like in {@link #send(ApduCommand)}.
+     *
+     * @param apduCommand APDU command to be sent
+     * @param stream byte stream of the command or null if the command shall
+     *         be encoded.
+     * @return APDU response received from card.
+     * @throws ApduException in case of communication problems.
+     */
+    ApduResponse send(ApduCommand apduCommand, byte[] stream)
+            throws ApduException {
+        ApduResponse apduResponse;
 
         // signal that channel is busy
         setBusy();
 
         try {
-            // use temp variable for command APDU
-            ApduCommand cmd = apduCommand;
-
             if (!logProtocolApdus)
-                logger.info("", cmd);
+                logger.info("", apduCommand);
+
+            apduResponse = exchange(apduCommand, stream, null, 0);
+        } finally {
+            // now we are idle again
+            setIdle();
+        }
 
-            while (true) {
-                byte[] abResponse;
+        return apduResponse;
+    }
+
+    /**
+     * Send a list of APDU commands and receive all responses. The command
+     * streams are handed over to the communication channel as one batch, so
+     * channels which support pipelining need only one round trip for the whole
+     * list. T=0 protocol related APDUs are handled like in
+     * {@link #send(ApduCommand)}.
+     *
+     * @param apduCommands list of APDU commands to be sent.
+     * @param stopOnSw if true, no further command is sent after the first
+     *         response with a status word other than
+     *         {@link ApduResponse#SW_NO_ERROR}.
+     * @return list of APDU responses received from card. If the batch has been
+     *         stopped, the last response of the list is the one with the
+     *         unexpected status word.
+     * @throws ApduException in case of communication problems.
+     */
+    public List<ApduResponse> sendBatch(List<ApduCommand> apduCommands,
+                                        boolean stopOnSw)
+            throws ApduException {
+        List<ApduResponse> apduResponses = new ArrayList<>(apduCommands.size());
 
+        // signal that channel is busy
+        setBusy();
+
+        try {
+            int index = 0;
+            while (index < apduCommands.size()) {
+                // build streams of all commands not sent so far
+                int count = apduCommands.size() - index;
+                byte[][] streams = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    streams[i] = apduCommands.get(index + i).toBytes();
+                }
+
+                // send batch, channel stops on first status word not 9000
+                byte[][] responses;
+                long lExecTime = System.nanoTime();
+                try {
+                    responses = channel.transmitBatch(
+                            streams, ApduResponse.SW_NO_ERROR);
+                } catch (ChannelException e) {
+                    logger.info("ERR: " + e.getMessage());
+                    disconnect();
+                    throw new ApduException(e.getMessage(), e);
+                }
+                lExecTime = System.nanoTime() - lExecTime;
+
+                checkBatchResponses(responses, count);
+
+                // execution time is shared by all commands of the batch
+                lExecTime /= responses.length;
+
+                boolean stopped = false;
+                for (byte[] abResponse : responses) {
+                    ApduResponse apduResponse = exchange(
+                            apduCommands.get(index), null, abResponse,
+                            lExecTime);
+                    apduResponses.add(apduResponse);
+                    index++;
+
+                    if (stopOnSw &&
+                        (apduResponse.getSW() != ApduResponse.SW_NO_ERROR)) {
+                        stopped = true;
+                        break;
+                    }
+                }
+
+                if (stopped)
+                    break;
+            }
+        } finally {
+            // now we are idle again
+            setIdle();
+        }
+
+        return apduResponses;
+    }
+
+    /**
+     * Helper method that checks the responses of a batch against the protocol
+     * of {@link IChannel#transmitBatch(byte[][], int)}: one response per
+     * command, fewer responses only if the last one ended with a status word
+     * other than {@link ApduResponse#SW_NO_ERROR}.
+     *
+     * @param responses responses returned by the channel.
+     * @param count number of commands sent.
+     * @throws ApduException if the responses violate the protocol.
+     */
+    private static void checkBatchResponses(byte[][] responses, int count)
+            throws ApduException {
+        if ((responses == null) || (responses.length == 0))
+            throw new ApduException("No response");
+        if (responses.length > count)
+            throw new ApduException("More responses than commands in batch");
+
+        for (byte[] abResponse : responses) {
+            if (abResponse == null)
+                throw new ApduException("No response");
+        }
+
+        byte[] last = responses[responses.length - 1];
+        if ((responses.length < count) &&
+            ((last.length < 2) ||
+             (ApduUtils.getShort(last, last.length - 2) ==
+              ApduResponse.SW_NO_ERROR)))
+            throw new ApduException("Batch stopped without error status word");
+    }
+
+    /**
+     * Helper method that exchanges a single APDU command with the card. The
+     * response to the first transmission may already be available, e.g. if it
+     * has been received as part of a batch. GET RESPONSE and 6Cxx handling is
+     * done, events for MANAGE CHANNEL, SELECT and error status words are
+     * fired.
+     *
+     * @param apduCommand APDU command to be sent.
+     * @param stream byte stream of the command used for its first
+     *         transmission or null if the command shall be encoded.
+     * @param received response to the first transmission of the command or
+     *         null if the command has not been sent yet.
+     * @param receivedTime execution time of the already received response in
+     *         nanoseconds.
+     * @return APDU response received from card.
+     * @throws ApduException in case of communication problems.
+     */
+    private ApduResponse exchange(ApduCommand apduCommand, byte[] stream,
+                                  byte[] received, long receivedTime)
+            throws ApduException {
+        ApduResponse apduResponse = new ApduResponse("0000", 0);
+
+        // use temp variable for command APDU
+        ApduCommand cmd = apduCommand;
+
+        while (true) {
+            byte[] abResponse;
+            long lExecTime;
+
+            if (received != null) {
+                // response of first command already available, log command
+                // now to keep command and response together
+                logger.info("", cmd);
+                abResponse = received;
+                lExecTime = receivedTime;
+                received = null;
+            } else {
                 // log partial APDU
                 if (logProtocolApdus)
                     logger.info("", cmd);
 
                 // send command and receive response
-                long lExecTime = System.nanoTime();
+                lExecTime = System.nanoTime();
 
                 try {
-                    // send the command
-                    abResponse = channel.transmit(cmd.toBytes());
+                    // send the command, pre-encoded stream is only valid
+                    // for the first transmission
+                    abResponse = channel.transmit(
+                            (stream != null) ? stream : cmd.toBytes());
+                    stream = null;
 
                 } catch (ChannelException e) {
                     logger.info("ERR: " + e.getMessage());
@@ -187,83 +494,83 @@ public class ApduChannel {
                     throw new ApduException(e.getMessage(), e);
                 }
 
-                if (abResponse != null) {
-                    lExecTime = System.nanoTime() - lExecTime;
-
-                    // log partial response
-                    if (logProtocolApdus)
-                        logger.info("",
-                                    new ApduResponse(abResponse, lExecTime));
-
-                    // append data to response
-                    apduResponse.appendResponse(abResponse, lExecTime);
-
-                    // check for 61xx or 6Cxx
-                    if (handleGetResponse && (abResponse.length >= 2)) {
-                        // handle GET RESPONSE
-                        switch (abResponse[abResponse.length - 2]) {
-                        case 0x61: {
-                            ApduCommand origCmd = cmd;
-                            cmd = new ApduCommand("00C00000");
-                            int le = (abResponse[abResponse.length - 1] & 0xFF);
-                            if (le == 0) {
-                                le = 256;
-                            }
-                            cmd.setLe(le);
-                            if (keepClassByte)
-                                cmd.setCLA(origCmd.getCLA());
-                            else if (keepChannelBits)
-                                cmd.setLogChannel(origCmd.getLogChannel());
-                        }
-                            continue;
-
-                        case 0x6C: {
-                            // create new command and adjust Le
-                            cmd = new ApduCommand(cmd.getHeader())
-                                          .setLe((abResponse[abResponse.length -
-                                                             1] &
-                                                  0xFF));
-                        }
-                            continue;
-                        default: {
-                            // do nothing
-                        }
+                lExecTime = System.nanoTime() - lExecTime;
+            }
+
+            if (abResponse != null) {
+                // log partial response
+                if (logProtocolApdus)
+                    logger.info("", new ApduResponse(abResponse, lExecTime));
+
+                // append data to response
+                apduResponse.appendResponse(abResponse, lExecTime);
+
+                // check for 61xx or 6Cxx
+                if (handleGetResponse && (abResponse.length >= 2)) {
+                    // handle GET RESPONSE
+                    switch (abResponse[abResponse.length - 2]) {
+                    case 0x61: {
+                        // command may already be the reused GET RESPONSE
+                        int origCla = cmd.getCLA();
+                        int origLogChannel = cmd.getLogChannel();
+                        cmd = getResponseCommand;
+                        int le = (abResponse[abResponse.length - 1] & 0xFF);
+                        if (le == 0) {
+                            le = 256;
                         }
+                        cmd.setCLA(0x00);
+                        cmd.setLe(le);
+                        if (keepClassByte)
+                            cmd.setCLA(origCla);
+                        else if (keepChannelBits)
+                            cmd.setLogChannel(origLogChannel);
+                    }
+                        continue;
+
+                    case 0x6C: {
+                        // create new command and adjust Le
+                        cmd = new ApduCommand(cmd.getHeader())
+                                      .setLe((abResponse[abResponse.length -
+                                                         1] &
+                                              0xFF));
+                    }
+                        continue;
+                    default: {
+                        // do nothing
+                    }
                     }
-
-                    break;
                 }
-            }
 
-            // log final APDU
-            if (!logProtocolApdus)
-                logger.info("", apduResponse);
-
-            // fire events on successful manage channel or select
-            switch (apduResponse.getSW() & 0xFF00) {
-            case 0x6C00:
-            case 0x9000: {
-                if (isManageChannel(apduCommand)) {
-                    fireStateChanged(new ApduEvent(ApduEvent.EV_MANAGE_CHANNEL,
-                                                   apduCommand, apduResponse));
-                    break;
-                }
-            }
-            // fall through
-            case 0x6100:
-            case 0x6200:
-            case 0x6300: {
-                if (isSelect(apduCommand))
-                    fireStateChanged(new ApduEvent(ApduEvent.EV_SELECT,
-                                                   apduCommand, apduResponse));
-            } break;
-            default: {
-                // Do nothing
+                break;
             }
+        }
+
+        // log final APDU
+        if (!logProtocolApdus)
+            logger.info("", apduResponse);
+
+        // fire events on successful manage channel or select
+        switch (apduResponse.getSW() & 0xFF00) {
+        case 0x6C00:
+        case 0x9000: {
+            if (isManageChannel(apduCommand)) {
+                fireStateChanged(new ApduEvent(ApduEvent.EV_MANAGE_CHANNEL,
+                                               apduCommand, apduResponse));
+                break;
             }
-        } finally {
-            // now we are idle again
-            setIdle();
+        }
+        // fall through
+        case 0x6100:
+        case 0x6200:
+        case 0x6300: {
+            if (isSelect(apduCommand))
+                fireStateChanged(new ApduEvent(ApduEvent.EV_SELECT,
+                                               apduCommand, apduResponse));
+        } break;
+        default: {
+            fireStateChanged(new ApduEvent(ApduEvent.EV_ERROR_STATUS,
+                                           apduCommand, apduResponse));
+        }
         }
 
         return apduResponse;
@@ -271,57 +578,87 @@ public class ApduChannel {
 
     /**
      * Helper method to send an IDLE event to all listeners after a certain
-     * delay.
+     * delay. Only one idle check is scheduled at a time, further calls within
+     * the delay only update the time stamp.
      */
     private void setIdle() {
-        // create new task
-        idleTask = new TimerTask() {
-            @Override
-            public void run() {
-                // remove reference to task
-                idleTask = null;
-
-                // send notification
-                fireStateChanged(
-                        new StateChangeEvent(StateChangeEvent.EV_IDLE));
-            }
-        };
+        // change internal state
+        synchronized (stateLock) {
+            idleSince = System.nanoTime();
+            busy = false;
+        }
 
         // signal that we are idle in a while
-        timer.schedule(idleTask, 200);
-
-        // change internal state
-        busy = false;
+        long delay = idleDelay;
+        if ((delay >= 0) && idleCheckScheduled.compareAndSet(false, true))
+            EVENT_SCHEDULER.schedule(idleCheck, delay, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Helper method to send a BUSY event to all listeners
+     * Helper method to send a BUSY event to all listeners. No event is sent
+     * if the IDLE event of the previous command is still pending.
      */
     private void setBusy() {
+        boolean notify;
+
         // signal we are busy
-        busy = true;
+        synchronized (stateLock) {
+            busy = true;
+            notify = (idleDelay >= 0) && !busySignaled;
+            if (notify)
+                busySignaled = true;
+        }
 
-        // get local copy of reference as reference is cleared in a separate
-        // thread
-        TimerTask busyTask = idleTask;
+        // send notification via scheduler to guarantee that events are fired
+        // in correct order
+        if (notify)
+            EVENT_SCHEDULER.execute(busyNotifier);
+    }
 
-        // stop timer task or send signal
-        if (busyTask != null)
-            busyTask.cancel();
-        else {
-            busyTask = new TimerTask() {
-                @Override
-                public void run() {
-                    // send notification
-                    fireStateChanged(
-                            new StateChangeEvent(StateChangeEvent.EV_BUSY));
-                }
-            };
+    /**
+     * Helper method executed by the scheduler that sends the IDLE event if
+     * the channel has been idle for the configured delay. Otherwise the check
+     * is scheduled again for the remaining time.
+     */
+    private void checkIdle() {
+        idleCheckScheduled.set(false);
+
+        long remaining;
+        synchronized (stateLock) {
+            // setIdle() schedules a new check when the command is done
+            if (busy)
+                return;
+
+            remaining = TimeUnit.MILLISECONDS.toNanos(idleDelay) -
+                        (System.nanoTime() - idleSince);
+            if (remaining <= 0) {
+                if (!busySignaled)
+                    return;
+                busySignaled = false;
+            }
+        }
 
-            // send notification via timer to guarantee that events are fired in
-            // correct order
-            timer.schedule(busyTask, 0);
+        if (remaining > 0) {
+            if (idleCheckScheduled.compareAndSet(false, true))
+                EVENT_SCHEDULER.schedule(idleCheck, remaining,
+                                         TimeUnit.NANOSECONDS);
+            return;
         }
+
+        // send notification, a following BUSY event is queued behind it
+        fireStateChanged(new StateChangeEvent(StateChangeEvent.EV_IDLE));
+    }
+
+    /**
+     * Set the delay after which an IDLE event is sent. BUSY and IDLE events of
+     * commands sent within this delay are coalesced, i.e. listeners get one
+     * BUSY event for the first command and one IDLE event after the last one.
+     *
+     * @param delay delay in milliseconds or a negative value to disable BUSY
+     *         and IDLE events.
+     */
+    public void setIdleDelay(long delay) {
+        idleDelay = (delay < 0) ? -1 : delay;
     }
 
     /**
@@ -460,10 +797,9 @@ public class ApduChannel {
      * @param event reference of event on communication channel.
      */
     public void fireStateChanged(StateChangeEvent event) {
-        Object[] listeners = statelisteners.toArray();
-        for (Object wr : listeners) {
-            @SuppressWarnings("unchecked")
-            IStateListener sl = ((WeakReference<IStateListener>) wr).get();
+        // iteration works on a snapshot of the copy on write list
+        for (WeakReference<IStateListener> wr : statelisteners) {
+            IStateListener sl = wr.get();
 
             if (sl != null)
                 sl.notify(event);
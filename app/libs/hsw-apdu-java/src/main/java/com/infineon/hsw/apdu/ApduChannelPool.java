@@ -0,0 +1,303 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import com.infineon.hsw.channel.ChannelFactory;
+import com.infineon.hsw.channel.IChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of workers driving several readers in parallel, e.g. the slots of a
+ * personalization station. Each reader is bound to one {@link ApduChannel}
+ * and one worker thread, so jobs for the same reader are executed in order of
+ * submission while jobs for different readers run in parallel.
+ * <p>
+ * Each worker has a bounded queue of pending jobs. If the queue is full, the
+ * submitting thread is blocked until the worker has taken a job (back
+ * pressure), so a fast producer cannot queue an unlimited number of jobs.
+ */
+public class ApduChannelPool {
+    /** Default number of pending jobs per reader */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /** Workers mapped by channel name in order of creation */
+    private final Map<String, Worker> workers = new LinkedHashMap<>();
+
+    /**
+     * Worker bound to one reader.
+     */
+    private static final class Worker {
+        /** APDU channel bound to the reader */
+        final ApduChannel apduChannel;
+
+        /** Single thread executor running the jobs of the reader */
+        final ThreadPoolExecutor executor;
+
+        /**
+         * Creates a worker.
+         *
+         * @param name name of the reader.
+         * @param channel communication channel of the reader.
+         * @param queueCapacity maximum number of pending jobs.
+         */
+        Worker(final String name, IChannel channel, int queueCapacity) {
+            apduChannel = new ApduChannel(channel);
+            executor = new ThreadPoolExecutor(
+                    1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(
+                                    runnable, "ApduChannelPool " + name);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    },
+                    new RejectedExecutionHandler() {
+                        @Override
+                        public void rejectedExecution(
+                                Runnable runnable,
+                                ThreadPoolExecutor executor) {
+                            blockUntilQueued(runnable, executor);
+                        }
+                    });
+        }
+
+        /**
+         * Return the number of jobs waiting or in execution.
+         *
+         * @return number of jobs.
+         */
+        int getLoad() {
+            return executor.getQueue().size() + executor.getActiveCount();
+        }
+    }
+
+    /**
+     * Creates a pool for the given channels of the {@link ChannelFactory}.
+     *
+     * @param channelNames names of the readers.
+     * @throws ApduException if a channel cannot be created.
+     */
+    public ApduChannelPool(String[] channelNames) throws ApduException {
+        this(getChannels(channelNames), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a pool for the given channels.
+     *
+     * @param channels communication channels of the readers. Channel names
+     *         have to be unique.
+     * @param queueCapacity maximum number of pending jobs per reader.
+     * @throws ApduException if channel names are not unique.
+     */
+    public ApduChannelPool(List<IChannel> channels, int queueCapacity)
+            throws ApduException {
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException(
+                    "Queue capacity must be larger than 0");
+
+        for (IChannel channel : channels) {
+            String name = channel.getName();
+            if (workers.containsKey(name)) {
+                shutdown();
+                throw new ApduException("Channel name not unique: " + name);
+            }
+            workers.put(name, new Worker(name, channel, queueCapacity));
+        }
+    }
+
+    /**
+     * Return the names of all readers of the pool.
+     *
+     * @return list of reader names in order of creation.
+     */
+    public List<String> getChannelNames() {
+        return Collections.unmodifiableList(new ArrayList<>(workers.keySet()));
+    }
+
+    /**
+     * Return the APDU channel bound to a reader. The channel must only be used
+     * by jobs of this reader.
+     *
+     * @param channelName name of the reader.
+     * @return APDU channel or null if the reader is not part of the pool.
+     */
+    public ApduChannel getApduChannel(String channelName) {
+        Worker worker = workers.get(channelName);
+        return (worker != null) ? worker.apduChannel : null;
+    }
+
+    /**
+     * Submit a job for a specific reader. The method blocks if the queue of
+     * the reader is full.
+     *
+     * @param channelName name of the reader.
+     * @param job job to be executed.
+     * @param <T> type of the job result.
+     * @return future receiving the result of the job.
+     * @throws ApduException if the reader is not part of the pool or the pool
+     *         has been shut down.
+     */
+    public <T> Future<T> submit(String channelName, IApduJob<T> job)
+            throws ApduException {
+        Worker worker = workers.get(channelName);
+        if (worker == null)
+            throw new ApduException("Unknown channel: " + channelName);
+        return submit(worker, job);
+    }
+
+    /**
+     * Submit a job for the reader with the least number of pending jobs. The
+     * method blocks if the queue of this reader is full.
+     *
+     * @param job job to be executed.
+     * @param <T> type of the job result.
+     * @return future receiving the result of the job.
+     * @throws ApduException if the pool is empty or has been shut down.
+     */
+    public <T> Future<T> submit(IApduJob<T> job) throws ApduException {
+        Worker selected = null;
+        int minLoad = Integer.MAX_VALUE;
+        for (Worker worker : workers.values()) {
+            int load = worker.getLoad();
+            if (load < minLoad) {
+                minLoad = load;
+                selected = worker;
+            }
+        }
+
+        if (selected == null)
+            throw new ApduException("No channel available");
+        return submit(selected, job);
+    }
+
+    /**
+     * Submit a job for every reader of the pool. The method blocks as long as
+     * the queue of a reader is full.
+     *
+     * @param job job to be executed.
+     * @param <T> type of the job result.
+     * @return futures receiving the results in order of
+     *         {@link #getChannelNames()}.
+     * @throws ApduException if the pool has been shut down.
+     */
+    public <T> List<Future<T>> submitAll(IApduJob<T> job)
+            throws ApduException {
+        List<Future<T>> futures = new ArrayList<>(workers.size());
+        for (Worker worker : workers.values()) {
+            futures.add(submit(worker, job));
+        }
+        return futures;
+    }
+
+    /**
+     * Stop accepting jobs. Jobs already submitted are still executed.
+     */
+    public void shutdown() {
+        for (Worker worker : workers.values()) {
+            worker.executor.shutdown();
+        }
+    }
+
+    /**
+     * Wait until all jobs have been executed after a shutdown.
+     *
+     * @param timeout maximum time to wait in milliseconds.
+     * @return true if all workers terminated, false if the timeout elapsed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() +
+                        TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (Worker worker : workers.values()) {
+            long remaining = deadline - System.nanoTime();
+            if (!worker.executor.awaitTermination(remaining,
+                                                  TimeUnit.NANOSECONDS))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to submit a job to a worker.
+     *
+     * @param worker worker bound to the reader.
+     * @param job job to be executed.
+     * @param <T> type of the job result.
+     * @return future receiving the result of the job.
+     * @throws ApduException if the pool has been shut down.
+     */
+    private static <T> Future<T> submit(final Worker worker,
+                                        final IApduJob<T> job)
+            throws ApduException {
+        try {
+            return worker.executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return job.run(worker.apduChannel);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ApduException("Channel pool has been shut down", e);
+        }
+    }
+
+    /**
+     * Helper method used as rejection handler. Waits until the queue of the
+     * executor has space for the job.
+     *
+     * @param runnable rejected job.
+     * @param executor executor of the worker.
+     */
+    private static void blockUntilQueued(Runnable runnable,
+                                         ThreadPoolExecutor executor) {
+        if (executor.isShutdown())
+            throw new RejectedExecutionException("Executor shut down");
+
+        try {
+            executor.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+
+        // job may have been queued after a concurrent shutdown
+        if (executor.isShutdown() && executor.remove(runnable))
+            throw new RejectedExecutionException("Executor shut down");
+    }
+
+    /**
+     * Helper method to get channels from the {@link ChannelFactory}.
+     *
+     * @param channelNames names of the readers.
+     * @return list of channels.
+     * @throws ApduException if a channel cannot be created.
+     */
+    private static List<IChannel> getChannels(String[] channelNames)
+            throws ApduException {
+        List<IChannel> channels = new ArrayList<>(channelNames.length);
+        for (String name : channelNames) {
+            IChannel channel = ChannelFactory.getChannel(name);
+            if (channel == null)
+                throw new ApduException("Channel not available: " + name);
+            channels.add(channel);
+        }
+        return channels;
+    }
+}
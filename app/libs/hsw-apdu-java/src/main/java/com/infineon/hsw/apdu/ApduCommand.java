@@ -5,6 +5,8 @@
 package com.infineon.hsw.apdu;
 
 import com.infineon.hsw.utils.Utils;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -328,6 +330,20 @@ public class ApduCommand {
         return header[3];
     }
 
+    /**
+     * Set parameter bytes P1 and P2 from a 16 bit value, e.g. an offset. The
+     * method returns a reference to 'this' to allow simple concatenation of
+     * operations.
+     *
+     * @param p1p2 new P1 (high byte) and P2 (low byte).
+     * @return this
+     */
+    public ApduCommand setP1P2(int p1p2) {
+        header[2] = (byte) (p1p2 >> 8);
+        header[3] = (byte) p1p2;
+        return this;
+    }
+
     /**
      * Set command header of APDU. The method returns a reference
      * to 'this' to allow simple concatenation of operations.
@@ -367,6 +383,27 @@ public class ApduCommand {
         return this;
     }
 
+    /**
+     * Set command data of APDU from a part of a byte array. The internal data
+     * array is reused if it has the requested length, so a command can be
+     * used as template for chunked transfers without allocating new command
+     * data per chunk. The method returns a reference to 'this' to allow simple
+     * concatenation of operations.
+     *
+     * @param data   byte array containing the new command data.
+     * @param offset offset of command data within byte array.
+     * @param length length of command data.
+     * @return reference to 'this' to allow simple concatenation of operations.
+     */
+    public ApduCommand setData(byte[] data, int offset, int length) {
+        if (this.data.length != length)
+            this.data = new byte[length];
+        System.arraycopy(data, offset, this.data, 0, length);
+        if (!checkExtendedApdu())
+            forceExtended = false;
+        return this;
+    }
+
     /**
      * Get command data of APDU.
      *
@@ -466,11 +503,31 @@ public class ApduCommand {
      */
     public byte[] toBytes() {
         byte[] abCommand = new byte[getLength()];
-        int iOffset = 4;
+        encodeInto(ByteBuffer.wrap(abCommand));
+        return abCommand;
+    }
+
+    /**
+     * Writes the byte sequence representation of the APDU command into a
+     * buffer, starting at its current position. The position is advanced by
+     * the length of the command. This allows encoding commands into a reused
+     * buffer without allocating a new array.
+     *
+     * @param buffer buffer receiving the APDU command.
+     * @return number of bytes written.
+     * @throws BufferOverflowException if the remaining space of the
+     *         buffer is less than {@link #getLength()}.
+     */
+    public int encodeInto(ByteBuffer buffer) {
+        int iLength = getLength();
         int iLc = data.length;
 
+        // check space before writing anything
+        if (buffer.remaining() < iLength)
+            throw new BufferOverflowException();
+
         // set first four header bytes
-        System.arraycopy(header, 0, abCommand, 0, 4);
+        buffer.put(header, 0, 4);
 
         // check if short APDU format
         if ((iLc <= 255) && (le <= 256) && !forceExtended) {
@@ -478,39 +535,32 @@ public class ApduCommand {
 
             if (iLc > 0) {
                 // set Lc byte and copy data
-                abCommand[iOffset] = (byte) iLc;
-                iOffset += 1;
-                System.arraycopy(data, 0, abCommand, iOffset, iLc);
-                iOffset += iLc;
+                buffer.put((byte) iLc);
+                buffer.put(data, 0, iLc);
             }
 
             if (le > 0) {
                 // set le byte
-                abCommand[iOffset] = (byte) le;
+                buffer.put((byte) le);
             }
         } else {
             // extended APDU
-            abCommand[iOffset] = 0;
-            iOffset += 1;
+            buffer.put((byte) 0);
             if (iLc > 0) {
                 // set extended Lc and copy data
-                abCommand[iOffset] = (byte) (iLc >> 8);
-                iOffset += 1;
-                abCommand[iOffset] = (byte) iLc;
-                iOffset += 1;
-                System.arraycopy(data, 0, abCommand, iOffset, iLc);
-                iOffset += iLc;
+                buffer.put((byte) (iLc >> 8));
+                buffer.put((byte) iLc);
+                buffer.put(data, 0, iLc);
             }
 
             if (le > 0) {
                 // set extended le
-                abCommand[iOffset] = (byte) (le >> 8);
-                iOffset += 1;
-                abCommand[iOffset] = (byte) le;
+                buffer.put((byte) (le >> 8));
+                buffer.put((byte) le);
             }
         }
 
-        return abCommand;
+        return iLength;
     }
 
     /**
@@ -321,6 +321,26 @@ public class ApduCommandSet implements IStateListener {
         return services.add(service);
     }
 
+    /**
+     * Check if a SELECT command can be skipped because the session of the APDU
+     * channel reports that the application or file is already selected with
+     * the same command data on the logical channel of this command set.
+     *
+     * @param select SELECT command to be checked.
+     * @return true if the SELECT command would not change the card state.
+     */
+    protected boolean isSelectSatisfied(ApduCommand select) {
+        if ((apduChannel == null) ||
+            !apduChannel.getSession().isSelected(getLogChannelNumber(),
+                                                 select))
+            return false;
+
+        // application of this command set may have been selected by another
+        if ((select.getP1() & 0xFF) == 0x04)
+            selected = applicationIdentifier.partialEquals(select.getData());
+        return true;
+    }
+
     /**
      * Select an application by AID. Note that this method does not check the
      * status word.
@@ -12,6 +12,8 @@ public class ApduEvent extends StateChangeEvent {
     public static final int EV_MANAGE_CHANNEL = 0x00010001;
     /** Successful SELECT operation performed */
     public static final int EV_SELECT = 0x00010002;
+    /** Command completed with an error status word */
+    public static final int EV_ERROR_STATUS = 0x00010003;
 
     /** Reference of command APDU triggering event */
     private ApduCommand command;
@@ -0,0 +1,435 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * APDU service collecting statistics of the exchanged APDUs. The service has
+ * to be registered via
+ * {@link ApduCommandSet#registerService(IApduService)} and keeps counters per
+ * command (INS and P1) and per status word: number of APDUs, bytes sent and
+ * received, number of GET RESPONSE commands and a histogram of the execution
+ * times. Recording does not allocate memory except for the first occurrence
+ * of a command or status word.
+ * <p>
+ * Snapshots of the statistics are available via
+ * {@link #getCommandStatistics()}, {@link #getStatusWordStatistics()} and
+ * {@link #toJson()}.
+ */
+public class ApduMetricsService implements IApduService {
+    /** Number of histogram buckets per power of two (as bit shift) */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** Number of histogram buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Number of histogram buckets covering all positive long values */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** Number of possible keys (INS/P1 or status word) */
+    private static final int KEYS = 0x10000;
+
+    /** Counters per command, indexed by INS and P1 */
+    private final Counter[] commandCounters = new Counter[KEYS];
+
+    /** Counters per status word */
+    private final Counter[] swCounters = new Counter[KEYS];
+
+    /** Key of the command sent last or -1 if no command is pending */
+    private int pendingKey = -1;
+
+    /** Length of the command sent last */
+    private int pendingLength;
+
+    /**
+     * Statistics snapshot of a command or status word.
+     */
+    public static final class Statistics {
+        /** INS and P1 of command or status word */
+        private final int key;
+
+        /** Number of APDUs */
+        private final long count;
+
+        /** Number of command bytes sent to card */
+        private final long bytesOut;
+
+        /** Number of response bytes received from card */
+        private final long bytesIn;
+
+        /** Number of GET RESPONSE commands or repeated commands */
+        private final long chained;
+
+        /** Sum of execution times in nanoseconds */
+        private final long totalTime;
+
+        /** Minimum execution time in nanoseconds */
+        private final long minTime;
+
+        /** Maximum execution time in nanoseconds */
+        private final long maxTime;
+
+        /** Histogram of execution times */
+        private final long[] histogram;
+
+        /**
+         * Creates a snapshot of a counter.
+         *
+         * @param key INS and P1 of command or status word.
+         * @param counter counter to be copied.
+         */
+        private Statistics(int key, Counter counter) {
+            this.key = key;
+            count = counter.count;
+            bytesOut = counter.bytesOut;
+            bytesIn = counter.bytesIn;
+            chained = counter.chained;
+            totalTime = counter.totalTime;
+            minTime = counter.minTime;
+            maxTime = counter.maxTime;
+            histogram = counter.histogram.clone();
+        }
+
+        /**
+         * Return the key of the statistics.
+         *
+         * @return INS (high byte) and P1 (low byte) for command statistics or
+         *         the status word for status word statistics.
+         */
+        public int getKey() {
+            return key;
+        }
+
+        /**
+         * Return the number of APDUs.
+         *
+         * @return number of APDUs.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Return the number of command bytes sent to the card.
+         *
+         * @return number of bytes.
+         */
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        /**
+         * Return the number of response bytes (including status words)
+         * received from the card.
+         *
+         * @return number of bytes.
+         */
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        /**
+         * Return the number of additional APDUs sent by the channel to
+         * complete the commands, i.e. GET RESPONSE commands and commands
+         * repeated after 6Cxx.
+         *
+         * @return number of additional APDUs.
+         */
+        public long getChainedCount() {
+            return chained;
+        }
+
+        /**
+         * Return the sum of the execution times.
+         *
+         * @return sum of execution times in nanoseconds.
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        /**
+         * Return the minimum execution time.
+         *
+         * @return minimum execution time in nanoseconds.
+         */
+        public long getMinTime() {
+            return minTime;
+        }
+
+        /**
+         * Return the maximum execution time.
+         *
+         * @return maximum execution time in nanoseconds.
+         */
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        /**
+         * Return a percentile of the execution times. The value is estimated
+         * from a histogram with a relative error of about 6%.
+         *
+         * @param percentile percentile in range 0..100.
+         * @return execution time in nanoseconds or 0 if no APDU has been
+         *         recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            rank = Math.max(1, Math.min(count, rank));
+
+            long sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                sum += histogram[i];
+                if (sum >= rank)
+                    return Math.max(minTime,
+                                    Math.min(maxTime, bucketValue(i)));
+            }
+            return maxTime;
+        }
+    }
+
+    /**
+     * Mutable counter of a command or status word.
+     */
+    private static final class Counter {
+        /** Number of APDUs */
+        long count;
+
+        /** Number of command bytes sent to card */
+        long bytesOut;
+
+        /** Number of response bytes received from card */
+        long bytesIn;
+
+        /** Number of GET RESPONSE commands or repeated commands */
+        long chained;
+
+        /** Sum of execution times in nanoseconds */
+        long totalTime;
+
+        /** Minimum execution time in nanoseconds */
+        long minTime = Long.MAX_VALUE;
+
+        /** Maximum execution time in nanoseconds */
+        long maxTime;
+
+        /** Histogram of execution times */
+        final long[] histogram = new long[BUCKETS];
+
+        /**
+         * Adds an APDU to the counter.
+         *
+         * @param out number of command bytes.
+         * @param in number of response bytes.
+         * @param chain number of additional APDUs.
+         * @param time execution time in nanoseconds.
+         */
+        void add(int out, int in, int chain, long time) {
+            count++;
+            bytesOut += out;
+            bytesIn += in;
+            chained += chain;
+            totalTime += time;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            histogram[bucketIndex(time)]++;
+        }
+    }
+
+    @Override
+    public synchronized ApduCommand processCommand(ApduCommand apdu)
+            throws ApduException {
+        pendingKey = ((apdu.getINS() & 0xFF) << 8) | (apdu.getP1() & 0xFF);
+        pendingLength = apdu.getLength();
+        return apdu;
+    }
+
+    @Override
+    public synchronized ApduResponse processResponse(ApduResponse apdu)
+            throws ApduException {
+        int in = apdu.getDataLength() + 2;
+        int chain = Math.max(0, apdu.getFragmentCount() - 1);
+        long time = Math.max(0, apdu.getExecutionTime());
+
+        if (pendingKey >= 0) {
+            counter(commandCounters, pendingKey)
+                    .add(pendingLength, in, chain, time);
+            counter(swCounters, apdu.getSW())
+                    .add(pendingLength, in, chain, time);
+            pendingKey = -1;
+        } else {
+            counter(swCounters, apdu.getSW()).add(0, in, chain, time);
+        }
+        return apdu;
+    }
+
+    @Override
+    public int getServiceType() {
+        return SVC_LOGGER;
+    }
+
+    /**
+     * Clears all statistics.
+     */
+    public synchronized void reset() {
+        Arrays.fill(commandCounters, null);
+        Arrays.fill(swCounters, null);
+        pendingKey = -1;
+    }
+
+    /**
+     * Return a snapshot of the statistics per command. The key of the
+     * statistics contains INS and P1 of the commands.
+     *
+     * @return list of statistics sorted by total execution time, longest
+     *         first.
+     */
+    public synchronized List<Statistics> getCommandStatistics() {
+        return snapshot(commandCounters);
+    }
+
+    /**
+     * Return a snapshot of the statistics per status word.
+     *
+     * @return list of statistics sorted by total execution time, longest
+     *         first.
+     */
+    public synchronized List<Statistics> getStatusWordStatistics() {
+        return snapshot(swCounters);
+    }
+
+    /**
+     * Return a snapshot of all statistics in JSON format. Times are given in
+     * microseconds.
+     *
+     * @return JSON object with the arrays "commands" and "statusWords".
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"commands\":[");
+        appendJson(json, getCommandStatistics(), true);
+        json.append("],\"statusWords\":[");
+        appendJson(json, getStatusWordStatistics(), false);
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * Helper method to get or create the counter of a key.
+     *
+     * @param counters array of counters.
+     * @param key INS and P1 or status word.
+     * @return counter.
+     */
+    private static Counter counter(Counter[] counters, int key) {
+        Counter counter = counters[key & 0xFFFF];
+        if (counter == null) {
+            counter = new Counter();
+            counters[key & 0xFFFF] = counter;
+        }
+        return counter;
+    }
+
+    /**
+     * Helper method to copy all used counters.
+     *
+     * @param counters array of counters.
+     * @return list of statistics sorted by total execution time.
+     */
+    private static List<Statistics> snapshot(Counter[] counters) {
+        List<Statistics> list = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            if (counters[key] != null)
+                list.add(new Statistics(key, counters[key]));
+        }
+        Collections.sort(list, new Comparator<Statistics>() {
+            @Override
+            public int compare(Statistics s1, Statistics s2) {
+                return Long.compare(s2.totalTime, s1.totalTime);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Helper method to append statistics as JSON objects.
+     *
+     * @param json string builder receiving the JSON objects.
+     * @param list list of statistics.
+     * @param command true for command statistics, false for status word
+     *         statistics.
+     */
+    private static void appendJson(StringBuilder json, List<Statistics> list,
+                                   boolean command) {
+        for (int i = 0; i < list.size(); i++) {
+            Statistics stats = list.get(i);
+            if (i > 0)
+                json.append(',');
+
+            if (command) {
+                json.append(String.format(Locale.ROOT,
+                                          "{\"ins\":\"%02X\",\"p1\":\"%02X\"",
+                                          stats.key >> 8, stats.key & 0xFF));
+            } else {
+                json.append(String.format(Locale.ROOT, "{\"sw\":\"%04X\"",
+                                          stats.key));
+            }
+            json.append(String.format(
+                    Locale.ROOT,
+                    ",\"count\":%d,\"bytesOut\":%d,\"bytesIn\":%d,"
+                            + "\"chained\":%d,\"totalUs\":%.1f,\"minUs\":%.1f,"
+                            + "\"p50Us\":%.1f,\"p90Us\":%.1f,\"p99Us\":%.1f,"
+                            + "\"maxUs\":%.1f}",
+                    stats.count, stats.bytesOut, stats.bytesIn, stats.chained,
+                    stats.totalTime / 1000.0, stats.minTime / 1000.0,
+                    stats.getPercentile(50) / 1000.0,
+                    stats.getPercentile(90) / 1000.0,
+                    stats.getPercentile(99) / 1000.0, stats.maxTime / 1000.0));
+        }
+    }
+
+    /**
+     * Helper method to determine the histogram bucket of a value. Values are
+     * grouped in {@link #SUB_BUCKETS} buckets per power of two.
+     *
+     * @param value positive value.
+     * @return index of bucket.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) &
+                        (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Helper method to determine the value represented by a histogram bucket.
+     *
+     * @param index index of bucket.
+     * @return mid value of bucket.
+     */
+    private static long bucketValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (SUB_BUCKETS + (index % SUB_BUCKETS)) * width;
+        return lower + width / 2;
+    }
+}
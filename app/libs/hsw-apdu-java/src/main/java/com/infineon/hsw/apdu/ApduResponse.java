@@ -5,6 +5,8 @@
 package com.infineon.hsw.apdu;
 
 import com.infineon.hsw.utils.Utils;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -29,12 +31,27 @@ public class ApduResponse {
     /** Status word indicating condition of use not satisfied */
     public static final int SW_CONDITIONS_NOT_SATISFIED = 0x6985;
 
-    /** byte array containing response data and status word */
+    /**
+     * byte array containing response data and status word. The array may be
+     * larger than the response to allow appending without reallocation.
+     */
     private byte[] abResponse;
 
+    /** Length of response data and status word within byte array */
+    private int length;
+
     /** Command execution time */
     private long lExecTime;
 
+    /** Number of response fragments appended to this response */
+    private int fragments;
+
+    /**
+     * True if the byte array is shared with another response or the creator,
+     * it is copied before the first modification.
+     */
+    private boolean shared;
+
     /**
      * Build a response from a byte data stream.
      *
@@ -48,13 +65,65 @@ public class ApduResponse {
         }
 
         abResponse = response.clone();
+        length = abResponse.length;
         lExecTime = execTime;
 
         // check if valid response
-        if (abResponse.length < 2) {
+        if (length < 2) {
             // build dummy response
             abResponse = new byte[2];
+            length = 2;
+        }
+    }
+
+    /**
+     * Build a response sharing the internal buffer of another response. This
+     * allows subclasses to wrap a response without copying the response data.
+     * Appending to either response copies the buffer first, so both
+     * responses stay independent.
+     *
+     * @param response response to be wrapped.
+     * @throws ApduException if response is null.
+     */
+    protected ApduResponse(ApduResponse response) throws ApduException {
+        if (response == null) {
+            throw new ApduException("No response");
+        }
+
+        abResponse = response.abResponse;
+        length = response.length;
+        lExecTime = response.lExecTime;
+        fragments = response.fragments;
+        shared = true;
+        response.shared = true;
+    }
+
+    /**
+     * Build a response sharing a byte array which contains response data and
+     * status word. This allows subclasses to create a response from an
+     * assembled buffer without copying the response data. The array must not
+     * be modified by the creator afterwards, appending copies the buffer
+     * first.
+     *
+     * @param response byte array containing response data and status word.
+     * @param length   length of response data and status word within the
+     *         array.
+     * @param execTime command execution time in nanoseconds
+     * @throws ApduException if response is null or length is invalid.
+     */
+    protected ApduResponse(byte[] response, int length, long execTime)
+            throws ApduException {
+        if (response == null) {
+            throw new ApduException("No response");
+        }
+        if ((length < 2) || (length > response.length)) {
+            throw new ApduException("Invalid response length");
         }
+
+        abResponse = response;
+        this.length = length;
+        lExecTime = execTime;
+        shared = true;
     }
 
     /**
@@ -89,7 +158,14 @@ public class ApduResponse {
      */
     public ApduResponse appendResponse(ApduResponse response, long execTime)
             throws ApduException {
-        return appendResponse(ApduUtils.toBytes(response), execTime);
+        if (response == null) {
+            throw new ApduException("No response");
+        }
+
+        // append directly from internal buffer of other response
+        lExecTime += execTime;
+        append(response.abResponse, response.length);
+        return this;
     }
 
     /**
@@ -112,23 +188,37 @@ public class ApduResponse {
      */
     public ApduResponse appendResponse(byte[] response, long execTime)
             throws ApduException {
-        // build byte array from new response and determine byte length
-        byte[] newResponse = response;
-        int length = newResponse.length;
-
         // add execution time
         lExecTime += execTime;
 
-        if (length >= 2) {
-            // append response data and overwrite status word of existing
-            // response
-            abResponse = Arrays.copyOf(abResponse,
-                                       abResponse.length + length - 2);
-            System.arraycopy(newResponse, 0, abResponse,
-                             abResponse.length - length, length);
+        append(response, response.length);
+        return this;
+    }
+
+    /**
+     * Helper method that appends a response fragment and overwrites the status
+     * word of the existing response. The buffer grows by doubling its size, so
+     * the costs for appending many fragments are linear in the total length.
+     * A shared buffer is copied before it is modified.
+     *
+     * @param response byte array containing response fragment.
+     * @param responseLength length of response fragment within byte array.
+     */
+    private void append(byte[] response, int responseLength) {
+        if (responseLength < 2) {
+            return;
         }
 
-        return this;
+        int newLength = length + responseLength - 2;
+        if (shared || (newLength > abResponse.length)) {
+            abResponse = Arrays.copyOf(abResponse,
+                                       Math.max(newLength,
+                                                2 * abResponse.length));
+            shared = false;
+        }
+        System.arraycopy(response, 0, abResponse, length - 2, responseLength);
+        length = newLength;
+        fragments++;
     }
 
     /**
@@ -181,10 +271,10 @@ public class ApduResponse {
      *                       value.
      */
     public ApduResponse checkDataLength(int length) throws ApduException {
-        if (length != abResponse.length - 2) {
+        if (length != this.length - 2) {
             throw new ApduException(
                     String.format("Unexpected response data length %d",
-                                  abResponse.length - 2));
+                                  this.length - 2));
         }
 
         return this;
@@ -196,7 +286,7 @@ public class ApduResponse {
      * @return status word as integer (always positive value).
      */
     public int getSW() {
-        return ApduUtils.getShort(abResponse, abResponse.length - 2);
+        return ApduUtils.getShort(abResponse, length - 2);
     }
 
     /**
@@ -205,7 +295,32 @@ public class ApduResponse {
      * @return array containing the response data.
      */
     public byte[] getData() {
-        return Arrays.copyOf(abResponse, abResponse.length - 2);
+        return Arrays.copyOf(abResponse, length - 2);
+    }
+
+    /**
+     * Get a read-only view of the response data without copying. The view
+     * is only valid until further data is appended to this response.
+     *
+     * @return read-only buffer with position 0 and limit set to the length of
+     *         the response data.
+     */
+    public ByteBuffer getDataBuffer() {
+        return ByteBuffer.wrap(abResponse, 0, length - 2)
+                .slice()
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * Get a read-only view of the status word without copying. The view is
+     * only valid until further data is appended to this response.
+     *
+     * @return read-only buffer containing the two status word bytes.
+     */
+    public ByteBuffer getSWBuffer() {
+        return ByteBuffer.wrap(abResponse, length - 2, 2)
+                .slice()
+                .asReadOnlyBuffer();
     }
 
     /**
@@ -214,7 +329,7 @@ public class ApduResponse {
      * @return length of response data.
      */
     public int getDataLength() {
-        return abResponse.length - 2;
+        return length - 2;
     }
 
     /**
@@ -223,12 +338,39 @@ public class ApduResponse {
      * @return byte array containing response and status word.
      */
     public byte[] toBytes() {
-        return abResponse.clone();
+        return Arrays.copyOf(abResponse, length);
+    }
+
+    /**
+     * Writes response data and status word into a buffer, starting at its
+     * current position. This allows recording a response without copying it
+     * into a new array first.
+     *
+     * @param buffer buffer receiving the response.
+     * @return number of bytes written.
+     * @throws BufferOverflowException if the remaining space of the buffer
+     *         is less than the response length.
+     */
+    /* default */ int encodeInto(ByteBuffer buffer) {
+        buffer.put(abResponse, 0, length);
+        return length;
     }
 
     @Override
     public String toString() {
-        return Utils.toHexString(abResponse);
+        return Utils.toHexString(toBytes());
+    }
+
+    /**
+     * Return the number of response fragments appended to this response. For
+     * responses returned by {@link ApduChannel#send(ApduCommand)} this is the
+     * number of APDUs exchanged with the card, i.e. one plus the number of
+     * GET RESPONSE commands or repeated commands after 6Cxx.
+     *
+     * @return number of appended response fragments.
+     */
+    public int getFragmentCount() {
+        return fragments;
     }
 
     /**
@@ -0,0 +1,196 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Immutable sequence of pre-encoded APDU commands together with the expected
+ * status word of each command. A script is recorded once with an
+ * {@link ApduScriptRecorder}, e.g. while personalizing the first of many
+ * identical cards, and replayed for each further card with
+ * {@link #replay(ApduChannel)}. The replay sends the stored byte streams as
+ * they are, no command is built or encoded again.
+ * <p>
+ * Each status word is checked against its expected value after applying a
+ * mask, i.e. a response matches if {@code (SW & mask) == expected}. Scripts
+ * can be stored in a compact binary format with {@link #writeTo(OutputStream)}
+ * and loaded again with {@link #readFrom(InputStream)}.
+ */
+public final class ApduScript {
+    /** Magic value at the beginning of a script file ('APSC') */
+    public static final int MAGIC = 0x41505343;
+
+    /** Version of the script file format */
+    public static final int VERSION = 1;
+
+    /** Maximum length of an encoded APDU command (extended length, case 4) */
+    public static final int MAX_COMMAND_LENGTH = 4 + 3 + 0xFFFF + 2;
+
+    /** Maximum number of commands accepted when reading a script */
+    public static final int MAX_COMMAND_COUNT = 0xFFFF;
+
+    /** APDU commands, used for events and GET RESPONSE handling */
+    private final ApduCommand[] commands;
+
+    /** Byte streams of the APDU commands */
+    private final byte[][] streams;
+
+    /** Expected status word per command */
+    private final int[] expectedSWs;
+
+    /** Mask applied to the received status word per command */
+    private final int[] swMasks;
+
+    /**
+     * Creates a script. The arrays are taken over without copying and must not
+     * be modified afterwards.
+     *
+     * @param streams byte streams of the APDU commands.
+     * @param expectedSWs expected status word per command.
+     * @param swMasks mask applied to the received status word per command.
+     * @throws ApduException if a byte stream is no valid APDU command.
+     */
+    ApduScript(byte[][] streams, int[] expectedSWs, int[] swMasks)
+            throws ApduException {
+        this.streams = streams;
+        this.expectedSWs = expectedSWs;
+        this.swMasks = swMasks;
+
+        commands = new ApduCommand[streams.length];
+        for (int i = 0; i < streams.length; i++) {
+            commands[i] = new ApduCommand(streams[i]);
+            expectedSWs[i] &= swMasks[i];
+        }
+    }
+
+    /**
+     * Return the number of APDU commands of the script.
+     *
+     * @return number of commands.
+     */
+    public int size() {
+        return streams.length;
+    }
+
+    /**
+     * Return the byte stream of an APDU command.
+     *
+     * @param index index of the command.
+     * @return copy of the byte stream.
+     */
+    public byte[] getCommand(int index) {
+        return streams[index].clone();
+    }
+
+    /**
+     * Return the expected status word of an APDU command.
+     *
+     * @param index index of the command.
+     * @return expected status word, already masked.
+     */
+    public int getExpectedSW(int index) {
+        return expectedSWs[index];
+    }
+
+    /**
+     * Return the mask applied to the status word of an APDU command.
+     *
+     * @param index index of the command.
+     * @return status word mask.
+     */
+    public int getSWMask(int index) {
+        return swMasks[index];
+    }
+
+    /**
+     * Send all APDU commands of the script to the card. The replay stops with
+     * an exception at the first response not matching its expected status
+     * word.
+     *
+     * @param apduChannel channel connected to the card.
+     * @return response to the last command or null if the script is empty.
+     * @throws ApduException in case of communication problems or an unexpected
+     *         status word.
+     */
+    public ApduResponse replay(ApduChannel apduChannel) throws ApduException {
+        ApduResponse response = null;
+        for (int i = 0; i < streams.length; i++) {
+            response = apduChannel.send(commands[i], streams[i]);
+            if ((response.getSW() & swMasks[i]) != expectedSWs[i]) {
+                throw new ApduException(
+                        String.format("Unexpected status word %04X at "
+                                              + "script command %d",
+                                      response.getSW(), i));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Write the script in binary format. The format consists of magic and
+     * version followed by the number of commands and per command the expected
+     * status word, the status word mask, the command length and the command
+     * byte stream.
+     *
+     * @param out stream receiving the script. The stream is not closed.
+     * @throws IOException if writing fails or the script contains more than
+     *         {@link #MAX_COMMAND_COUNT} commands.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (streams.length > MAX_COMMAND_COUNT)
+            throw new IOException("Too many script commands");
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(streams.length);
+        for (int i = 0; i < streams.length; i++) {
+            data.writeShort(expectedSWs[i]);
+            data.writeShort(swMasks[i]);
+            data.writeInt(streams[i].length);
+            data.write(streams[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read a script written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in stream containing the script. The stream is not closed.
+     * @return script.
+     * @throws IOException if reading fails or the number of commands or a
+     *         command length is out of range.
+     * @throws ApduException if the stream contains no valid script.
+     */
+    public static ApduScript readFrom(InputStream in)
+            throws IOException, ApduException {
+        DataInputStream data = new DataInputStream(in);
+        if ((data.readInt() != MAGIC) || (data.readInt() != VERSION))
+            throw new ApduException("Unsupported script format");
+
+        int count = data.readInt();
+        if ((count < 0) || (count > MAX_COMMAND_COUNT))
+            throw new IOException("Invalid number of script commands");
+
+        byte[][] streams = new byte[count][];
+        int[] expectedSWs = new int[count];
+        int[] swMasks = new int[count];
+        for (int i = 0; i < count; i++) {
+            expectedSWs[i] = data.readUnsignedShort();
+            swMasks[i] = data.readUnsignedShort();
+            int length = data.readInt();
+            if ((length < 4) || (length > MAX_COMMAND_LENGTH))
+                throw new IOException("Invalid script command length");
+            streams[i] = new byte[length];
+            data.readFully(streams[i]);
+        }
+        return new ApduScript(streams, expectedSWs, swMasks);
+    }
+}
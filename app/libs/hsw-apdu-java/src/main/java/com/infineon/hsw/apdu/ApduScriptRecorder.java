@@ -0,0 +1,136 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import com.infineon.hsw.channel.IChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * APDU channel recording all exchanged APDU commands into an
+ * {@link ApduScript}. The recorder is used like any other APDU channel, e.g.
+ * command sets are created on top of it and perform a personalization with a
+ * real card. Afterwards {@link #getScript()} returns the commands as
+ * pre-encoded script which can be replayed to further cards without running
+ * the command sets again.
+ * <p>
+ * The expected status word of each command is the status word received while
+ * recording, checked with the status word mask set by
+ * {@link #setSWMask(int)}. Only commands actually sent are recorded, e.g.
+ * SELECT commands skipped by the {@link ApduSession} are not part of the
+ * script. The recorded flow must not depend on card individual data.
+ */
+public class ApduScriptRecorder extends ApduChannel {
+    /** Byte streams of the recorded commands */
+    private final List<byte[]> streams = new ArrayList<>();
+
+    /** Expected status words of the recorded commands */
+    private final List<Integer> expectedSWs = new ArrayList<>();
+
+    /** Status word masks of the recorded commands */
+    private final List<Integer> swMasks = new ArrayList<>();
+
+    /** Status word mask applied to further recorded commands */
+    private int swMask = 0xFFFF;
+
+    /**
+     * Create a recorder on top of a communication channel.
+     *
+     * @param channel synchronous communication channel.
+     */
+    public ApduScriptRecorder(IChannel channel) {
+        super(channel);
+    }
+
+    /**
+     * Set the status word mask applied to further recorded commands, e.g.
+     * 0xFF00 to accept any warning 63xx if 63xx has been received while
+     * recording.
+     *
+     * @param mask status word mask. Note that only the lower 16 bits are
+     *         evaluated.
+     */
+    public synchronized void setSWMask(int mask) {
+        swMask = mask & 0xFFFF;
+    }
+
+    /**
+     * Return the status word mask applied to further recorded commands.
+     *
+     * @return status word mask.
+     */
+    public synchronized int getSWMask() {
+        return swMask;
+    }
+
+    @Override
+    public ApduResponse send(ApduCommand apduCommand) throws ApduException {
+        ApduResponse apduResponse = super.send(apduCommand);
+        record(apduCommand, apduResponse);
+        return apduResponse;
+    }
+
+    @Override
+    public List<ApduResponse> sendBatch(List<ApduCommand> apduCommands,
+                                        boolean stopOnSw)
+            throws ApduException {
+        List<ApduResponse> apduResponses = super.sendBatch(apduCommands,
+                                                           stopOnSw);
+        for (int i = 0; i < apduResponses.size(); i++) {
+            record(apduCommands.get(i), apduResponses.get(i));
+        }
+        return apduResponses;
+    }
+
+    /**
+     * Return the number of recorded commands.
+     *
+     * @return number of commands.
+     */
+    public synchronized int size() {
+        return streams.size();
+    }
+
+    /**
+     * Discard all recorded commands.
+     */
+    public synchronized void clear() {
+        streams.clear();
+        expectedSWs.clear();
+        swMasks.clear();
+    }
+
+    /**
+     * Build a script of all commands recorded so far. Recording continues
+     * afterwards.
+     *
+     * @return immutable script.
+     * @throws ApduException if a recorded command cannot be parsed again.
+     */
+    public synchronized ApduScript getScript() throws ApduException {
+        int count = streams.size();
+        byte[][] commands = streams.toArray(new byte[count][]);
+        int[] expected = new int[count];
+        int[] masks = new int[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = expectedSWs.get(i);
+            masks[i] = swMasks.get(i);
+        }
+        return new ApduScript(commands, expected, masks);
+    }
+
+    /**
+     * Helper method to record a command and the status word of its response.
+     *
+     * @param apduCommand APDU command sent.
+     * @param apduResponse APDU response received.
+     */
+    private synchronized void record(ApduCommand apduCommand,
+                                     ApduResponse apduResponse) {
+        streams.add(apduCommand.toBytes());
+        expectedSWs.add(apduResponse.getSW());
+        swMasks.add(swMask);
+    }
+}
@@ -0,0 +1,273 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Selection state of the card behind an {@link ApduChannel}. The session is
+ * shared by all command sets using the same APDU channel and keeps per logical
+ * channel the AID of the selected application and the SELECT command of the
+ * selected elementary file including its command data, e.g. passwords used to
+ * authenticate.
+ * <p>
+ * The state is updated from the events of the APDU channel: successful SELECT
+ * commands set the state, connect, disconnect, reset, a channel change and
+ * MANAGE CHANNEL reset it. Any other error status word clears the selected
+ * elementary file of the logical channel, as a failed command may have
+ * invalidated the security state. Command sets use
+ * {@link #isSelected(int, ApduCommand)} to skip SELECT commands which would
+ * not change the state of the card.
+ * <p>
+ * Command sets may attach further card state as attributes, e.g. cached
+ * configuration data. Attributes are dropped whenever the whole state is
+ * reset, i.e. on connect, disconnect, reset and channel change.
+ */
+public class ApduSession implements IStateListener {
+    /** Number of logical channels (basic and extended) */
+    public static final int MAX_LOG_CHANNELS = 20;
+
+    /** P1 of SELECT by AID */
+    private static final int P1_SELECT_BY_AID = 0x04;
+
+    /** AID of selected application per logical channel or null if unknown */
+    private final byte[][] selectedAids = new byte[MAX_LOG_CHANNELS][];
+
+    /**
+     * P1, P2 and command data of the SELECT command of the selected elementary
+     * file per logical channel or null if unknown
+     */
+    private final byte[][] selectedFiles = new byte[MAX_LOG_CHANNELS][];
+
+    /** Attributes attached by command sets */
+    private final Map<Object, Object> attributes = new HashMap<>();
+
+    /** Marker if SELECT commands may be skipped */
+    private volatile boolean enabled = true;
+
+    /**
+     * Enable or disable skipping of SELECT commands. The state is tracked in
+     * both cases.
+     *
+     * @param enabled true if redundant SELECT commands may be skipped.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Return if skipping of SELECT commands is enabled.
+     *
+     * @return true if redundant SELECT commands may be skipped.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Check if a SELECT command would not change the state of the card, i.e.
+     * the same application or the same elementary file with the same command
+     * data is already selected on the logical channel.
+     *
+     * @param logChannel number of logical channel.
+     * @param select SELECT command to be checked.
+     * @return true if the command can be skipped, false if skipping is
+     *         disabled or the command has to be sent.
+     */
+    public synchronized boolean isSelected(int logChannel,
+                                           ApduCommand select) {
+        if (!enabled || !isValidChannel(logChannel))
+            return false;
+
+        if ((select.getP1() & 0xFF) == P1_SELECT_BY_AID) {
+            return isFirstOccurrence(select) &&
+                   (selectedAids[logChannel] != null) &&
+                   Arrays.equals(selectedAids[logChannel], select.getData());
+        }
+        return (selectedFiles[logChannel] != null) &&
+               Arrays.equals(selectedFiles[logChannel], fileKey(select));
+    }
+
+    /**
+     * Return the AID of the application selected on a logical channel.
+     *
+     * @param logChannel number of logical channel.
+     * @return AID or null if no application is known to be selected.
+     */
+    public synchronized byte[] getSelectedAID(int logChannel) {
+        if (!isValidChannel(logChannel) || (selectedAids[logChannel] == null))
+            return null;
+        return selectedAids[logChannel].clone();
+    }
+
+    /**
+     * Return an attribute attached to the session.
+     *
+     * @param key key of the attribute.
+     * @return value of the attribute or null if not set.
+     */
+    public synchronized Object getAttribute(Object key) {
+        return attributes.get(key);
+    }
+
+    /**
+     * Attach an attribute to the session. The attribute is dropped on the next
+     * reset of the whole state.
+     *
+     * @param key key of the attribute.
+     * @param value value of the attribute or null to remove it.
+     */
+    public synchronized void setAttribute(Object key, Object value) {
+        if (value == null)
+            attributes.remove(key);
+        else
+            attributes.put(key, value);
+    }
+
+    /**
+     * Forget the state of all logical channels and all attributes.
+     */
+    public synchronized void reset() {
+        Arrays.fill(selectedAids, null);
+        Arrays.fill(selectedFiles, null);
+        attributes.clear();
+    }
+
+    /**
+     * Forget the state of a logical channel.
+     *
+     * @param logChannel number of logical channel.
+     */
+    public synchronized void reset(int logChannel) {
+        if (isValidChannel(logChannel)) {
+            selectedAids[logChannel] = null;
+            selectedFiles[logChannel] = null;
+        }
+    }
+
+    @Override
+    public void notify(StateChangeEvent event) {
+        switch (event.getEventID()) {
+        case StateChangeEvent.EV_CONNECT:
+        case StateChangeEvent.EV_DISCONNECT:
+        case StateChangeEvent.EV_CHANNEL_CHANGE:
+            reset();
+            break;
+
+        case ApduEvent.EV_MANAGE_CHANNEL:
+            manageChannel((ApduEvent) event);
+            break;
+
+        case ApduEvent.EV_SELECT:
+            select((ApduEvent) event);
+            break;
+
+        case ApduEvent.EV_ERROR_STATUS:
+            error((ApduEvent) event);
+            break;
+
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Helper method to update the state after a successful SELECT.
+     *
+     * @param event SELECT event.
+     */
+    private synchronized void select(ApduEvent event) {
+        int logChannel = event.getLogChannel();
+        if (!isValidChannel(logChannel))
+            return;
+
+        ApduCommand command = event.getCommand();
+        if ((command.getP1() & 0xFF) == P1_SELECT_BY_AID) {
+            // a partial AID may select a different application
+            selectedAids[logChannel] = isFirstOccurrence(command)
+                                               ? command.getData()
+                                               : null;
+            selectedFiles[logChannel] = null;
+        } else {
+            selectedFiles[logChannel] = fileKey(command);
+        }
+    }
+
+    /**
+     * Helper method to update the state after an error status word.
+     *
+     * @param event error event.
+     */
+    private synchronized void error(ApduEvent event) {
+        int logChannel = event.getLogChannel();
+        if (!isValidChannel(logChannel))
+            return;
+
+        ApduCommand command = event.getCommand();
+        if (((command.getINS() & 0xFF) == 0xA4) &&
+            ((command.getP1() & 0xFF) == P1_SELECT_BY_AID))
+            selectedAids[logChannel] = null;
+        selectedFiles[logChannel] = null;
+    }
+
+    /**
+     * Helper method to update the state after a successful MANAGE CHANNEL.
+     *
+     * @param event MANAGE CHANNEL event.
+     */
+    private synchronized void manageChannel(ApduEvent event) {
+        ApduCommand command = event.getCommand();
+        int logChannel = command.getP2() & 0xFF;
+
+        // channel number of MANAGE CHANNEL open is returned by the card
+        if ((logChannel == 0) && ((command.getP1() & 0xFF) == 0x00)) {
+            ApduResponse response = event.getResponse();
+            if ((response == null) || (response.getDataLength() < 1))
+                return;
+            logChannel = response.getData()[0] & 0xFF;
+        }
+        reset(logChannel);
+    }
+
+    /**
+     * Helper method to build the key of a selected elementary file.
+     *
+     * @param command SELECT command.
+     * @return P1, P2 and command data.
+     */
+    private static byte[] fileKey(ApduCommand command) {
+        byte[] data = command.getData();
+        if (data == null)
+            data = new byte[0];
+        byte[] key = new byte[data.length + 2];
+        key[0] = (byte) command.getP1();
+        key[1] = (byte) command.getP2();
+        System.arraycopy(data, 0, key, 2, data.length);
+        return key;
+    }
+
+    /**
+     * Helper method to check if a SELECT by AID selects the first or only
+     * occurrence.
+     *
+     * @param command SELECT command.
+     * @return true if P2 requests the first or only occurrence.
+     */
+    private static boolean isFirstOccurrence(ApduCommand command) {
+        return (command.getP2() & 0x03) == 0x00;
+    }
+
+    /**
+     * Helper method to check a logical channel number.
+     *
+     * @param logChannel number of logical channel.
+     * @return true if the number is in range.
+     */
+    private static boolean isValidChannel(int logChannel) {
+        return (logChannel >= 0) && (logChannel < MAX_LOG_CHANNELS);
+    }
+}
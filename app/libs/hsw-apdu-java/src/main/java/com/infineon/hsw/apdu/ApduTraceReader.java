@@ -0,0 +1,145 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Offline tool rendering binary APDU traces written by
+ * {@link ApduTraceRecorder}. The records are formatted with
+ * {@link ApduFormatter}, so the output has the same layout as the console
+ * output of {@link ApduLogger}.
+ * <p>
+ * Usage: <code>ApduTraceReader &lt;trace file&gt; [output file]</code>. If no
+ * output file is given, the trace is written to the standard output.
+ */
+public class ApduTraceReader {
+    /**
+     * Private constructor, class only provides static methods.
+     */
+    private ApduTraceReader() {
+    }
+
+    /**
+     * Renders a trace file.
+     *
+     * @param traceFile trace file written by {@link ApduTraceRecorder}.
+     * @param out destination of the rendered trace.
+     * @param formatter formatter used for the records.
+     * @return number of rendered records.
+     * @throws IOException if reading the trace file or writing the output
+     *         failed.
+     * @throws ApduException if the trace file is no valid trace or contains
+     *         invalid APDU commands.
+     */
+    public static int render(File traceFile, Appendable out,
+                             ApduFormatter formatter)
+            throws IOException, ApduException {
+        ByteBuffer trace;
+        try (RandomAccessFile file = new RandomAccessFile(traceFile, "r")) {
+            trace = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                                          file.length());
+        }
+
+        if ((trace.remaining() < ApduTraceRecorder.FILE_HEADER_LENGTH) ||
+            (trace.getInt() != ApduTraceRecorder.MAGIC))
+            throw new ApduException("No APDU trace file");
+        if (trace.getInt() != ApduTraceRecorder.VERSION)
+            throw new ApduException("Unsupported APDU trace version");
+
+        int count = 0;
+        while (trace.remaining() >= ApduTraceRecorder.RECORD_HEADER_LENGTH) {
+            int recordLength = trace.getInt();
+
+            // unused space at the end of an unterminated trace is zero
+            if ((recordLength <= 0) || (recordLength > trace.remaining()))
+                break;
+
+            byte type = trace.get();
+            trace.getLong(); // time stamp is not part of the layout
+            long execTime = trace.getLong();
+            byte[] payload = new byte[recordLength -
+                                      (ApduTraceRecorder.RECORD_HEADER_LENGTH -
+                                       4)];
+            trace.get(payload);
+
+            out.append(formatter.format(toLogRecord(type, execTime, payload)));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Helper method to convert a trace record into a log record as created by
+     * {@link ApduLogger}.
+     *
+     * @param type record type.
+     * @param execTime execution time in nanoseconds.
+     * @param payload payload of record.
+     * @return log record.
+     * @throws ApduException if the record contains an invalid APDU command or
+     *         response.
+     */
+    private static LogRecord toLogRecord(byte type, long execTime,
+                                         byte[] payload) throws ApduException {
+        Object param;
+        switch (type) {
+        case ApduTraceRecorder.TYPE_COMMAND:
+            param = new ApduCommand(payload);
+            break;
+        case ApduTraceRecorder.TYPE_RESPONSE:
+            param = new ApduResponse(payload, execTime);
+            break;
+        case ApduTraceRecorder.TYPE_ATR:
+            param = new ATR(payload);
+            break;
+        default:
+            return new LogRecord(Level.INFO,
+                                 new String(payload, StandardCharsets.UTF_8));
+        }
+
+        LogRecord logRecord = new LogRecord(Level.INFO, "");
+        logRecord.setParameters(new Object[] {param});
+        return logRecord;
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args trace file and optional output file.
+     * @throws Exception if rendering the trace failed.
+     */
+    public static void main(String[] args) throws Exception {
+        if ((args.length < 1) || (args.length > 2)) {
+            System.err.println(
+                    "Usage: ApduTraceReader <trace file> [output file]");
+            return;
+        }
+
+        OutputStream stream = (args.length == 2)
+                                      ? new FileOutputStream(args[1])
+                                      : System.out;
+        Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        try {
+            render(new File(args[0]), out, new ApduFormatter());
+        } finally {
+            out.flush();
+            if (args.length == 2)
+                out.close();
+        }
+    }
+}
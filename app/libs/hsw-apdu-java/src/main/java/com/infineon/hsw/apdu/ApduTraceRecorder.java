@@ -0,0 +1,444 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Recorder for binary APDU traces. Commands, responses, ATRs and log messages
+ * are encoded as compact binary records directly into the reused buffers of a
+ * ring buffer. A background thread drains the ring buffer into a
+ * memory-mapped trace file, so the thread sending the APDUs never formats or
+ * writes any data. The trace file can be rendered offline with
+ * {@link ApduTraceReader}.
+ * <p>
+ * The recorder can be used as APDU service registered at a command set via
+ * {@link ApduCommandSet#registerService(IApduService)} or as log handler
+ * replacing the console output of the {@link ApduLogger} of a channel (see
+ * {@link #install(Logger)}). If the ring buffer is full, records are dropped
+ * instead of blocking the sender, the number of dropped records is available
+ * via {@link #getDroppedRecords()}.
+ */
+public class ApduTraceRecorder extends Handler implements IApduService {
+    /** Magic value at the beginning of a trace file ('APTR') */
+    public static final int MAGIC = 0x41505452;
+
+    /** Version of the trace file format */
+    public static final int VERSION = 1;
+
+    /** Length of the trace file header (magic and version) */
+    public static final int FILE_HEADER_LENGTH = 8;
+
+    /**
+     * Length of the record header (record length, type, time stamp and
+     * execution time)
+     */
+    public static final int RECORD_HEADER_LENGTH = 21;
+
+    /** Record type for an APDU command */
+    public static final byte TYPE_COMMAND = 1;
+
+    /** Record type for an APDU response */
+    public static final byte TYPE_RESPONSE = 2;
+
+    /** Record type for an answer to reset */
+    public static final byte TYPE_ATR = 3;
+
+    /** Record type for a log message (UTF-8 encoded) */
+    public static final byte TYPE_MESSAGE = 4;
+
+    /** Default number of records kept in the ring buffer */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** Size of the file regions mapped at once */
+    private static final int MAP_SIZE = 1024 * 1024;
+
+    /** Time in nanoseconds the drain thread sleeps if no record is pending */
+    private static final long DRAIN_INTERVAL = 1000000;
+
+    /** Minimum size of a record buffer, large enough for short APDUs */
+    private static final int MIN_RECORD_SIZE = 64;
+
+    /**
+     * Slots of the ring buffer holding encoded records. The buffers are
+     * allocated on first use and reused, they only grow for larger records.
+     */
+    private final ByteBuffer[] slots;
+
+    /** Bit mask to map a sequence number to a slot index */
+    private final int mask;
+
+    /**
+     * Lock serializing the producers and closing. A record is encoded and
+     * published while holding the lock, so no record can be published after
+     * the recorder has been closed.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Sequence number of the next record to be published, only modified while
+     * holding the lock
+     */
+    private volatile long head;
+
+    /** Sequence number of the next record to be drained */
+    private volatile long tail;
+
+    /** Number of records dropped because the ring buffer was full */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Trace file */
+    private final RandomAccessFile file;
+
+    /** File channel of the trace file */
+    private final FileChannel fileChannel;
+
+    /** Background thread writing the records into the trace file */
+    private final Thread drainThread;
+
+    /** Currently mapped region of the trace file */
+    private MappedByteBuffer region;
+
+    /** File position of the currently mapped region */
+    private long regionStart;
+
+    /**
+     * Marker if the recorder has been closed, only modified while holding the
+     * lock
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a recorder with the default ring buffer capacity.
+     *
+     * @param traceFile file receiving the trace. An existing file is
+     *         overwritten.
+     * @throws ApduException if the trace file cannot be created.
+     */
+    public ApduTraceRecorder(File traceFile) throws ApduException {
+        this(traceFile, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a recorder.
+     *
+     * @param traceFile file receiving the trace. An existing file is
+     *         overwritten.
+     * @param capacity number of records kept in the ring buffer. The value is
+     *         rounded up to the next power of two.
+     * @throws ApduException if the trace file cannot be created.
+     */
+    public ApduTraceRecorder(File traceFile, int capacity)
+            throws ApduException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(
+                    "Capacity must be larger than 0");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        slots = new ByteBuffer[size];
+        mask = size - 1;
+
+        try {
+            file = new RandomAccessFile(traceFile, "rw");
+            file.setLength(0);
+            fileChannel = file.getChannel();
+            region = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                     MAP_SIZE);
+            region.putInt(MAGIC).putInt(VERSION);
+        } catch (IOException e) {
+            throw new ApduException("Cannot create trace file: " +
+                                            e.getMessage(),
+                                    e);
+        }
+
+        drainThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "ApduTraceRecorder " + traceFile.getName());
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Replaces all handlers of a logger by this recorder, e.g. to replace the
+     * console output of the logger returned by
+     * {@link ApduChannel#getLogger()}.
+     *
+     * @param logger logger whose output shall be recorded.
+     */
+    public void install(Logger logger) {
+        for (Handler handler : logger.getHandlers()) {
+            logger.removeHandler(handler);
+        }
+        logger.addHandler(this);
+    }
+
+    /**
+     * Records an APDU command.
+     *
+     * @param apdu APDU command.
+     */
+    public void recordCommand(ApduCommand apdu) {
+        synchronized (lock) {
+            ByteBuffer record = claimRecord(TYPE_COMMAND, 0, apdu.getLength());
+            if (record != null) {
+                apdu.encodeInto(record);
+                publishRecord();
+            }
+        }
+    }
+
+    /**
+     * Records an APDU response including its execution time.
+     *
+     * @param apdu APDU response.
+     */
+    public void recordResponse(ApduResponse apdu) {
+        synchronized (lock) {
+            ByteBuffer record = claimRecord(TYPE_RESPONSE,
+                                            apdu.getExecutionTime(),
+                                            apdu.getDataLength() + 2);
+            if (record != null) {
+                apdu.encodeInto(record);
+                publishRecord();
+            }
+        }
+    }
+
+    /**
+     * Records an answer to reset.
+     *
+     * @param atr answer to reset.
+     */
+    public void recordATR(ATR atr) {
+        recordBytes(TYPE_ATR, atr.toBytes());
+    }
+
+    /**
+     * Records a log message.
+     *
+     * @param message log message.
+     */
+    public void recordMessage(String message) {
+        recordBytes(TYPE_MESSAGE, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the number of records dropped because the ring buffer was full.
+     *
+     * @return number of dropped records.
+     */
+    public long getDroppedRecords() {
+        return dropped.get();
+    }
+
+    @Override
+    public ApduCommand processCommand(ApduCommand apdu) throws ApduException {
+        recordCommand(apdu);
+        return apdu;
+    }
+
+    @Override
+    public ApduResponse processResponse(ApduResponse apdu)
+            throws ApduException {
+        recordResponse(apdu);
+        return apdu;
+    }
+
+    @Override
+    public int getServiceType() {
+        return SVC_COM_CHN_LOGGER;
+    }
+
+    @Override
+    public void publish(LogRecord logRecord) {
+        if (!isLoggable(logRecord))
+            return;
+
+        Object[] aoParams = logRecord.getParameters();
+        String strMessage = logRecord.getMessage();
+
+        if ((strMessage != null) && !strMessage.isEmpty())
+            recordMessage(strMessage);
+
+        if ((aoParams != null) && (aoParams.length == 1)) {
+            if (aoParams[0] instanceof ApduCommand) {
+                recordCommand((ApduCommand) aoParams[0]);
+            } else if (aoParams[0] instanceof ApduResponse) {
+                recordResponse((ApduResponse) aoParams[0]);
+            } else if (aoParams[0] instanceof ATR) {
+                recordATR((ATR) aoParams[0]);
+            } else if (aoParams[0] instanceof byte[]) {
+                recordBytes(TYPE_MESSAGE, (byte[]) aoParams[0]);
+            }
+        }
+    }
+
+    /**
+     * Waits until all pending records have been written and forces the trace
+     * file content to the storage device.
+     */
+    @Override
+    public void flush() {
+        while (!closed && (tail != head)) {
+            LockSupport.unpark(drainThread);
+            Thread.yield();
+        }
+        MappedByteBuffer current = region;
+        if (current != null)
+            current.force();
+    }
+
+    /**
+     * Writes all pending records, truncates the trace file to its content and
+     * closes it. Records published afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed)
+                return;
+            closed = true;
+        }
+
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            long end = regionStart + region.position();
+            region.force();
+            region = null;
+            fileChannel.truncate(end);
+            file.close();
+        } catch (IOException e) {
+            reportError(e.getMessage(), e, 0);
+        }
+    }
+
+    /**
+     * Helper method to record a byte array.
+     *
+     * @param type record type.
+     * @param bytes payload of record.
+     */
+    private void recordBytes(byte type, byte[] bytes) {
+        synchronized (lock) {
+            ByteBuffer record = claimRecord(type, 0, bytes.length);
+            if (record != null) {
+                record.put(bytes);
+                publishRecord();
+            }
+        }
+    }
+
+    /**
+     * Helper method to claim the next slot of the ring buffer and fill the
+     * record header. Must be called while holding the lock. If the recorder
+     * is closed or the ring buffer is full, the record is dropped.
+     *
+     * @param type record type.
+     * @param execTime execution time in nanoseconds.
+     * @param payloadLength length of payload following the header.
+     * @return buffer of the slot positioned behind the header or null if the
+     *         record is dropped.
+     */
+    private ByteBuffer claimRecord(byte type, long execTime,
+                                   int payloadLength) {
+        long sequence = head;
+        if (closed || (sequence - tail > mask)) {
+            dropped.incrementAndGet();
+            return null;
+        }
+
+        int index = (int) sequence & mask;
+        int length = RECORD_HEADER_LENGTH + payloadLength;
+        ByteBuffer record = slots[index];
+        if ((record == null) || (record.capacity() < length)) {
+            record = ByteBuffer.allocate(Math.max(length, MIN_RECORD_SIZE));
+            slots[index] = record;
+        }
+
+        record.clear();
+        record.putInt(length - 4)
+                .put(type)
+                .putLong(System.currentTimeMillis())
+                .putLong(execTime);
+        return record;
+    }
+
+    /**
+     * Helper method to hand the record of the claimed slot over to the drain
+     * thread. Must be called while holding the lock.
+     */
+    private void publishRecord() {
+        head = head + 1;
+    }
+
+    /**
+     * Body of the drain thread. Records are taken from the ring buffer in the
+     * order of their sequence numbers and appended to the trace file.
+     */
+    private void drain() {
+        while (true) {
+            // read marker first, records published before closing are visible
+            boolean done = closed;
+            long sequence = tail;
+
+            if (sequence == head) {
+                if (done)
+                    break;
+                LockSupport.parkNanos(DRAIN_INTERVAL);
+                continue;
+            }
+
+            ByteBuffer record = slots[(int) sequence & mask];
+            try {
+                write(record.array(), record.position());
+            } catch (IOException e) {
+                reportError(e.getMessage(), e, 0);
+            }
+
+            // slot may be reused by producers afterwards
+            tail = sequence + 1;
+        }
+    }
+
+    /**
+     * Helper method to append a record to the trace file. A new region of the
+     * file is mapped if the current one cannot take the record.
+     *
+     * @param record array containing the encoded record.
+     * @param length length of the record.
+     * @throws IOException if mapping the trace file failed.
+     */
+    private void write(byte[] record, int length) throws IOException {
+        if (region.remaining() < length) {
+            long position = regionStart + region.position();
+            region = fileChannel.map(FileChannel.MapMode.READ_WRITE, position,
+                                     Math.max(MAP_SIZE, length));
+            regionStart = position;
+        }
+        region.put(record, 0, length);
+    }
+}
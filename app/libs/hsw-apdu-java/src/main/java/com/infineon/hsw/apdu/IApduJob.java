@@ -0,0 +1,23 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+/**
+ * Interface for a job executed by an {@link ApduChannelPool} on one reader,
+ * e.g. the personalization of one tag.
+ *
+ * @param <T> type of the job result.
+ */
+public interface IApduJob<T> {
+    /**
+     * Execute the job on the given channel. The channel is used exclusively
+     * by the job until the method returns.
+     *
+     * @param apduChannel APDU channel bound to the reader.
+     * @return result of the job.
+     * @throws Exception if the job failed for any reason.
+     */
+    T run(ApduChannel apduChannel) throws Exception;
+}
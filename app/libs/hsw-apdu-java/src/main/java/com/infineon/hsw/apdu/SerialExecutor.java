@@ -0,0 +1,109 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executor running its tasks one after the other in order of submission. The
+ * tasks are executed by a backing executor, so many serial executors can share
+ * a few threads: tasks of one serial executor never overlap while tasks of
+ * different serial executors run in parallel.
+ * <p>
+ * Each {@link ApduChannel} owns a serial executor (see
+ * {@link ApduChannel#getExecutor()}), which is used by asynchronous command
+ * sets to keep the order of commands sent to one card.
+ */
+public class SerialExecutor implements Executor {
+    /**
+     * Executor shared by all serial executors created without a backing
+     * executor. Idle daemon threads are terminated after a while.
+     */
+    private static final ExecutorService SHARED_EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SerialExecutor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /** Executor running the tasks */
+    private final Executor backingExecutor;
+
+    /** Tasks waiting for execution */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    /** Task currently handed over to the backing executor or null */
+    private Runnable active;
+
+    /**
+     * Creates a serial executor using a shared thread pool.
+     */
+    public SerialExecutor() {
+        this(SHARED_EXECUTOR);
+    }
+
+    /**
+     * Creates a serial executor.
+     *
+     * @param backingExecutor executor running the tasks.
+     */
+    public SerialExecutor(Executor backingExecutor) {
+        if (backingExecutor == null)
+            throw new IllegalArgumentException("No backing executor");
+        this.backingExecutor = backingExecutor;
+    }
+
+    @Override
+    public synchronized void execute(final Runnable task) {
+        tasks.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            }
+        });
+
+        if (active == null)
+            scheduleNext();
+    }
+
+    /**
+     * Return the number of tasks waiting for execution, not including the
+     * task currently executed.
+     *
+     * @return number of pending tasks.
+     */
+    public synchronized int getPendingTasks() {
+        return tasks.size();
+    }
+
+    /**
+     * Helper method to hand over the next task to the backing executor. If the
+     * backing executor rejects the task, it is dropped and the following
+     * tasks are tried with the next submission.
+     */
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            try {
+                backingExecutor.execute(active);
+            } catch (RuntimeException e) {
+                active = null;
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,399 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.infineon.hsw.channel.IChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the job scheduling of {@link ApduChannelPool}.
+ */
+public class ApduChannelPoolTest {
+    /**
+     * Maximum time in seconds to wait for a job.
+     */
+    private static final long TIMEOUT = 5;
+
+    /**
+     * Pool under test, shut down after each test.
+     */
+    private ApduChannelPool pool;
+
+    /**
+     * Shuts down the pool of a test.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+        if (pool != null) {
+            pool.shutdown();
+            pool.awaitTermination(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        }
+    }
+
+    /**
+     * Checks that the jobs of a reader are executed in order of submission and
+     * always get the same APDU channel.
+     *
+     * @throws Exception if a job fails.
+     */
+    @Test
+    public void jobsOfReaderRunInOrderOnSameChannel() throws Exception {
+        pool = createPool(4, "Reader 1", "Reader 2");
+        final ApduChannel expected = pool.getApduChannel("Reader 1");
+        final List<Integer> order =
+                Collections.synchronizedList(new ArrayList<Integer>());
+
+        List<Future<ApduChannel>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            final int index = i;
+            futures.add(pool.submit("Reader 1", new IApduJob<ApduChannel>() {
+                @Override
+                public ApduChannel run(ApduChannel apduChannel) {
+                    order.add(index);
+                    return apduChannel;
+                }
+            }));
+        }
+
+        for (Future<ApduChannel> future : futures) {
+            assertSame(expected, future.get(TIMEOUT, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+        assertNotSame(expected, pool.getApduChannel("Reader 2"));
+        assertNull(pool.getApduChannel("Reader 3"));
+    }
+
+    /**
+     * Checks that jobs of different readers are executed in parallel.
+     *
+     * @throws Exception if a job fails.
+     */
+    @Test
+    public void readersRunInParallel() throws Exception {
+        pool = createPool(4, "Reader 1", "Reader 2");
+        final CountDownLatch started = new CountDownLatch(2);
+
+        List<Future<Boolean>> futures = pool.submitAll(
+                new IApduJob<Boolean>() {
+                    @Override
+                    public Boolean run(ApduChannel apduChannel)
+                            throws InterruptedException {
+                        // both jobs have to be active at the same time
+                        started.countDown();
+                        return started.await(TIMEOUT, TimeUnit.SECONDS);
+                    }
+                });
+
+        assertEquals(2, futures.size());
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(TIMEOUT, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Checks that a job without reader goes to the reader with the least
+     * number of pending jobs.
+     *
+     * @throws Exception if a job fails.
+     */
+    @Test
+    public void leastLoadedReaderIsSelected() throws Exception {
+        pool = createPool(4, "Reader 1", "Reader 2");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<ApduChannel> blocked =
+                pool.submit("Reader 1", new BlockingJob(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        Future<ApduChannel> selected = pool.submit(new BlockingJob(null, null));
+        assertSame(pool.getApduChannel("Reader 2"),
+                   selected.get(TIMEOUT, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertSame(pool.getApduChannel("Reader 1"),
+                   blocked.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Checks that submitting blocks while the queue of the reader is full.
+     *
+     * @throws Exception if a job fails.
+     */
+    @Test
+    public void fullQueueBlocksSubmitter() throws Exception {
+        pool = createPool(1, "Reader 1");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.submit("Reader 1", new BlockingJob(started, release));
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // fills the queue
+        pool.submit("Reader 1", new BlockingJob(null, null));
+
+        final List<Future<ApduChannel>> submitted =
+                Collections.synchronizedList(
+                        new ArrayList<Future<ApduChannel>>());
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    submitted.add(pool.submit("Reader 1",
+                                              new BlockingJob(null, null)));
+                } catch (ApduException e) {
+                    // test fails with empty list
+                }
+            }
+        });
+        submitter.start();
+
+        submitter.join(200);
+        assertTrue(submitter.isAlive());
+
+        release.countDown();
+        submitter.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(submitter.isAlive());
+        assertEquals(1, submitted.size());
+        assertSame(pool.getApduChannel("Reader 1"),
+                   submitted.get(0).get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Checks that a failing job does not stop the reader and the channel can
+     * be reconnected by a later job.
+     *
+     * @throws Exception if a job fails unexpectedly.
+     */
+    @Test
+    public void readerSurvivesFailureAndReconnects() throws Exception {
+        TestChannel channel = new TestChannel("Reader 1");
+        pool = new ApduChannelPool(Arrays.<IChannel>asList(channel), 4);
+
+        Future<Void> failed = pool.submit("Reader 1", new IApduJob<Void>() {
+            @Override
+            public Void run(ApduChannel apduChannel) throws ApduException {
+                apduChannel.connect();
+                throw new ApduException("Job failed");
+            }
+        });
+        try {
+            failed.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Job did not fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ApduException);
+        }
+
+        Future<Integer> reconnected =
+                pool.submit("Reader 1", new IApduJob<Integer>() {
+                    @Override
+                    public Integer run(ApduChannel apduChannel)
+                            throws ApduException {
+                        apduChannel.disconnect();
+                        apduChannel.connect();
+                        return apduChannel.send(new ApduCommand(
+                                                        0x00, 0xA4, 0x04, 0x00,
+                                                        null, 0))
+                                .getSW();
+                    }
+                });
+        assertEquals(ApduResponse.SW_NO_ERROR,
+                     reconnected.get(TIMEOUT, TimeUnit.SECONDS).intValue());
+        assertEquals(2, channel.connects);
+    }
+
+    /**
+     * Checks that no job is accepted after a shutdown.
+     *
+     * @throws ApduException expected for the submission.
+     */
+    @Test(expected = ApduException.class)
+    public void shutdownRejectsJobs() throws ApduException {
+        pool = createPool(4, "Reader 1");
+        pool.shutdown();
+        pool.submit("Reader 1", new BlockingJob(null, null));
+    }
+
+    /**
+     * Checks that jobs for unknown readers are rejected.
+     *
+     * @throws ApduException expected for the submission.
+     */
+    @Test(expected = ApduException.class)
+    public void unknownReaderIsRejected() throws ApduException {
+        pool = createPool(4, "Reader 1");
+        pool.submit("Reader 2", new BlockingJob(null, null));
+    }
+
+    /**
+     * Checks that reader names have to be unique.
+     *
+     * @throws ApduException expected for the creation.
+     */
+    @Test(expected = ApduException.class)
+    public void duplicateReaderIsRejected() throws ApduException {
+        pool = createPool(4, "Reader 1", "Reader 1");
+    }
+
+    /**
+     * Creates a pool of test channels.
+     *
+     * @param queueCapacity maximum number of pending jobs per reader.
+     * @param names names of the readers.
+     * @return pool.
+     * @throws ApduException if the pool cannot be created.
+     */
+    private static ApduChannelPool createPool(int queueCapacity,
+                                              String... names)
+            throws ApduException {
+        List<IChannel> channels = new ArrayList<>();
+        for (String name : names) {
+            channels.add(new TestChannel(name));
+        }
+        return new ApduChannelPool(channels, queueCapacity);
+    }
+
+    /**
+     * Job waiting for a latch, returns the channel it has been executed on.
+     */
+    private static final class BlockingJob implements IApduJob<ApduChannel> {
+        /**
+         * Latch counted down when the job starts or null.
+         */
+        private final CountDownLatch started;
+
+        /**
+         * Latch the job waits for or null.
+         */
+        private final CountDownLatch release;
+
+        /**
+         * Creates a job.
+         *
+         * @param started latch counted down when the job starts or null.
+         * @param release latch the job waits for or null.
+         */
+        private BlockingJob(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public ApduChannel run(ApduChannel apduChannel)
+                throws InterruptedException {
+            if (started != null)
+                started.countDown();
+            if (release != null)
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+            return apduChannel;
+        }
+    }
+
+    /**
+     * Channel answering every command with 9000.
+     */
+    private static final class TestChannel implements IChannel {
+        /**
+         * Name of the channel.
+         */
+        private final String name;
+
+        /**
+         * Marker if the channel is open.
+         */
+        private volatile boolean open;
+
+        /**
+         * Marker if the channel is connected.
+         */
+        private volatile boolean connected;
+
+        /**
+         * Number of connects.
+         */
+        private volatile int connects;
+
+        /**
+         * Creates a channel.
+         *
+         * @param name name of the channel.
+         */
+        private TestChannel(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void open(boolean exclusive) {
+            open = true;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public byte[] connect(byte[] request) {
+            connected = true;
+            connects++;
+            return new byte[] { 0x3B, 0x00 };
+        }
+
+        @Override
+        public byte[] disconnect(byte[] request) {
+            connected = false;
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] reset(byte[] request) {
+            return new byte[] { 0x3B, 0x00 };
+        }
+
+        @Override
+        public byte[] transmit(byte[] stream) {
+            return new byte[] { (byte) 0x90, 0x00 };
+        }
+
+        @Override
+        public byte[] control(byte[] stream) {
+            return new byte[0];
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
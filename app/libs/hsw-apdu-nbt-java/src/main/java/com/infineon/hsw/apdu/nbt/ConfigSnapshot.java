@@ -0,0 +1,114 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cached configuration data of the NBT configurator application. The snapshot
+ * is attached to the {@link com.infineon.hsw.apdu.ApduSession} of the channel
+ * and shared by all configurator command sets using the channel. It is
+ * dropped on connect, disconnect and reset, so it always describes the tag
+ * currently connected. Values are filled by GET CONFIGURATION and updated by
+ * successful SET CONFIGURATION commands of {@link NbtCommandSetConfig}.
+ */
+public class ConfigSnapshot {
+    /**
+     * Cached configuration values mapped by tag in order of reading.
+     */
+    private final Map<Short, byte[]> values = new LinkedHashMap<>();
+
+    /**
+     * Constructor of an empty snapshot.
+     */
+    /* default */ ConfigSnapshot() {
+    }
+
+    /**
+     * Returns the cached value of a configuration tag.
+     *
+     * @param tag Configuration tag.
+     * @return Returns a copy of the value or null if the tag is not cached.
+     */
+    public synchronized byte[] get(short tag) {
+        byte[] value = values.get(tag);
+        return (value != null) ? value.clone() : null;
+    }
+
+    /**
+     * Checks if a configuration tag is cached.
+     *
+     * @param tag Configuration tag.
+     * @return Returns true if the value of the tag is known.
+     */
+    public synchronized boolean contains(short tag) {
+        return values.containsKey(tag);
+    }
+
+    /**
+     * Checks if the cached value of a configuration tag equals a value.
+     *
+     * @param tag   Configuration tag.
+     * @param value Value to be compared.
+     * @return Returns true if the tag is cached with the same value.
+     */
+    public synchronized boolean matches(short tag, byte[] value) {
+        byte[] cached = values.get(tag);
+        return (cached != null) && Arrays.equals(cached, value);
+    }
+
+    /**
+     * Returns all cached configuration tags.
+     *
+     * @return Returns the tags in order of reading.
+     */
+    public synchronized List<Short> getTags() {
+        return new ArrayList<>(values.keySet());
+    }
+
+    /**
+     * Drops the cached value of a configuration tag, e.g. if the state of the
+     * tag is unknown after a failed command.
+     *
+     * @param tag Configuration tag.
+     */
+    public synchronized void invalidate(short tag) {
+        values.remove(tag);
+    }
+
+    /**
+     * Drops all cached values.
+     */
+    public synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * Stores the value of a configuration tag.
+     *
+     * @param tag   Configuration tag.
+     * @param value Value read from or written to the tag.
+     */
+    /* default */ synchronized void put(short tag, byte[] value) {
+        values.put(tag, value.clone());
+    }
+
+    /**
+     * Stores the value of a configuration tag from a part of a byte array.
+     *
+     * @param tag    Configuration tag.
+     * @param data   Byte array containing the value.
+     * @param offset Offset of the value.
+     * @param length Length of the value.
+     */
+    /* default */ synchronized void put(short tag, byte[] data, int offset,
+                                        int length) {
+        values.put(tag, Arrays.copyOfRange(data, offset, offset + length));
+    }
+}
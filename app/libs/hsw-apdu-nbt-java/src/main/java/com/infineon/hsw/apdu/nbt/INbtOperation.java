@@ -0,0 +1,32 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+/**
+ * Interface for an operation executed asynchronously by
+ * {@link NbtCommandSetAsync}, e.g. a complete personalization flow. The
+ * operation uses the synchronous command sets and has exclusive access to
+ * the channel until it returns.
+ *
+ * @param <T> type of the operation result.
+ */
+public interface INbtOperation<T> {
+    /**
+     * Execute the operation. The command sets must only be used within this
+     * call and the method must not wait for other asynchronous operations of
+     * the same channel, as these are executed after this operation.
+     *
+     * @param commandSet       Command set of the NBT application.
+     * @param configCommandSet Command set of the NBT configurator
+     *         application.
+     * @param persoCommandSet  Personalization command set of the NBT
+     *         application.
+     * @return Result of the operation.
+     * @throws Exception If the operation failed for any reason. The exception
+     *         completes the future of the operation.
+     */
+    T run(NbtCommandSet commandSet, NbtCommandSetConfig configCommandSet,
+          NbtCommandSetPerso persoCommandSet) throws Exception;
+}
@@ -0,0 +1,36 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface to receive an NDEF message chunk by chunk while it is read from
+ * the tag. This allows decoding or forwarding of the message before the last
+ * chunk has been received.
+ */
+public interface INdefReadListener {
+    /**
+     * Called once after the first chunk has been received with the length of
+     * the NDEF message (NLEN).
+     *
+     * @param length Length of the NDEF message in bytes.
+     * @throws IOException In case the message cannot be processed, e.g. the
+     *         target buffer is too small. Reading is aborted.
+     */
+    void onMessageLength(int length) throws IOException;
+
+    /**
+     * Called for every received chunk of the NDEF message in order of the
+     * message offsets.
+     *
+     * @param data   Read-only view of the chunk, only valid during the call.
+     * @param offset Offset of the chunk within the NDEF message.
+     * @throws IOException In case the chunk cannot be processed. Reading is
+     *         aborted.
+     */
+    void onMessageData(ByteBuffer data, int offset) throws IOException;
+}
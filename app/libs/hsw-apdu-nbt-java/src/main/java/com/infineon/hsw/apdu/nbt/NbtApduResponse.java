@@ -8,8 +8,9 @@ import com.infineon.hsw.apdu.ApduException;
 import com.infineon.hsw.apdu.ApduResponse;
 import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Container class for NBT APDU responses. This response consists of response
@@ -18,198 +19,219 @@ import java.util.Map;
 public class NbtApduResponse extends ApduResponse {
     /**
      * Delimiter user to separate the key instruction byte + SW.
+     *
+     * @deprecated Error messages are no longer looked up by String keys.
      */
+    @Deprecated
     protected static final String DELIMITER = "_";
 
     /**
-     * Stores the list of error messages available in NBT applet.
-     * Key = instruction byte + SW, which are separated by '_'.
+     * Keys of the error messages available in NBT applet, sorted ascending.
+     * Key = (instruction byte &lt;&lt; 16) | SW.
+     */
+    private static final int[] ERROR_KEYS;
+
+    /**
+     * Error messages in order of {@link #ERROR_KEYS}.
      */
-    private static final Map<String, String> errorMap = new HashMap<>();
+    private static final String[] ERROR_MESSAGES;
 
     static {
-        errorMap.put(NbtConstants.INS_SELECT + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_INCORRECT_LC_LE_SELECT_FILE);
-
-        errorMap.put(NbtConstants.INS_SELECT + DELIMITER +
-                             NbtErrorCodes.APPLICATION_OR_FILE_NOT_FOUND,
-                     NbtErrorCodes.ERR_FILE_APPLICATION_NOT_FOUND);
-
-        errorMap.put(NbtConstants.INS_SELECT + DELIMITER +
-                             NbtErrorCodes.SELECT_FILE_WRONG_TLV,
-                     NbtErrorCodes.ERR_INCORRECT_TLV_SELECT_FILE);
-
-        errorMap.put(NbtConstants.INS_UPDATE_BINARY + DELIMITER +
-                             NbtErrorCodes.COMMAND_NOT_ALLOWED,
-                     NbtErrorCodes.ERR_INVALID_COMMAND);
-
-        errorMap.put(NbtConstants.INS_UPDATE_BINARY + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_INVALID_LENGTH);
-
-        errorMap.put(NbtConstants.INS_UPDATE_BINARY + DELIMITER +
-                             NbtErrorCodes.SECURITY_NOT_SATISFIED,
-                     NbtErrorCodes.ERR_SECURITY_AUTH_PASSWORD_NOT_SUCCESSFUL);
-
-        errorMap.put(NbtConstants.INS_UPDATE_BINARY + DELIMITER +
-                             NbtErrorCodes.UPDATE_ACCESS_DENIED,
-                     NbtErrorCodes.ERR_SECURITY_UPDATE_ACCESS_DENIED);
-
-        errorMap.put(NbtConstants.INS_UPDATE_BINARY + DELIMITER +
-                             NbtErrorCodes.INCORRECT_DATA,
-                     NbtErrorCodes.ERR_INCORRECT_DATA);
-
-        errorMap.put(NbtConstants.INS_UPDATE_BINARY + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_INCORRECT_P1_P2);
-
-        errorMap.put(NbtConstants.INS_READ_BINARY + DELIMITER +
-                             NbtErrorCodes.COMMAND_NOT_ALLOWED,
-                     NbtErrorCodes.ERR_INVALID_COMMAND);
-
-        errorMap.put(NbtConstants.INS_READ_BINARY + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_INVALID_LENGTH);
-
-        errorMap.put(NbtConstants.INS_READ_BINARY + DELIMITER +
-                             NbtErrorCodes.SECURITY_NOT_SATISFIED,
-                     NbtErrorCodes.ERR_SECURITY_ACCESS_DENIED_READ_BYTE);
-
-        errorMap.put(NbtConstants.INS_CREATE_PWD + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_INVALID_LENGTH);
-
-        errorMap.put(NbtConstants.INS_CREATE_PWD + DELIMITER +
-                             NbtErrorCodes.SECURITY_NOT_SATISFIED,
-                     NbtErrorCodes.ERR_SECURITY_STATUS_NOT_SATISFIED);
-
-        errorMap.put(NbtConstants.INS_CREATE_PWD + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_WRONG_LENGTH_CREATE_PASSWORD);
-
-        errorMap.put(
-                NbtConstants.INS_CREATE_PWD + DELIMITER +
-                        NbtErrorCodes.CONDITIONS_NOT_SATISFIED_CREATE_PASSWORD,
-                NbtErrorCodes.ERR_CONDITIONS_NOT_SATISFIED_CREATE_PASSWORD);
-
-        errorMap.put(NbtConstants.INS_CREATE_PWD + DELIMITER +
-                             NbtErrorCodes.INCORRECT_DATA_PARAMETERS,
-                     NbtErrorCodes.ERR_INCORRECT_DATA_CREATE_PASSWORD);
-
-        errorMap.put(NbtConstants.INS_DELETE_PWD + DELIMITER +
-                             NbtErrorCodes.SECURITY_NOT_SATISFIED,
-                     NbtErrorCodes.ERR_SECURITY_STATUS_NOT_SATISFIED);
-
-        errorMap.put(NbtConstants.INS_DELETE_PWD + DELIMITER +
-                             NbtErrorCodes.UNSUPPORTED_DATA,
-                     NbtErrorCodes.ERR_PASSWORD_ID_NOT_PRESENT);
-
-        errorMap.put(NbtConstants.INS_AUTHENTICATE_TAG + DELIMITER +
-                             NbtErrorCodes.CONDITIONS_NOT_SATISFIED,
-                     NbtErrorCodes.ERR_CONDITIONS_NOT_SATISFIED);
-
-        errorMap.put(NbtConstants.INS_AUTHENTICATE_TAG + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_WRONG_LC_OR_LE_AUTH_TAG);
-
-        errorMap.put(NbtConstants.INS_AUTHENTICATE_TAG + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_WRONG_P1_P2_AUTH_TAG);
-
-        errorMap.put(NbtConstants.INS_UNBLOCK_PASSWORD + DELIMITER +
-                             NbtErrorCodes.DATA_NOT_FOUND,
-                     NbtErrorCodes.ERR_DATA_NOT_FOUND);
-
-        errorMap.put(NbtConstants.INS_UNBLOCK_PASSWORD + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_INVALID_LC);
-
-        errorMap.put(NbtConstants.INS_UNBLOCK_PASSWORD + DELIMITER +
-                             NbtErrorCodes.CONDITIONS_NOT_SATISFIED,
-                     NbtErrorCodes.ERR_UNBLOCK_CONDITION_NOT_SATISFIED);
-
-        errorMap.put(NbtConstants.INS_UNBLOCK_PASSWORD + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_UNBLOCK_PASSWORD_WRONG_P1_P2);
-
-        errorMap.put(NbtConstants.INS_GET_DATA + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_WRONG_P1_P2_GET_DATA);
-
-        errorMap.put(NbtConstants.INS_GET_DATA + DELIMITER +
-                             NbtErrorCodes.GET_DATA_WRONG_LE,
-                     NbtErrorCodes.ERR_WRONG_LE_GET_DATA);
-
-        errorMap.put(NbtConstants.INS_PERSONALIZE_DATA + DELIMITER +
-                             NbtErrorCodes.INCORRECT_DATA_PARAMETERS,
-                     NbtErrorCodes.ERR_WRONG_PERSONALIZE_DATA_LENGTH);
-
-        errorMap.put(NbtConstants.INS_PERSONALIZE_DATA + DELIMITER +
-                             NbtErrorCodes.UNSUPPORTED_DATA,
-                     NbtErrorCodes.ERR_UNSUPPORTED_DATA_GROUP);
-
-        errorMap.put(NbtConstants.INS_PERSONALIZE_DATA + DELIMITER +
-                             NbtErrorCodes.CONDITIONS_NOT_SATISFIED,
-                     NbtErrorCodes
-                             .ERR_CONDITION_NOT_SATISFIED_PERSONALIZE_DATA);
-
-        errorMap.put(NbtConstants.INS_PERSONALIZE_DATA + DELIMITER +
-                             NbtErrorCodes.INVALID_LC_PERSONALIZE_DATA,
-                     NbtErrorCodes.ERR_WRONG_LC_PERSONALIZE_DATA);
-
-        errorMap.put(NbtConstants.INS_PERSONALIZE_DATA + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_INVALID_P1_P2_PERSONALIZE_DATA);
-
-        errorMap.put(NbtConstants.INS_SET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.INCORRECT_LC_LE,
-                     NbtErrorCodes.ERR_WRONG_LE_GET_DATA);
-
-        errorMap.put(NbtConstants.INS_SET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.CONDITIONS_USE_UNSATISFIED,
-                     NbtErrorCodes.ERR_CONDITIONS_USE_UNSATISFIED);
-
-        errorMap.put(NbtConstants.INS_SET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.INCORRECT_DATA_PARAMETERS,
-                     NbtErrorCodes.ERR_WRONG_DATA_CONFIGURATOR);
-
-        errorMap.put(NbtConstants.INS_SET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.WRONG_P1_P2,
-                     NbtErrorCodes.ERR_INVALID_P1_P2_CONFIGURATION);
-
-        errorMap.put(NbtConstants.INS_SET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.INS_NOT_SUPPORTED,
-                     NbtErrorCodes.ERR_INVALID_INS_CONFIGURATION);
-
-        errorMap.put(NbtConstants.INS_SET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.CLA_NOT_SUPPORTED,
-                     NbtErrorCodes.ERR_INVALID_CLA_CONFIGURATION);
-
-        errorMap.put(NbtConstants.INS_GET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.CONDITIONS_USE_UNSATISFIED,
-                     NbtErrorCodes.ERR_CONDITIONS_USE_UNSATISFIED);
-
-        errorMap.put(NbtConstants.INS_GET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.INCORRECT_DATA_PARAMETERS,
-                     NbtErrorCodes.ERR_WRONG_DATA_CONFIGURATOR);
-
-        errorMap.put(NbtConstants.INS_GET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.INS_NOT_SUPPORTED,
-                     NbtErrorCodes.ERR_INVALID_INS_CONFIGURATION);
-
-        errorMap.put(NbtConstants.INS_GET_CONFIGURATION + DELIMITER +
-                             NbtErrorCodes.CLA_NOT_SUPPORTED,
-                     NbtErrorCodes.ERR_INVALID_CLA_CONFIGURATION);
+        Map<Integer, String> errors = new TreeMap<>();
+
+        errors.put(key(NbtConstants.INS_SELECT, NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_INCORRECT_LC_LE_SELECT_FILE);
+
+        errors.put(key(NbtConstants.INS_SELECT,
+                       NbtErrorCodes.APPLICATION_OR_FILE_NOT_FOUND),
+                   NbtErrorCodes.ERR_FILE_APPLICATION_NOT_FOUND);
+
+        errors.put(key(NbtConstants.INS_SELECT,
+                       NbtErrorCodes.SELECT_FILE_WRONG_TLV),
+                   NbtErrorCodes.ERR_INCORRECT_TLV_SELECT_FILE);
+
+        errors.put(key(NbtConstants.INS_UPDATE_BINARY,
+                       NbtErrorCodes.COMMAND_NOT_ALLOWED),
+                   NbtErrorCodes.ERR_INVALID_COMMAND);
+
+        errors.put(key(NbtConstants.INS_UPDATE_BINARY,
+                       NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_INVALID_LENGTH);
+
+        errors.put(key(NbtConstants.INS_UPDATE_BINARY,
+                       NbtErrorCodes.SECURITY_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_SECURITY_AUTH_PASSWORD_NOT_SUCCESSFUL);
+
+        errors.put(key(NbtConstants.INS_UPDATE_BINARY,
+                       NbtErrorCodes.UPDATE_ACCESS_DENIED),
+                   NbtErrorCodes.ERR_SECURITY_UPDATE_ACCESS_DENIED);
+
+        errors.put(key(NbtConstants.INS_UPDATE_BINARY,
+                       NbtErrorCodes.INCORRECT_DATA),
+                   NbtErrorCodes.ERR_INCORRECT_DATA);
+
+        errors.put(key(NbtConstants.INS_UPDATE_BINARY,
+                       NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_INCORRECT_P1_P2);
+
+        errors.put(key(NbtConstants.INS_READ_BINARY,
+                       NbtErrorCodes.COMMAND_NOT_ALLOWED),
+                   NbtErrorCodes.ERR_INVALID_COMMAND);
+
+        errors.put(key(NbtConstants.INS_READ_BINARY,
+                       NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_INVALID_LENGTH);
+
+        errors.put(key(NbtConstants.INS_READ_BINARY,
+                       NbtErrorCodes.SECURITY_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_SECURITY_ACCESS_DENIED_READ_BYTE);
+
+        errors.put(key(NbtConstants.INS_CREATE_PWD, NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_INVALID_LENGTH);
+
+        errors.put(key(NbtConstants.INS_CREATE_PWD,
+                       NbtErrorCodes.SECURITY_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_SECURITY_STATUS_NOT_SATISFIED);
+
+        errors.put(key(NbtConstants.INS_CREATE_PWD,
+                       NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_WRONG_LENGTH_CREATE_PASSWORD);
+
+        errors.put(key(NbtConstants.INS_CREATE_PWD,
+                       NbtErrorCodes.CONDITIONS_NOT_SATISFIED_CREATE_PASSWORD),
+                   NbtErrorCodes.ERR_CONDITIONS_NOT_SATISFIED_CREATE_PASSWORD);
+
+        errors.put(key(NbtConstants.INS_CREATE_PWD,
+                       NbtErrorCodes.INCORRECT_DATA_PARAMETERS),
+                   NbtErrorCodes.ERR_INCORRECT_DATA_CREATE_PASSWORD);
+
+        errors.put(key(NbtConstants.INS_DELETE_PWD,
+                       NbtErrorCodes.SECURITY_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_SECURITY_STATUS_NOT_SATISFIED);
+
+        errors.put(key(NbtConstants.INS_DELETE_PWD,
+                       NbtErrorCodes.UNSUPPORTED_DATA),
+                   NbtErrorCodes.ERR_PASSWORD_ID_NOT_PRESENT);
+
+        errors.put(key(NbtConstants.INS_AUTHENTICATE_TAG,
+                       NbtErrorCodes.CONDITIONS_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_CONDITIONS_NOT_SATISFIED);
+
+        errors.put(key(NbtConstants.INS_AUTHENTICATE_TAG,
+                       NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_WRONG_LC_OR_LE_AUTH_TAG);
+
+        errors.put(key(NbtConstants.INS_AUTHENTICATE_TAG,
+                       NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_WRONG_P1_P2_AUTH_TAG);
+
+        errors.put(key(NbtConstants.INS_UNBLOCK_PASSWORD,
+                       NbtErrorCodes.DATA_NOT_FOUND),
+                   NbtErrorCodes.ERR_DATA_NOT_FOUND);
+
+        errors.put(key(NbtConstants.INS_UNBLOCK_PASSWORD,
+                       NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_INVALID_LC);
+
+        errors.put(key(NbtConstants.INS_UNBLOCK_PASSWORD,
+                       NbtErrorCodes.CONDITIONS_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_UNBLOCK_CONDITION_NOT_SATISFIED);
+
+        errors.put(key(NbtConstants.INS_UNBLOCK_PASSWORD,
+                       NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_UNBLOCK_PASSWORD_WRONG_P1_P2);
+
+        errors.put(key(NbtConstants.INS_GET_DATA, NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_WRONG_P1_P2_GET_DATA);
+
+        errors.put(key(NbtConstants.INS_GET_DATA,
+                       NbtErrorCodes.GET_DATA_WRONG_LE),
+                   NbtErrorCodes.ERR_WRONG_LE_GET_DATA);
+
+        errors.put(key(NbtConstants.INS_PERSONALIZE_DATA,
+                       NbtErrorCodes.INCORRECT_DATA_PARAMETERS),
+                   NbtErrorCodes.ERR_WRONG_PERSONALIZE_DATA_LENGTH);
+
+        errors.put(key(NbtConstants.INS_PERSONALIZE_DATA,
+                       NbtErrorCodes.UNSUPPORTED_DATA),
+                   NbtErrorCodes.ERR_UNSUPPORTED_DATA_GROUP);
+
+        errors.put(key(NbtConstants.INS_PERSONALIZE_DATA,
+                       NbtErrorCodes.CONDITIONS_NOT_SATISFIED),
+                   NbtErrorCodes.ERR_CONDITION_NOT_SATISFIED_PERSONALIZE_DATA);
+
+        errors.put(key(NbtConstants.INS_PERSONALIZE_DATA,
+                       NbtErrorCodes.INVALID_LC_PERSONALIZE_DATA),
+                   NbtErrorCodes.ERR_WRONG_LC_PERSONALIZE_DATA);
+
+        errors.put(key(NbtConstants.INS_PERSONALIZE_DATA,
+                       NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_INVALID_P1_P2_PERSONALIZE_DATA);
+
+        errors.put(key(NbtConstants.INS_SET_CONFIGURATION,
+                       NbtErrorCodes.INCORRECT_LC_LE),
+                   NbtErrorCodes.ERR_WRONG_LE_GET_DATA);
+
+        errors.put(key(NbtConstants.INS_SET_CONFIGURATION,
+                       NbtErrorCodes.CONDITIONS_USE_UNSATISFIED),
+                   NbtErrorCodes.ERR_CONDITIONS_USE_UNSATISFIED);
+
+        errors.put(key(NbtConstants.INS_SET_CONFIGURATION,
+                       NbtErrorCodes.INCORRECT_DATA_PARAMETERS),
+                   NbtErrorCodes.ERR_WRONG_DATA_CONFIGURATOR);
+
+        errors.put(key(NbtConstants.INS_SET_CONFIGURATION,
+                       NbtErrorCodes.WRONG_P1_P2),
+                   NbtErrorCodes.ERR_INVALID_P1_P2_CONFIGURATION);
+
+        errors.put(key(NbtConstants.INS_SET_CONFIGURATION,
+                       NbtErrorCodes.INS_NOT_SUPPORTED),
+                   NbtErrorCodes.ERR_INVALID_INS_CONFIGURATION);
+
+        errors.put(key(NbtConstants.INS_SET_CONFIGURATION,
+                       NbtErrorCodes.CLA_NOT_SUPPORTED),
+                   NbtErrorCodes.ERR_INVALID_CLA_CONFIGURATION);
+
+        errors.put(key(NbtConstants.INS_GET_CONFIGURATION,
+                       NbtErrorCodes.CONDITIONS_USE_UNSATISFIED),
+                   NbtErrorCodes.ERR_CONDITIONS_USE_UNSATISFIED);
+
+        errors.put(key(NbtConstants.INS_GET_CONFIGURATION,
+                       NbtErrorCodes.INCORRECT_DATA_PARAMETERS),
+                   NbtErrorCodes.ERR_WRONG_DATA_CONFIGURATOR);
+
+        errors.put(key(NbtConstants.INS_GET_CONFIGURATION,
+                       NbtErrorCodes.INS_NOT_SUPPORTED),
+                   NbtErrorCodes.ERR_INVALID_INS_CONFIGURATION);
+
+        errors.put(key(NbtConstants.INS_GET_CONFIGURATION,
+                       NbtErrorCodes.CLA_NOT_SUPPORTED),
+                   NbtErrorCodes.ERR_INVALID_CLA_CONFIGURATION);
+
+        ERROR_KEYS = new int[errors.size()];
+        ERROR_MESSAGES = new String[errors.size()];
+        int index = 0;
+        for (Map.Entry<Integer, String> entry : errors.entrySet()) {
+            ERROR_KEYS[index] = entry.getKey();
+            ERROR_MESSAGES[index] = entry.getValue();
+            index++;
+        }
     }
 
     /**
-     * String containing response status word: error message
+     * Instruction code for which the response is generated.
+     */
+    private final byte ins;
+
+    /**
+     * String containing response status word: error message, resolved on
+     * first request.
      */
     private String error;
 
     /**
-     * Constructor for NBT APDU response.
+     * Constructor for NBT APDU response. The response data is copied, so the
+     * response may still be used by the caller.
      *
      * @param response APDU response
      * @param ins      Instruction code for which response is generated.
@@ -218,8 +240,52 @@ public class NbtApduResponse extends ApduResponse {
      */
     public NbtApduResponse(@NotNull ApduResponse response,
                            @NotNull final byte ins) throws ApduException {
-        super(response.toBytes(), response.getExecutionTime());
-        checkSwError(ins);
+        this(response.toBytes(), response.getExecutionTime(), ins);
+    }
+
+    /**
+     * Constructor for NBT APDU response sharing the buffer of a response.
+     *
+     * @param ins      Instruction code for which response is generated.
+     * @param response APDU response to be wrapped.
+     * @throws ApduException Throws an APDU exception, if response is null.
+     */
+    private NbtApduResponse(byte ins, @NotNull ApduResponse response)
+            throws ApduException {
+        super(response);
+        this.ins = ins;
+    }
+
+    /**
+     * Constructor for NBT APDU response from a byte array containing response
+     * data and status word. The array is not copied and must not be modified
+     * afterwards.
+     *
+     * @param response Byte array containing response data and status word.
+     * @param execTime Command execution time in nanoseconds.
+     * @param ins      Instruction code for which response is generated.
+     * @throws ApduException Throws an APDU exception, if the array is null or
+     *         shorter than a status word.
+     */
+    /* default */ NbtApduResponse(@NotNull byte[] response, long execTime,
+                                  byte ins) throws ApduException {
+        super(response, (response != null) ? response.length : 0, execTime);
+        this.ins = ins;
+    }
+
+    /**
+     * Wraps a response received by a command set without copying the response
+     * data. Only to be used for responses which are not passed to other
+     * callers.
+     *
+     * @param response APDU response owned by the caller.
+     * @param ins      Instruction code for which response is generated.
+     * @return Returns the NBT APDU response.
+     * @throws ApduException Throws an APDU exception, if response is null.
+     */
+    /* default */ static NbtApduResponse wrap(@NotNull ApduResponse response,
+                                              byte ins) throws ApduException {
+        return new NbtApduResponse(ins, response);
     }
 
     /**
@@ -230,25 +296,41 @@ public class NbtApduResponse extends ApduResponse {
      *         other than 9000.
      */
     public String getError() {
+        if (error == null) {
+            error = resolveError(ins, getSW());
+        }
         return error;
     }
 
     /**
      * If status word is not equals to 0x9000, then build the error message.
-     * If error code is not in map, then message "Unknown error code: XXXX"
+     * If error code is not in table, then message "Unknown error code: XXXX"
      *
      * @param ins Instruction code for which the response is generated.
+     * @param sw  Status word of the response.
+     * @return Returns the error message or an empty string.
      */
-    private void checkSwError(@NotNull byte ins) {
-        if (getSW() == ApduResponse.SW_NO_ERROR) {
-            error = NbtConstants.EMPTY_STRING;
-        } else {
-            error = errorMap.get(ins + DELIMITER + getSW());
-            if (error == null) {
-                error = NbtErrorCodes.ERR_UNKNOWN_SW +
-                        Utils.toHexString(Utils.getBytes(getSW()));
-            }
+    private static String resolveError(byte ins, int sw) {
+        if (sw == ApduResponse.SW_NO_ERROR) {
+            return NbtConstants.EMPTY_STRING;
+        }
+        int index = Arrays.binarySearch(ERROR_KEYS, key(ins, (short) sw));
+        if (index >= 0) {
+            return ERROR_MESSAGES[index];
         }
+        return NbtErrorCodes.ERR_UNKNOWN_SW +
+               Utils.toHexString(Utils.getBytes(sw));
+    }
+
+    /**
+     * Builds the key of an error message.
+     *
+     * @param ins Instruction code.
+     * @param sw  Status word.
+     * @return Returns (instruction code &lt;&lt; 16) | status word.
+     */
+    private static int key(byte ins, short sw) {
+        return ((ins & 0xFF) << 16) | (sw & 0xFFFF);
     }
 
     /**
@@ -11,6 +11,7 @@ import com.infineon.hsw.apdu.nbt.model.NbtException;
 import com.infineon.hsw.utils.UtilException;
 import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
+import java.nio.ByteBuffer;
 
 /**
  * Command builder to build the APDU commands supported by the NBT applet.
@@ -79,26 +80,29 @@ public class NbtCommandBuilder {
         validatePassword(readPasswordBytes);
         validatePassword(writePasswordBytes);
 
-        byte[] commandData = ApduUtils.toBytes(fileId);
+        // build command data in a single buffer
+        int length = NbtConstants.FILE_ID_LENGTH;
+        if (readPasswordBytes != null) {
+            length += 2 + NbtConstants.PWD_LENGTH;
+        }
+        if (writePasswordBytes != null) {
+            length += 2 + NbtConstants.PWD_LENGTH;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putShort(fileId);
 
         if (readPasswordBytes != null) {
-            commandData = Utils.concat(commandData,
-                                       (new byte[] {
-                                               NbtConstants.TAG_PWD_READ }));
-            commandData = Utils.concat(commandData,
-                                       (new byte[] {
-                                               NbtConstants.PWD_LENGTH }));
-            commandData = Utils.concat(commandData, readPasswordBytes);
+            buffer.put(NbtConstants.TAG_PWD_READ)
+                    .put(NbtConstants.PWD_LENGTH)
+                    .put(readPasswordBytes);
         }
         if (writePasswordBytes != null) {
-            commandData = Utils.concat(commandData,
-                                       (new byte[] {
-                                               NbtConstants.TAG_PWD_WRITE }));
-            commandData = Utils.concat(commandData,
-                                       (new byte[] {
-                                               NbtConstants.PWD_LENGTH }));
-            commandData = Utils.concat(commandData, writePasswordBytes);
+            buffer.put(NbtConstants.TAG_PWD_WRITE)
+                    .put(NbtConstants.PWD_LENGTH)
+                    .put(writePasswordBytes);
         }
+        byte[] commandData = buffer.array();
+
         return new ApduCommand(NbtConstants.CLA, NbtConstants.INS_SELECT,
                                NbtConstants.P1_DEFAULT,
                                NbtConstants.P2_SELECT_FIRST, commandData,
@@ -123,10 +127,25 @@ public class NbtCommandBuilder {
         if (data == null) {
             throw new IllegalArgumentException("Data cannot be null");
         }
-        byte[] offsetBytes = Utils.toBytes(offset);
+        return updateBinaryTemplate().setP1P2(offset).setData(data, 0,
+                                                             data.length);
+    }
+
+    /**
+     * Builds an update binary command to be used as template for chunked
+     * writes. The offset (P1-P2) and the data of the returned command are
+     * updated for each chunk via {@link ApduCommand#setP1P2(int)} and
+     * {@link ApduCommand#setData(byte[], int, int)}.
+     *
+     * @return Returns the APDU command with offset 0 and no data.
+     * @throws ApduException Throws an APDU exception, if creating of APDU
+     *         command object failed.
+     */
+    public ApduCommand updateBinaryTemplate() throws ApduException {
         return new ApduCommand(NbtConstants.CLA, NbtConstants.INS_UPDATE_BINARY,
-                               offsetBytes[P1_INDEX], offsetBytes[P2_INDEX],
-                               data, NbtConstants.LE_ABSENT);
+                               NbtConstants.P1_DEFAULT, NbtConstants.P2_DEFAULT,
+                               NbtConstants.LC_NOT_PRESENT,
+                               NbtConstants.LE_ABSENT);
     }
 
     /**
@@ -145,10 +164,24 @@ public class NbtCommandBuilder {
     public ApduCommand readBinary(@NotNull short offset,
                                   @NotNull short expectedLen)
             throws ApduException, UtilException {
-        byte[] offsetBytes = Utils.toBytes(offset);
+        return readBinaryTemplate().setP1P2(offset).setLe(expectedLen);
+    }
+
+    /**
+     * Builds a read binary command to be used as template for chunked reads.
+     * The offset (P1-P2) and the expected length of the returned command are
+     * updated for each chunk via {@link ApduCommand#setP1P2(int)} and
+     * {@link ApduCommand#setLe(int)}.
+     *
+     * @return Returns the APDU command with offset 0 and any expected length.
+     * @throws ApduException Throws an APDU exception, if creating of APDU
+     *         command object failed.
+     */
+    public ApduCommand readBinaryTemplate() throws ApduException {
         return new ApduCommand(NbtConstants.CLA, NbtConstants.INS_READ_BINARY,
-                               offsetBytes[P1_INDEX], offsetBytes[P2_INDEX],
-                               NbtConstants.LC_NOT_PRESENT, expectedLen);
+                               NbtConstants.P1_DEFAULT, NbtConstants.P2_DEFAULT,
+                               NbtConstants.LC_NOT_PRESENT,
+                               NbtConstants.LE_ANY);
     }
 
     /**
@@ -6,9 +6,10 @@ package com.infineon.hsw.apdu.nbt;
 
 import com.infineon.hsw.apdu.ApduCommand;
 import com.infineon.hsw.apdu.ApduException;
+import com.infineon.hsw.utils.Tlv;
 import com.infineon.hsw.utils.UtilException;
-import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
+import java.util.Arrays;
 
 /**
  * Command builder to build the APDUs used for personalization of NBT
@@ -115,15 +116,37 @@ public class NbtCommandBuilderPerso {
             throw new IllegalArgumentException(
                     "Personalize Data cannot be null.");
         }
-        byte[] dgiByte = Utils.toBytes(dgi);
-        return new ApduCommand(
-                NbtConstants.CLA, NbtConstants.INS_PERSONALIZE_DATA,
-                NbtConstants.P1_DEFAULT, NbtConstants.P2_DEFAULT,
-                Utils.concat(dgiByte,
-                             Utils.concat(new byte[] { (byte) personalizeData
-                                                               .length },
-                                          personalizeData)),
-                NbtConstants.LE_ABSENT);
+        // DGI, one or three byte length and data in a single buffer
+        byte[] commandData = Tlv.buildDgiTlv(dgi, personalizeData);
+        return new ApduCommand(NbtConstants.CLA,
+                               NbtConstants.INS_PERSONALIZE_DATA,
+                               NbtConstants.P1_DEFAULT, NbtConstants.P2_DEFAULT,
+                               commandData, NbtConstants.LE_ABSENT);
+    }
+
+    /**
+     * Builds the personalize data command for a sequence of already encoded
+     * DGIs, each consisting of DGI, length and data.
+     *
+     * @param dgiData Buffer containing the encoded DGIs.
+     * @param offset  Offset of the first DGI within the buffer.
+     * @param length  Total length of the encoded DGIs.
+     * @return Returns the APDU command.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or build command failed.
+     */
+    public ApduCommand personalizeData(@NotNull byte[] dgiData, int offset,
+                                       int length) throws ApduException {
+        if (dgiData == null) {
+            throw new IllegalArgumentException(
+                    "Personalize Data cannot be null.");
+        }
+        return new ApduCommand(NbtConstants.CLA,
+                               NbtConstants.INS_PERSONALIZE_DATA,
+                               NbtConstants.P1_DEFAULT, NbtConstants.P2_DEFAULT,
+                               Arrays.copyOfRange(dgiData, offset,
+                                                  offset + length),
+                               NbtConstants.LE_ABSENT);
     }
 
     /**
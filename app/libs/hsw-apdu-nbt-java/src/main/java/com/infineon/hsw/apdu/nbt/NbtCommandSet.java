@@ -9,6 +9,7 @@ import com.infineon.hsw.apdu.ApduCommand;
 import com.infineon.hsw.apdu.ApduCommandSet;
 import com.infineon.hsw.apdu.ApduException;
 import com.infineon.hsw.apdu.ApduResponse;
+import com.infineon.hsw.apdu.ApduSession;
 import com.infineon.hsw.apdu.ApduUtils;
 import com.infineon.hsw.apdu.nbt.decoder.FapDecoder;
 import com.infineon.hsw.apdu.nbt.model.AppletVersion;
@@ -19,7 +20,14 @@ import com.infineon.hsw.apdu.nbt.model.NbtException;
 import com.infineon.hsw.utils.UtilException;
 import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -97,11 +105,28 @@ public class NbtCommandSet extends ApduCommandSet {
     private static final String
             LOG_MESSAGE_UNBLOCK_PASSWORD = "Unblock Password";
 
+    /**
+     * Key of the transfer lengths within the session of the channel.
+     */
+    private static final Object TRANSFER_LENGTHS_KEY = TransferLengths.class;
+
     /**
      * Instance of NBT command builder.
      */
     private final NbtCommandBuilder commandBuilder;
 
+    /**
+     * Maximum number of bytes read by one READ BINARY command, loaded from the
+     * session before each transfer.
+     */
+    private int maxReadLength = NbtConstants.MAX_LE;
+
+    /**
+     * Maximum number of bytes written by one UPDATE BINARY command, loaded
+     * from the session before each transfer.
+     */
+    private int maxWriteLength = NbtConstants.MAX_LC;
+
     /**
      * Constructor of NBT command set to configure the reference of
      * communication channel and log channel number.
@@ -124,7 +149,8 @@ public class NbtCommandSet extends ApduCommandSet {
     }
 
     /**
-     * Selects the NBT application.
+     * Selects the NBT application. No command is sent if the application is
+     * already selected according to the {@link ApduSession} of the channel.
      *
      * @return Returns the response with status word.
      * @throws ApduException Throws an APDU exception, in case command creation
@@ -132,11 +158,13 @@ public class NbtCommandSet extends ApduCommandSet {
      */
     public NbtApduResponse selectApplication() throws ApduException {
         logger.info(LOG_MESSAGE_SELECT_AID);
-        return sendCommand(commandBuilder.selectApplication());
+        return sendSelect(commandBuilder.selectApplication());
     }
 
     /**
-     * Selects the elementary file (EF) with the FileID.
+     * Selects the elementary file (EF) with the FileID. No command is sent if
+     * the file is already selected according to the {@link ApduSession} of
+     * the channel.
      *
      * @param fileId 2-byte FileID of the file to be selected.
      * @return Returns the response with status word.
@@ -146,13 +174,15 @@ public class NbtCommandSet extends ApduCommandSet {
     public NbtApduResponse selectFile(@NotNull short fileId)
             throws ApduException {
         logger.info(LOG_MESSAGE_SELECT_FID);
-        return sendCommand(commandBuilder.selectFile(fileId));
+        return sendSelect(commandBuilder.selectFile(fileId));
     }
 
     /**
      * Selects the elementary file (EF) with the FileID, optionally this might
      * contain the 4-byte password value to authenticate to perform password
-     * protected Read/Write operations on the selected EF.
+     * protected Read/Write operations on the selected EF. No command is sent if
+     * the file is already selected with the same passwords according to the
+     * {@link ApduSession} of the channel.
      *
      * @param fileId        2-byte FileID of the file to be selected.
      * @param readPassword  4-byte password for read operation (Optional- Null
@@ -167,7 +197,7 @@ public class NbtCommandSet extends ApduCommandSet {
                                       byte[] readPassword, byte[] writePassword)
             throws ApduException {
         logger.info(LOG_MESSAGE_SELECT_FILE);
-        return sendCommand(
+        return sendSelect(
                 commandBuilder.selectFile(fileId, readPassword, writePassword));
     }
 
@@ -591,6 +621,130 @@ public class NbtCommandSet extends ApduCommandSet {
                               masterPassword);
     }
 
+    /**
+     * Updates the file access policies of several files with a single
+     * selection of the FAP file. Each policy is written with its own UPDATE
+     * BINARY command.
+     *
+     * @param policies       Access policies to be updated.
+     * @param masterPassword 4-byte master password for verification. Required
+     *         if this password is already used with password-protected access
+     * condition (Optional).
+     * @return Returns the responses mapped by FileID in order of writing.
+     * @throws ApduException             Throws an APDU exception, in case of
+     *         communication problems or if the list contains invalid or
+     *         duplicate policies.
+     * @throws FileAccessPolicyException Throws an FAP exception, if unable to
+     *         get access condition bytes.
+     */
+    public Map<Short, NbtApduResponse> updateFapList(
+            @NotNull List<FileAccessPolicy> policies, byte[] masterPassword)
+            throws ApduException, FileAccessPolicyException {
+        return updateFapList(policies, masterPassword, 1);
+    }
+
+    /**
+     * Updates the file access policies of several files with a single
+     * selection of the FAP file. All policies are validated before the first
+     * command is sent. The policy of the FAP file itself is written last, so
+     * a more restrictive FAP file policy cannot block the other updates.
+     * <p>
+     * If the applet accepts several FAP records in one UPDATE BINARY command,
+     * up to <code>recordsPerCommand</code> policies are packed into each
+     * command. The number is limited by the maximum write length. Writing
+     * continues if a command fails, so the result reports each file.
+     *
+     * @param policies          Access policies to be updated.
+     * @param masterPassword    4-byte master password for verification.
+     *         Required if this password is already used with
+     *         password-protected access condition (Optional).
+     * @param recordsPerCommand Maximum number of policies per UPDATE BINARY
+     *         command.
+     * @return Returns the responses mapped by FileID in order of writing.
+     *         Policies written by the same command share the response. If the
+     *         selection of the FAP file fails, all files are mapped to the
+     *         response of the selection.
+     * @throws ApduException             Throws an APDU exception, in case of
+     *         communication problems or if the list contains invalid or
+     *         duplicate policies.
+     * @throws FileAccessPolicyException Throws an FAP exception, if unable to
+     *         get access condition bytes.
+     */
+    public Map<Short, NbtApduResponse> updateFapList(
+            @NotNull List<FileAccessPolicy> policies, byte[] masterPassword,
+            int recordsPerCommand)
+            throws ApduException, FileAccessPolicyException {
+        if (policies == null) {
+            throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
+        }
+        if (recordsPerCommand < 1) {
+            throw new ApduException(
+                    NbtErrorCodes.ERR_INVALID_RECORDS_PER_COMMAND);
+        }
+
+        // Validates and encodes all policies before sending any command.
+        int count = policies.size();
+        short[] fileIds = new short[count];
+        byte[] records = new byte[count * NbtConstants.FAP_RECORD_LENGTH];
+        int index = 0;
+        FileAccessPolicy fapFilePolicy = null;
+        for (FileAccessPolicy policy : policies) {
+            if (policy == null) {
+                throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
+            }
+            boolean duplicate = (policy.getFileId() ==
+                                 NbtConstants.FAP_FILE_ID) &&
+                                (fapFilePolicy != null);
+            for (int i = 0; i < index; i++) {
+                duplicate |= (fileIds[i] == policy.getFileId());
+            }
+            if (duplicate) {
+                throw new ApduException(String.format(
+                        "%s %04X", NbtErrorCodes.ERR_DUPLICATE_FAP,
+                        policy.getFileId() & 0xFFFF));
+            }
+            if (policy.getFileId() == NbtConstants.FAP_FILE_ID) {
+                fapFilePolicy = policy;
+                continue;
+            }
+            index = putFapRecord(records, fileIds, index, policy);
+        }
+        if (fapFilePolicy != null) {
+            putFapRecord(records, fileIds, index, fapFilePolicy);
+        }
+
+        Map<Short, NbtApduResponse> results = new LinkedHashMap<>();
+        if (count == 0) {
+            return results;
+        }
+
+        logger.info(LOG_MESSAGE_UPDATE_FAP_FILE);
+        NbtApduResponse apduResponse = selectFile(NbtConstants.FAP_FILE_ID,
+                                                  null, masterPassword);
+        if (apduResponse.isSwError()) {
+            for (short fileId : fileIds) {
+                results.put(fileId, apduResponse);
+            }
+            return results;
+        }
+
+        int recordsPerBlock = Math.max(
+                1, Math.min(recordsPerCommand,
+                            maxWriteLength / NbtConstants.FAP_RECORD_LENGTH));
+        ApduCommand command = commandBuilder.updateBinaryTemplate();
+        for (int first = 0; first < count; first += recordsPerBlock) {
+            int last = Math.min(count, first + recordsPerBlock);
+            command.setP1P2(NbtConstants.OFFSET_FILE_START)
+                    .setData(records, first * NbtConstants.FAP_RECORD_LENGTH,
+                             (last - first) * NbtConstants.FAP_RECORD_LENGTH);
+            apduResponse = sendCommand(command);
+            for (int i = first; i < last; i++) {
+                results.put(fileIds[i], apduResponse);
+            }
+        }
+        return results;
+    }
+
     /**
      * Unblocks a blocked password.
      *
@@ -622,6 +776,100 @@ public class NbtCommandSet extends ApduCommandSet {
                 commandBuilder.unblockPassword(passwordId, masterPassword));
     }
 
+    /**
+     * Negotiates the maximum number of bytes transferred by one READ BINARY
+     * or UPDATE BINARY command of the NDEF and proprietary file transfers.
+     * Extended length APDUs are only used if the communication channel
+     * provides a maximum APDU length beyond the short APDU limits, see
+     * {@link ApduChannel#getMaxTransceiveLength()}. In this case the maximum
+     * data sizes MLe and MLc are read from the capability container file and
+     * the smaller of both limits is used. This method is called automatically
+     * before the first NDEF transfer of a connection. The result is kept in
+     * the {@link ApduSession} of the channel and shared by all NBT command sets
+     * of the connection. Note that the capability container file is selected
+     * afterwards.
+     *
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or build command failure.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public void negotiateTransferLengths() throws ApduException, UtilException {
+        int readLength = NbtConstants.MAX_LE;
+        int writeLength = NbtConstants.MAX_LC;
+
+        int channelLength = apduChannel.getMaxTransceiveLength();
+        if ((channelLength - NbtConstants.SW_LENGTH > readLength) ||
+            (channelLength - NbtConstants.EXTENDED_COMMAND_OVERHEAD >
+             writeLength)) {
+            // Reads MLe and MLc from the capability container.
+            NbtApduResponse apduResponse = selectFile(NbtConstants.CC_FILE_ID);
+            if (!apduResponse.isSwError()) {
+                apduResponse =
+                        readBinary(NbtConstants.FILE_START_OFFSET,
+                                   NbtConstants.CC_HEADER_LENGTH);
+            }
+            if (!apduResponse.isSwError() &&
+                (apduResponse.getDataLength() >=
+                 NbtConstants.CC_HEADER_LENGTH)) {
+                byte[] cc = apduResponse.getData();
+                int mle = Utils.getUINT16(cc, NbtConstants.CC_OFFSET_MLE);
+                int mlc = Utils.getUINT16(cc, NbtConstants.CC_OFFSET_MLC);
+                readLength = limitTransferLength(
+                        readLength, mle,
+                        channelLength - NbtConstants.SW_LENGTH);
+                writeLength = limitTransferLength(
+                        writeLength, mlc,
+                        channelLength - NbtConstants.EXTENDED_COMMAND_OVERHEAD);
+            }
+        }
+
+        setTransferLengths(readLength, writeLength);
+    }
+
+    /**
+     * Sets the maximum number of bytes transferred by one READ BINARY or
+     * UPDATE BINARY command of the NDEF and proprietary file transfers. The
+     * lengths are kept in the {@link ApduSession} of the channel, so no
+     * automatic negotiation is done until the channel is connected,
+     * disconnected or reset. Lengths beyond the short APDU limits lead to
+     * extended length APDUs; if the tag rejects them with '6700', the
+     * transfers fall back to short APDUs.
+     *
+     * @param readLength  Maximum number of bytes read by one command.
+     * @param writeLength Maximum number of bytes written by one command.
+     */
+    public void setTransferLengths(int readLength, int writeLength) {
+        if ((readLength <= 0) || (writeLength <= 0)) {
+            throw new IllegalArgumentException(
+                    "Transfer lengths must be larger than 0");
+        }
+        maxReadLength = Math.min(readLength, NbtConstants.MAX_EXTENDED_LENGTH);
+        maxWriteLength = Math.min(writeLength,
+                                  NbtConstants.MAX_EXTENDED_LENGTH);
+        storeTransferLengths();
+    }
+
+    /**
+     * Returns the maximum number of bytes read by one READ BINARY command
+     * during the last transfer.
+     *
+     * @return Returns the maximum read length.
+     */
+    public int getMaxReadLength() {
+        return maxReadLength;
+    }
+
+    /**
+     * Returns the maximum number of bytes written by one UPDATE BINARY
+     * command during the last transfer.
+     *
+     * @return Returns the maximum write length.
+     */
+    public int getMaxWriteLength() {
+        return maxWriteLength;
+    }
+
     /**
      * Reads the NDEF file with password and returns the NDEF message byte data.
      *
@@ -637,13 +885,98 @@ public class NbtCommandSet extends ApduCommandSet {
     public NbtApduResponse readNdefMessage(@NotNull short ndefFileId,
                                            @NotNull byte[] readPassword)
             throws ApduException, UtilException {
+        MessageCollector collector = new MessageCollector();
+        NbtApduResponse apduResponse =
+                readNdefMessage(ndefFileId, readPassword, collector);
+        if (apduResponse.isSwError()) {
+            return apduResponse;
+        }
+
+        // Status word is appended to the message buffer allocated once, which
+        // is wrapped without copying.
+        byte[] message = collector.message;
+        message[message.length - 2] = (byte) 0x90;
+        message[message.length - 1] = 0x00;
+        return new NbtApduResponse(message, apduResponse.getExecutionTime(),
+                                   NbtConstants.INS_READ_BINARY);
+    }
+
+    /**
+     * Reads the NDEF file with password chunk by chunk. Each chunk of the NDEF
+     * message is passed to the listener as soon as it has been received, so
+     * decoding can start before the whole message has been read.
+     *
+     * @param ndefFileId   2-byte FileID of the NDEF file to be selected.
+     * @param readPassword 4-byte password for read operation (Optional - Null
+     *         if not required)
+     * @param listener     Listener receiving the NDEF message.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if the listener failed.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public NbtApduResponse readNdefMessage(@NotNull short ndefFileId,
+                                           byte[] readPassword,
+                                           @NotNull INdefReadListener listener)
+            throws ApduException, UtilException {
+        loadTransferLengths();
         NbtApduResponse apduResponse = selectFile(ndefFileId, readPassword,
                                                   null);
         if (apduResponse.isSwError()) {
             return apduResponse;
         }
-        return recursiveReadNdefMessage(NbtConstants.FILE_START_OFFSET,
-                                        NbtConstants.MAX_LE);
+        return readNdefChunks(listener);
+    }
+
+    /**
+     * Reads the NDEF file with password into a buffer. The NDEF message is
+     * written at the current position of the buffer, the position is advanced
+     * by the length of the message.
+     *
+     * @param ndefFileId   2-byte FileID of the NDEF file to be selected.
+     * @param readPassword 4-byte password for read operation (Optional - Null
+     *         if not required)
+     * @param target       Buffer receiving the NDEF message.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if the remaining space of the
+     *         buffer is less than the NDEF message length.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public NbtApduResponse readNdefMessage(@NotNull short ndefFileId,
+                                           byte[] readPassword,
+                                           @NotNull ByteBuffer target)
+            throws ApduException, UtilException {
+        return readNdefMessage(ndefFileId, readPassword,
+                               new BufferWriter(target));
+    }
+
+    /**
+     * Reads the NDEF file with password into an output stream. Each chunk of
+     * the NDEF message is written as soon as it has been received.
+     *
+     * @param ndefFileId   2-byte FileID of the NDEF file to be selected.
+     * @param readPassword 4-byte password for read operation (Optional - Null
+     *         if not required)
+     * @param out          Output stream receiving the NDEF message.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if writing to the stream
+     *         failed.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public NbtApduResponse readNdefMessage(@NotNull short ndefFileId,
+                                           byte[] readPassword,
+                                           @NotNull OutputStream out)
+            throws ApduException, UtilException {
+        return readNdefMessage(ndefFileId, readPassword,
+                               new StreamWriter(out));
     }
 
     /**
@@ -714,12 +1047,80 @@ public class NbtCommandSet extends ApduCommandSet {
         if (dataBytes == null) {
             throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
         }
-        NbtApduResponse apduResponse = selectFile(ndefFileId, null,
+        return updateNdefMessage(ndefFileId, writePassword,
+                                 ByteBuffer.wrap(dataBytes));
+    }
+
+    /**
+     * Updates an NDEF formatted file with password from the remaining bytes of
+     * a buffer. The 2-byte message length (NLEN) and the message are written
+     * chunk by chunk without copying the whole message. The method can be
+     * used for the NDEF file and the proprietary files (E1A1 to E1A4). The
+     * position of the buffer is advanced by the number of written bytes.
+     *
+     * @param fileId        2-byte FileID of the file to be selected.
+     * @param writePassword 4-byte password for write operation (Optional - Null
+     *         if not required)
+     * @param message       Buffer containing the message to be written.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if the message is too long.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public NbtApduResponse updateNdefMessage(@NotNull short fileId,
+                                             byte[] writePassword,
+                                             @NotNull ByteBuffer message)
+            throws ApduException, UtilException {
+        if (message == null) {
+            throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
+        }
+        return updateNdefMessage(fileId, writePassword,
+                                 new BufferInputStream(message),
+                                 message.remaining());
+    }
+
+    /**
+     * Updates an NDEF formatted file with password from an input stream. The
+     * 2-byte message length (NLEN) and the message are written chunk by chunk,
+     * the stream is read only as far as required for the next UPDATE BINARY
+     * command. The method can be used for the NDEF file and the proprietary
+     * files (E1A1 to E1A4).
+     *
+     * @param fileId        2-byte FileID of the file to be selected.
+     * @param writePassword 4-byte password for write operation (Optional - Null
+     *         if not required)
+     * @param in            Input stream providing the message.
+     * @param length        Length of the message in bytes.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure, if the message is too long or
+     *         if the stream ends before the message length.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public NbtApduResponse updateNdefMessage(@NotNull short fileId,
+                                             byte[] writePassword,
+                                             @NotNull InputStream in,
+                                             int length)
+            throws ApduException, UtilException {
+        if (in == null) {
+            throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
+        }
+        if ((length < 0) || (length > NbtConstants.MAX_NDEF_LENGTH)) {
+            throw new ApduException(NbtErrorCodes.ERR_NDEF_MESSAGE_TOO_LONG);
+        }
+        loadTransferLengths();
+        NbtApduResponse apduResponse = selectFile(fileId, null,
                                                   writePassword);
         if (apduResponse.isSwError()) {
             return apduResponse;
         }
-        return recursiveUpdateBinary(NbtConstants.FILE_START_OFFSET, dataBytes);
+        return updateNdefChunks(in, length);
     }
 
     /**
@@ -777,116 +1178,765 @@ public class NbtCommandSet extends ApduCommandSet {
     }
 
     /**
-     * Reads the NDEF binary file in recursive pattern.
+     * Updates the NDEF file with a new NDEF message by rewriting only the
+     * changed byte ranges. The current content is read from the file first.
      *
-     * @param offset           Offset position for the read binary file.
-     * @param totalBytesToRead Size of data to be read in bytes.
-     * @return Returns the response with status word.
-     * @throws ApduException Throws an APDU exception.
+     * @param newMessage NDEF message to be written.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all UPDATE BINARY commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or build command failure.
      * @throws UtilException Throws an utility exception, in case of issues in
      *         parsing the select response.
      */
-    private NbtApduResponse recursiveReadNdefMessage(@NotNull short offset,
-                                                     @NotNull
-                                                     short totalBytesToRead)
+    public NbtApduResponse updateNdefMessageDiff(@NotNull byte[] newMessage)
             throws ApduException, UtilException {
-        short totalBytesRemainsToRead = (short) (totalBytesToRead - offset);
-        NbtApduResponse apduResponse =
-                readBinary(offset,
-                           (totalBytesRemainsToRead > NbtConstants.MAX_LE)
-                                   ? NbtConstants.MAX_LE
-                                   : totalBytesRemainsToRead);
+        return updateNdefMessageDiff(NbtConstants.NDEF_FILE_ID, null, null,
+                                     newMessage, null);
+    }
 
+    /**
+     * Updates an NDEF formatted file with a new NDEF message by rewriting only
+     * the changed byte ranges. The file is divided into chunks of the maximum
+     * write length starting at file offset 0, every chunk containing changes
+     * is written by a single UPDATE BINARY command from its first to its last
+     * changed byte.
+     * <p>
+     * Like the update procedure of the NFC Forum Type 4 Tag, the message
+     * length (NLEN) is set to 0000 before the first data is written and set to
+     * the new length after all data has been written. An interrupted update
+     * leaves an empty message instead of a mix of old and new bytes. These
+     * are two additional UPDATE BINARY commands if any data changed, if only
+     * the length changed, NLEN is written once.
+     * <p>
+     * If the current message is known, e.g. from a previous write of the same
+     * tag, it can be supplied to avoid reading the file.
+     *
+     * @param fileId         2-byte FileID of the file to be selected.
+     * @param readPassword   4-byte password for read operation (Optional - Null
+     *         if not required)
+     * @param writePassword  4-byte password for write operation (Optional -
+     *         Null if not required)
+     * @param newMessage     NDEF message to be written.
+     * @param currentMessage NDEF message currently stored in the file
+     *         (Optional - Null to read it from the file).
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all UPDATE BINARY commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if the message is too long.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    public NbtApduResponse updateNdefMessageDiff(@NotNull short fileId,
+                                                 byte[] readPassword,
+                                                 byte[] writePassword,
+                                                 @NotNull byte[] newMessage,
+                                                 byte[] currentMessage)
+            throws ApduException, UtilException {
+        if (newMessage == null) {
+            throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
+        }
+        if (newMessage.length > NbtConstants.MAX_NDEF_LENGTH) {
+            throw new ApduException(NbtErrorCodes.ERR_NDEF_MESSAGE_TOO_LONG);
+        }
+        if (currentMessage == null) {
+            NbtApduResponse apduResponse = readNdefMessage(fileId,
+                                                           readPassword);
+            if (apduResponse.isSwError()) {
+                return apduResponse;
+            }
+            currentMessage = apduResponse.getData();
+        } else {
+            loadTransferLengths();
+        }
+        NbtApduResponse apduResponse = selectFile(fileId, null,
+                                                  writePassword);
         if (apduResponse.isSwError()) {
             return apduResponse;
         }
 
-        // Calculates the total bytes to be read from fist two bytes of NDEF
-        // file.
-        if (offset == 0) {
-            // Updates the total_bytes_to_read with first 2 bytes from file.
-            totalBytesToRead =
-                    (short) Utils.getUINT16(apduResponse.getData(),
-                                            NbtConstants.FILE_START_OFFSET);
-            int dataLength = apduResponse.getDataLength() - 2;
-            // If NDEF message size is less than the response length.
-            if (totalBytesToRead < (apduResponse.getDataLength())) {
-                dataLength = (totalBytesToRead);
+        ApduCommand command = commandBuilder.updateBinaryTemplate();
+        int chunkSize = maxWriteLength;
+        long execTime = 0;
+        boolean cleared = false;
+        int start = nextChangedByte(newMessage, currentMessage, 0);
+        while (start < newMessage.length) {
+            // Message is invalidated before the first data is written.
+            if (!cleared) {
+                apduResponse = clearNdefLength(command, currentMessage.length);
+                if (apduResponse.isSwError()) {
+                    return apduResponse;
+                }
+                execTime += apduResponse.getExecutionTime();
+                cleared = true;
             }
-            // Shifts all data by 2-byte left in response data.
-            byte[] data =
-                    Utils.extractBytes(apduResponse.getData(),
-                                       NbtConstants.T4T_NDEF_MSG_START_OFFSET,
-                                       dataLength);
-            data = Utils.concat(data, new byte[] { (byte) 0x90, 0x00 });
-            ApduResponse apduResponse2 =
-                    new ApduResponse(data, apduResponse.getExecutionTime());
-
-            apduResponse = new NbtApduResponse(apduResponse2, (byte) 0);
-            // Calculates the next iteration expected length and offset.
-            offset = (short) (offset + dataLength + 2);
-            // +2 for adding 2 bytes of length.
-            totalBytesToRead += 2;
-        } else {
-            // Calculates next iteration expected length and offset.
-            offset = (short) (offset + apduResponse.getDataLength());
-        }
 
-        if (totalBytesToRead > offset) {
-            NbtApduResponse newApduResponse =
-                    recursiveReadNdefMessage(offset, totalBytesToRead);
-            apduResponse.appendResponse(newApduResponse, 0);
+            // All changes within the chunk are written with one command.
+            int chunkEnd = NdefSnapshot.chunkEnd(start, chunkSize,
+                                                 newMessage.length);
+            int last = lastChangedByte(newMessage, currentMessage, start,
+                                       chunkEnd);
+
+            apduResponse = updateBinaryBlocks(
+                    command, start + NbtConstants.T4T_NDEF_MSG_START_OFFSET,
+                    newMessage, start, last + 1 - start);
+            if (apduResponse.isSwError()) {
+                return apduResponse;
+            }
+            execTime += apduResponse.getExecutionTime();
+            start = nextChangedByte(newMessage, currentMessage, chunkEnd);
         }
-
-        return apduResponse;
+        return completeNdefUpdate(command, newMessage.length,
+                                  currentMessage.length, cleared, execTime);
     }
 
     /**
-     * Updates the binary file in a loop.
+     * Updates an NDEF formatted file with a new NDEF message by rewriting only
+     * the chunks which differ from a snapshot of the current message. The
+     * chunks are defined by the chunk size of the snapshot, every changed
+     * chunk is written completely. The file is not read, so the snapshot must
+     * describe the current content of the file, e.g. the snapshot of the
+     * message written by the previous update of the same tag. Like
+     * {@link #updateNdefMessageDiff(short, byte[], byte[], byte[], byte[])},
+     * NLEN is set to 0000 before the first changed chunk and set to the new
+     * length after the last one.
+     * <p>
+     * The snapshot for the next update is created from the written message
+     * with {@code new NdefSnapshot(newMessage, getMaxWriteLength())}.
      *
-     * @param offset    Offset for write the binary file.
-     * @param dataBytes Bytes to be written in the binary file.
-     * @return Returns the response with status word.
-     * @throws ApduException Throws an APDU exception.
+     * @param fileId          2-byte FileID of the file to be selected.
+     * @param writePassword   4-byte password for write operation (Optional -
+     *         Null if not required)
+     * @param newMessage      NDEF message to be written.
+     * @param currentSnapshot Snapshot of the NDEF message currently stored in
+     *         the file.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all UPDATE BINARY commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if the message is too long.
      * @throws UtilException Throws an utility exception, in case of issues in
      *         parsing the select response.
      */
-    private NbtApduResponse recursiveUpdateBinary(@NotNull short offset,
-                                                  @NotNull byte[] dataBytes)
+    public NbtApduResponse updateNdefMessageDiff(
+            @NotNull short fileId, byte[] writePassword,
+            @NotNull byte[] newMessage, @NotNull NdefSnapshot currentSnapshot)
             throws ApduException, UtilException {
-        // Adding file size at the beginning of file data.
-        if (offset == 0) {
-            byte[] ndefFileSize = Utils.toBytes(((short) dataBytes.length));
-            dataBytes = Utils.concat(ndefFileSize, dataBytes);
+        if ((newMessage == null) || (currentSnapshot == null)) {
+            throw new ApduException(NbtErrorCodes.ERR_DATA_NULL);
+        }
+        if (newMessage.length > NbtConstants.MAX_NDEF_LENGTH) {
+            throw new ApduException(NbtErrorCodes.ERR_NDEF_MESSAGE_TOO_LONG);
+        }
+        loadTransferLengths();
+        NbtApduResponse apduResponse = selectFile(fileId, null,
+                                                  writePassword);
+        if (apduResponse.isSwError()) {
+            return apduResponse;
         }
 
-        // Extracting block of data to be written.
-        int totalRemainingDataSize = dataBytes.length - offset;
-        byte[] dataBlock = Utils.extractBytes(dataBytes, offset,
-                                              (totalRemainingDataSize >
-                                               NbtConstants.MAX_LC)
-                                                      ? NbtConstants.MAX_LC
-                                                      : totalRemainingDataSize);
+        ApduCommand command = commandBuilder.updateBinaryTemplate();
+        int chunkSize = currentSnapshot.getChunkSize();
+        long execTime = 0;
+        boolean cleared = false;
+        int start = 0;
+        while (start < newMessage.length) {
+            int end = NdefSnapshot.chunkEnd(start, chunkSize,
+                                            newMessage.length);
+            if (!currentSnapshot.matches(newMessage, start, end)) {
+                // Message is invalidated before the first data is written.
+                if (!cleared) {
+                    apduResponse = clearNdefLength(
+                            command, currentSnapshot.getLength());
+                    if (apduResponse.isSwError()) {
+                        return apduResponse;
+                    }
+                    execTime += apduResponse.getExecutionTime();
+                    cleared = true;
+                }
+
+                apduResponse = updateBinaryBlocks(
+                        command,
+                        start + NbtConstants.T4T_NDEF_MSG_START_OFFSET,
+                        newMessage, start, end - start);
+                if (apduResponse.isSwError()) {
+                    return apduResponse;
+                }
+                execTime += apduResponse.getExecutionTime();
+            }
+            start = end;
+        }
+        return completeNdefUpdate(command, newMessage.length,
+                                  currentSnapshot.getLength(), cleared,
+                                  execTime);
+    }
 
-        // Updates the sub set of data.
-        NbtApduResponse apduResponse = updateBinary(offset, dataBlock);
+    /**
+     * Sets the message length (NLEN) of a differential update to 0000 before
+     * the message data is written. No command is sent if the current message
+     * is already empty.
+     *
+     * @param command       Update binary command reused for all blocks.
+     * @param currentLength Length of the message stored before the update.
+     * @return Returns the response of the UPDATE BINARY command or a response
+     *         with status word 9000 if no command was sent.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems.
+     */
+    private NbtApduResponse clearNdefLength(@NotNull ApduCommand command,
+                                            int currentLength)
+            throws ApduException {
+        if (currentLength == 0) {
+            return new NbtApduResponse(
+                    new ApduResponse(Utils.getBytes(ApduResponse.SW_NO_ERROR),
+                                     0),
+                    NbtConstants.INS_UPDATE_BINARY);
+        }
+        return updateNdefLength(command, 0);
+    }
 
-        if (apduResponse.isSwError()) {
-            return apduResponse;
+    /**
+     * Completes a differential update by writing the final message length
+     * (NLEN), if it has been cleared before or if it changed.
+     *
+     * @param command       Update binary command reused for all blocks.
+     * @param newLength     Length of the new message.
+     * @param currentLength Length of the message stored before the update.
+     * @param cleared       True if NLEN has been set to 0000 before writing
+     *         the message data.
+     * @param execTime      Sum of the execution times of the previous
+     *         commands.
+     * @return Returns the response of the failed command or a response with
+     *         status word 9000 and the sum of all execution times.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems.
+     */
+    private NbtApduResponse completeNdefUpdate(@NotNull ApduCommand command,
+                                               int newLength,
+                                               int currentLength,
+                                               boolean cleared, long execTime)
+            throws ApduException {
+        // Message length is updated after the message data.
+        if (cleared || (newLength != currentLength)) {
+            NbtApduResponse apduResponse = updateNdefLength(command,
+                                                            newLength);
+            if (apduResponse.isSwError()) {
+                return apduResponse;
+            }
+            execTime += apduResponse.getExecutionTime();
         }
 
-        // Calculates the next iteration expected offset and total remaining
-        // data size.
-        offset = (short) (offset + dataBlock.length);
-        totalRemainingDataSize = dataBytes.length - offset;
-        // Next iteration is required or not.
-        if (totalRemainingDataSize > 0) {
-            NbtApduResponse newApduResponse = recursiveUpdateBinary(offset,
-                                                                    dataBytes);
-            apduResponse.appendResponse(newApduResponse, 0);
+        // Status of the whole transfer without data.
+        return new NbtApduResponse(
+                new ApduResponse(Utils.getBytes(ApduResponse.SW_NO_ERROR),
+                                 execTime),
+                NbtConstants.INS_UPDATE_BINARY);
+    }
+
+    /**
+     * Writes the 2-byte message length (NLEN) of an NDEF formatted file.
+     *
+     * @param command Update binary command reused for all blocks.
+     * @param length  Message length to be written.
+     * @return Returns the response of the UPDATE BINARY command.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems.
+     */
+    private NbtApduResponse updateNdefLength(@NotNull ApduCommand command,
+                                             int length)
+            throws ApduException {
+        byte[] ndefFileSize = Utils.toBytes(
+                length, NbtConstants.T4T_NDEF_MSG_START_OFFSET);
+        return updateBinaryBlocks(command, NbtConstants.FILE_START_OFFSET,
+                                  ndefFileSize, 0, ndefFileSize.length);
+    }
+
+    /**
+     * Reads the NDEF binary file chunk by chunk. The first READ BINARY
+     * delivers NLEN, the following commands only read the remaining bytes of
+     * the NDEF message. The chunks are passed to the listener without copying.
+     *
+     * @param listener Listener receiving the NDEF message.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, an invalid file content or if the listener failed.
+     */
+    private NbtApduResponse readNdefChunks(@NotNull INdefReadListener listener)
+            throws ApduException {
+        ApduCommand command = commandBuilder.readBinaryTemplate();
+        int fileOffset = NbtConstants.FILE_START_OFFSET;
+        // End of file content is unknown until NLEN has been read.
+        int fileEnd = maxReadLength;
+        long execTime = 0;
+
+        try {
+            while (true) {
+                command.setP1P2(fileOffset).setLe(
+                        Math.min(fileEnd - fileOffset, maxReadLength));
+                NbtApduResponse apduResponse = sendCommand(command);
+
+                // Falls back to short length if extended length is rejected.
+                if ((apduResponse.getSW() ==
+                     (NbtErrorCodes.INCORRECT_LC_LE & 0xFFFF)) &&
+                    (command.getLe() > NbtConstants.MAX_LE)) {
+                    maxReadLength = NbtConstants.MAX_LE;
+                    storeTransferLengths();
+                    continue;
+                }
+                if (apduResponse.isSwError()) {
+                    return apduResponse;
+                }
+
+                ByteBuffer data = apduResponse.getDataBuffer();
+                int received = data.remaining();
+                execTime += apduResponse.getExecutionTime();
+
+                // Calculates the file size from first two bytes of NDEF file.
+                if (fileOffset == NbtConstants.FILE_START_OFFSET) {
+                    if (received < NbtConstants.T4T_NDEF_MSG_START_OFFSET) {
+                        throw new ApduException(
+                                NbtErrorCodes.ERR_INVALID_NDEF_FILE);
+                    }
+                    int length = data.getShort() & 0xFFFF;
+                    fileEnd = length + NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+                    listener.onMessageLength(length);
+                } else if (received == 0) {
+                    throw new ApduException(
+                            NbtErrorCodes.ERR_INVALID_NDEF_FILE);
+                }
+
+                // Passes only bytes of the NDEF message to the listener.
+                data.limit(Math.min(received, fileEnd - fileOffset));
+                if (data.hasRemaining()) {
+                    int messageOffset = fileOffset + data.position() -
+                                        NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+                    listener.onMessageData(data, messageOffset);
+                }
+
+                fileOffset += received;
+                if (fileOffset >= fileEnd) {
+                    // Status of the whole transfer without data.
+                    return new NbtApduResponse(
+                            new ApduResponse(Utils.getBytes(
+                                                     ApduResponse.SW_NO_ERROR),
+                                             execTime),
+                            NbtConstants.INS_READ_BINARY);
+                }
+            }
+        } catch (IOException e) {
+            throw new ApduException(e.getMessage(), e);
         }
+    }
 
-        return apduResponse;
+    /**
+     * Writes the 2-byte message length (NLEN) and the message chunk by chunk
+     * into the selected file. A single chunk buffer is filled from the stream
+     * and reused for all UPDATE BINARY commands.
+     *
+     * @param in     Input stream providing the message.
+     * @param length Length of the message in bytes.
+     * @return Returns the response with status word. In case of success the
+     *         response contains no data and the execution time is the sum of
+     *         all commands.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or if the stream cannot be read.
+     */
+    private NbtApduResponse updateNdefChunks(@NotNull InputStream in,
+                                             int length)
+            throws ApduException {
+        ApduCommand command = commandBuilder.updateBinaryTemplate();
+        int fileEnd = length + NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+        byte[] chunk = new byte[Math.min(fileEnd, maxWriteLength)];
+        int fileOffset = NbtConstants.FILE_START_OFFSET;
+        long execTime = 0;
+
+        // Message length is written in front of the first chunk.
+        chunk[0] = (byte) (length >> 8);
+        chunk[1] = (byte) length;
+        int filled = NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+
+        try {
+            while (fileOffset < fileEnd) {
+                filled = fill(in, chunk, filled,
+                              Math.min(fileEnd - fileOffset, chunk.length));
+
+                NbtApduResponse apduResponse = updateBinaryBlocks(
+                        command, fileOffset, chunk, 0, filled);
+                if (apduResponse.isSwError()) {
+                    return apduResponse;
+                }
+                execTime += apduResponse.getExecutionTime();
+                fileOffset += filled;
+                filled = 0;
+            }
+        } catch (IOException e) {
+            throw new ApduException(e.getMessage(), e);
+        }
+
+        // Status of the whole transfer without data.
+        return new NbtApduResponse(
+                new ApduResponse(Utils.getBytes(ApduResponse.SW_NO_ERROR),
+                                 execTime),
+                NbtConstants.INS_UPDATE_BINARY);
+    }
+
+    /**
+     * Writes a part of a byte array into the selected file in blocks of the
+     * maximum write length. If extended length is rejected by the tag, the
+     * remaining blocks are written with short length.
+     *
+     * @param command    Update binary command reused for all blocks.
+     * @param fileOffset Offset in the file of the first byte.
+     * @param data       Byte array containing the data to be written.
+     * @param offset     Index of the first byte in the byte array.
+     * @param length     Number of bytes to be written.
+     * @return Returns the response of the failed command or a response with
+     *         status word 9000 and the sum of all execution times.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems.
+     */
+    private NbtApduResponse updateBinaryBlocks(@NotNull ApduCommand command,
+                                               int fileOffset,
+                                               @NotNull byte[] data,
+                                               int offset, int length)
+            throws ApduException {
+        long execTime = 0;
+        int position = 0;
+        while (position < length) {
+            int blockSize = Math.min(length - position, maxWriteLength);
+            command.setP1P2(fileOffset + position).setData(
+                    data, offset + position, blockSize);
+            NbtApduResponse apduResponse = sendCommand(command);
+
+            // Falls back to short length if extended length is rejected.
+            if ((apduResponse.getSW() ==
+                 (NbtErrorCodes.INCORRECT_LC_LE & 0xFFFF)) &&
+                (blockSize > NbtConstants.MAX_LC)) {
+                maxWriteLength = NbtConstants.MAX_LC;
+                storeTransferLengths();
+                continue;
+            }
+            if (apduResponse.isSwError()) {
+                return apduResponse;
+            }
+
+            execTime += apduResponse.getExecutionTime();
+            position += blockSize;
+        }
+        return new NbtApduResponse(
+                new ApduResponse(Utils.getBytes(ApduResponse.SW_NO_ERROR),
+                                 execTime),
+                NbtConstants.INS_UPDATE_BINARY);
+    }
+
+    /**
+     * Returns the index of the next byte of the new message which differs
+     * from the current message. Bytes beyond the end of the current message
+     * are always different.
+     *
+     * @param newMessage     NDEF message to be written.
+     * @param currentMessage NDEF message currently stored in the file.
+     * @param from           Index to start the search.
+     * @return Returns the index of the next changed byte or the length of the
+     *         new message if no byte changed.
+     */
+    private static int nextChangedByte(@NotNull byte[] newMessage,
+                                       @NotNull byte[] currentMessage,
+                                       int from) {
+        int common = Math.min(newMessage.length, currentMessage.length);
+        for (int i = from; i < common; i++) {
+            if (newMessage[i] != currentMessage[i]) {
+                return i;
+            }
+        }
+        return Math.max(from, common);
+    }
+
+    /**
+     * Returns the index of the last byte of the new message within a range
+     * which differs from the current message. Bytes beyond the end of the
+     * current message are always different.
+     *
+     * @param newMessage     NDEF message to be written.
+     * @param currentMessage NDEF message currently stored in the file.
+     * @param from           Index of a changed byte starting the range.
+     * @param to             Index after the end of the range.
+     * @return Returns the index of the last changed byte of the range.
+     */
+    private static int lastChangedByte(@NotNull byte[] newMessage,
+                                       @NotNull byte[] currentMessage,
+                                       int from, int to) {
+        for (int i = to - 1; i > from; i--) {
+            if ((i >= currentMessage.length) ||
+                (newMessage[i] != currentMessage[i])) {
+                return i;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Validates a policy and stores its FAP record.
+     *
+     * @param records Buffer receiving the FAP records.
+     * @param fileIds Array receiving the FileIDs in order of the records.
+     * @param index   Index of the record to be stored.
+     * @param policy  Access policy to be stored.
+     * @return Returns the index of the next record.
+     * @throws ApduException             Throws an APDU exception, if invalid
+     *         policy bytes.
+     * @throws FileAccessPolicyException Throws an FAP exception, if unable to
+     *         get access condition bytes.
+     */
+    private int putFapRecord(@NotNull byte[] records, @NotNull short[] fileIds,
+                             int index, @NotNull FileAccessPolicy policy)
+            throws ApduException, FileAccessPolicyException {
+        byte[] policyBytes = policy.getAccessBytes();
+        commandBuilder.validatePolicyBytes(policyBytes);
+
+        int offset = index * NbtConstants.FAP_RECORD_LENGTH;
+        records[offset] = (byte) (policy.getFileId() >> 8);
+        records[offset + 1] = (byte) policy.getFileId();
+        System.arraycopy(policyBytes, 0, records,
+                         offset + NbtConstants.FILE_ID_LENGTH,
+                         NbtConstants.POLICY_FIELD_LENGTH);
+        fileIds[index] = policy.getFileId();
+        return index + 1;
+    }
+
+    /**
+     * Fills a chunk buffer from an input stream.
+     *
+     * @param in     Input stream providing the data.
+     * @param chunk  Chunk buffer.
+     * @param filled Number of bytes already contained in the chunk buffer.
+     * @param size   Requested number of bytes in the chunk buffer.
+     * @return Returns the number of bytes in the chunk buffer.
+     * @throws IOException In case the stream cannot be read or ends before
+     *         the requested number of bytes.
+     */
+    private static int fill(@NotNull InputStream in, @NotNull byte[] chunk,
+                            int filled, int size) throws IOException {
+        while (filled < size) {
+            int read = in.read(chunk, filled, size - filled);
+            if (read < 0) {
+                throw new EOFException(
+                        NbtErrorCodes.ERR_UNEXPECTED_END_OF_DATA);
+            }
+            filled += read;
+        }
+        return filled;
+    }
+
+    /**
+     * Transfer lengths negotiated for a connection.
+     */
+    private static final class TransferLengths {
+        /** Maximum number of bytes read by one command */
+        private final int read;
+        /** Maximum number of bytes written by one command */
+        private final int write;
+
+        /**
+         * Creates the transfer lengths.
+         *
+         * @param read  Maximum number of bytes read by one command.
+         * @param write Maximum number of bytes written by one command.
+         */
+        TransferLengths(int read, int write) {
+            this.read = read;
+            this.write = write;
+        }
+    }
+
+    /**
+     * Input stream reading the remaining bytes of a buffer.
+     */
+    private static final class BufferInputStream extends InputStream {
+        /** Buffer providing the data */
+        private final ByteBuffer source;
+
+        /**
+         * Creates an input stream reading from a buffer.
+         *
+         * @param source Buffer providing the data.
+         */
+        BufferInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? (source.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, source.remaining());
+            source.get(b, off, count);
+            return count;
+        }
+    }
+
+    /**
+     * Listener collecting the NDEF message in a buffer which is allocated once
+     * with the exact message length and space for the status word.
+     */
+    private static final class MessageCollector implements INdefReadListener {
+        /** NDEF message followed by 2 bytes for the status word */
+        private byte[] message;
+
+        @Override
+        public void onMessageLength(int length) {
+            message = new byte[length + NbtConstants.SW_LENGTH];
+        }
+
+        @Override
+        public void onMessageData(ByteBuffer data, int offset) {
+            data.get(message, offset, data.remaining());
+        }
+    }
+
+    /**
+     * Listener writing the NDEF message into a buffer.
+     */
+    private static final class BufferWriter implements INdefReadListener {
+        /** Buffer receiving the NDEF message */
+        private final ByteBuffer target;
+
+        /**
+         * Creates a listener writing into a buffer.
+         *
+         * @param target Buffer receiving the NDEF message.
+         */
+        BufferWriter(ByteBuffer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void onMessageLength(int length) throws IOException {
+            if (target.remaining() < length) {
+                throw new IOException(NbtErrorCodes.ERR_NDEF_BUFFER_TOO_SMALL);
+            }
+        }
+
+        @Override
+        public void onMessageData(ByteBuffer data, int offset) {
+            target.put(data);
+        }
+    }
+
+    /**
+     * Listener writing the NDEF message into an output stream.
+     */
+    private static final class StreamWriter implements INdefReadListener {
+        /** Output stream receiving the NDEF message */
+        private final OutputStream out;
+
+        /** Buffer reused for all chunks */
+        private byte[] chunk = new byte[0];
+
+        /**
+         * Creates a listener writing into an output stream.
+         *
+         * @param out Output stream receiving the NDEF message.
+         */
+        StreamWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void onMessageLength(int length) {
+            // nothing to prepare
+        }
+
+        @Override
+        public void onMessageData(ByteBuffer data, int offset)
+                throws IOException {
+            int length = data.remaining();
+            if (chunk.length < length) {
+                chunk = new byte[length];
+            }
+            data.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Loads the transfer lengths of the session, which are negotiated if the
+     * session does not contain them yet.
+     *
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or build command failure.
+     * @throws UtilException Throws an utility exception, in case of issues in
+     *         parsing the select response.
+     */
+    private void loadTransferLengths() throws ApduException, UtilException {
+        TransferLengths lengths = (TransferLengths) getChannel()
+                                          .getSession()
+                                          .getAttribute(TRANSFER_LENGTHS_KEY);
+        if (lengths == null) {
+            negotiateTransferLengths();
+        } else {
+            maxReadLength = lengths.read;
+            maxWriteLength = lengths.write;
+        }
+    }
+
+    /**
+     * Stores the current transfer lengths in the session, so they are reused
+     * by all NBT command sets of the connection.
+     */
+    private void storeTransferLengths() {
+        getChannel().getSession().setAttribute(
+                TRANSFER_LENGTHS_KEY,
+                new TransferLengths(maxReadLength, maxWriteLength));
+    }
+
+    /**
+     * Limits a transfer length by the capability of the applet and the
+     * channel. The result is never below the short APDU length.
+     *
+     * @param shortLength   Short APDU length.
+     * @param appletLength  Length supported by the applet.
+     * @param channelLength Length supported by the channel.
+     * @return Returns the transfer length.
+     */
+    private static int limitTransferLength(int shortLength, int appletLength,
+                                           int channelLength) {
+        return Math.max(shortLength, Math.min(appletLength, channelLength));
+    }
+
+    /**
+     * Sends a SELECT command unless the session of the APDU channel reports
+     * that the application or file is already selected with the same command
+     * data.
+     *
+     * @param command SELECT command.
+     * @return Returns the response with status word. If the command has been
+     *         skipped, the response contains status word 9000 without data.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems.
+     */
+    private NbtApduResponse sendSelect(@NotNull ApduCommand command)
+            throws ApduException {
+        if (isSelectSatisfied(command)) {
+            return new NbtApduResponse(
+                    new ApduResponse(Utils.getBytes(ApduResponse.SW_NO_ERROR),
+                                     0),
+                    NbtConstants.INS_SELECT);
+        }
+        return sendCommand(command);
     }
 
     /**
@@ -902,6 +1952,6 @@ public class NbtCommandSet extends ApduCommandSet {
     private NbtApduResponse sendCommand(@NotNull ApduCommand command)
             throws ApduException {
         ApduResponse apduResponse = super.send(command);
-        return new NbtApduResponse(apduResponse, (byte) command.getINS());
+        return NbtApduResponse.wrap(apduResponse, (byte) command.getINS());
     }
 }
\ No newline at end of file
@@ -0,0 +1,608 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+import com.infineon.hsw.apdu.ApduChannel;
+import com.infineon.hsw.apdu.ApduException;
+import com.infineon.hsw.apdu.nbt.model.AppletVersion;
+import com.infineon.hsw.apdu.nbt.model.AvailableMemory;
+import com.infineon.hsw.apdu.nbt.model.FileAccessPolicy;
+import com.infineon.hsw.utils.UtilException;
+import com.infineon.hsw.utils.annotation.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Asynchronous facade of the NBT command sets. Every operation returns
+ * immediately with a future and is executed by the serial executor of the
+ * APDU channel (see {@link ApduChannel#getExecutor()}). Operations of one
+ * channel are executed strictly in order of submission, also across several
+ * facades sharing the channel, while operations of different channels run
+ * concurrently. This allows host side work, e.g. preparing the data of the
+ * next tag, to overlap with the communication.
+ * <p>
+ * Byte arrays passed to an operation must not be modified until its future is
+ * completed. The synchronous command sets of the facade must only be used
+ * within an {@link INbtOperation}.
+ */
+public class NbtCommandSetAsync {
+    /**
+     * Executor running the operations in order of submission.
+     */
+    private final Executor executor;
+
+    /**
+     * Command set of the NBT application.
+     */
+    private final NbtCommandSet commandSet;
+
+    /**
+     * Command set of the NBT configurator application.
+     */
+    private final NbtCommandSetConfig configCommandSet;
+
+    /**
+     * Personalization command set of the NBT application.
+     */
+    private final NbtCommandSetPerso persoCommandSet;
+
+    /**
+     * Constructor of the asynchronous NBT command set to configure the
+     * reference of communication channel and log channel number.
+     *
+     * @param channel          Reference of communication channel associated
+     *         with command handler.
+     * @param logChannelNumber Number of logical channel or zero for basic
+     *         channel.
+     * @throws ApduException Throws an APDU exception, if AID object cannot be
+     *         converted into a byte array.
+     * @throws UtilException Throws an utility exception, if instance is unable
+     *         to create a command builder.
+     */
+    public NbtCommandSetAsync(@NotNull ApduChannel channel,
+                              @NotNull int logChannelNumber)
+            throws ApduException, UtilException {
+        executor = channel.getExecutor();
+        commandSet = new NbtCommandSet(channel, logChannelNumber);
+        configCommandSet = new NbtCommandSetConfig(channel, logChannelNumber);
+        persoCommandSet = new NbtCommandSetPerso(channel, logChannelNumber);
+    }
+
+    /**
+     * Returns the synchronous command set of the NBT application.
+     *
+     * @return Command set, only to be used within an operation.
+     */
+    public NbtCommandSet getCommandSet() {
+        return commandSet;
+    }
+
+    /**
+     * Returns the synchronous command set of the NBT configurator application.
+     *
+     * @return Command set, only to be used within an operation.
+     */
+    public NbtCommandSetConfig getConfigCommandSet() {
+        return configCommandSet;
+    }
+
+    /**
+     * Returns the synchronous personalization command set of the NBT
+     * application.
+     *
+     * @return Command set, only to be used within an operation.
+     */
+    public NbtCommandSetPerso getPersoCommandSet() {
+        return persoCommandSet;
+    }
+
+    /**
+     * Submits an operation for execution after all operations submitted
+     * before to the same channel.
+     *
+     * @param operation Operation to be executed.
+     * @param <T>       Type of the operation result.
+     * @return Future receiving the result of the operation or the exception
+     *         or error thrown by it.
+     */
+    public <T> CompletableFuture<T> submit(
+            @NotNull final INbtOperation<T> operation) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isDone())
+                        return;
+                    try {
+                        future.complete(operation.run(commandSet,
+                                                      configCommandSet,
+                                                      persoCommandSet));
+                    } catch (Throwable e) {
+                        // errors must not leave the future pending
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Submits a flow of operations which are executed one after the other
+     * without operations of other submissions in between. The flow stops at
+     * the first operation throwing an exception.
+     *
+     * @param operations Operations of the flow in order of execution.
+     * @param <T>        Type of the operation results.
+     * @return Future receiving the results of all operations in order of
+     *         execution or the first exception.
+     */
+    public <T> CompletableFuture<List<T>> submitFlow(
+            @NotNull final List<? extends INbtOperation<? extends T>>
+                    operations) {
+        return submit(new INbtOperation<List<T>>() {
+            @Override
+            public List<T> run(NbtCommandSet commandSet,
+                               NbtCommandSetConfig configCommandSet,
+                               NbtCommandSetPerso persoCommandSet)
+                    throws Exception {
+                List<T> results = new ArrayList<>(operations.size());
+                for (INbtOperation<? extends T> operation : operations) {
+                    results.add(operation.run(commandSet, configCommandSet,
+                                              persoCommandSet));
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * Submits an operation as soon as a previous future has been completed
+     * successfully. If the previous future failed, the operation is not
+     * executed and the returned future fails with the same exception.
+     * Operations submitted in the meantime are executed before the chained
+     * operation, use {@link #submitFlow(List)} for flows which must not be
+     * interrupted.
+     *
+     * @param previous  Future to wait for.
+     * @param operation Operation to be executed afterwards.
+     * @param <T>       Type of the operation result.
+     * @return Future receiving the result of the operation.
+     */
+    public <T> CompletableFuture<T> then(
+            @NotNull CompletableFuture<?> previous,
+            @NotNull final INbtOperation<T> operation) {
+        return previous.thenCompose(new Function<Object, CompletionStage<T>>() {
+            @Override
+            public CompletionStage<T> apply(Object result) {
+                return submit(operation);
+            }
+        });
+    }
+
+    /**
+     * Selects the NBT application.
+     *
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> selectApplication() {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.selectApplication();
+            }
+        });
+    }
+
+    /**
+     * Selects a file of the NBT application.
+     *
+     * @param fileId        File identifier to be selected.
+     * @param readPassword  Read password or null.
+     * @param writePassword Write password or null.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> selectFile(
+            @NotNull final short fileId, final byte[] readPassword,
+            final byte[] writePassword) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.selectFile(fileId, readPassword,
+                                             writePassword);
+            }
+        });
+    }
+
+    /**
+     * Reads data from the selected file.
+     *
+     * @param offset      Offset within the file.
+     * @param expectedLen Number of bytes to be read.
+     * @return Future receiving the response with data and status word.
+     */
+    public CompletableFuture<NbtApduResponse> readBinary(
+            @NotNull final short offset, @NotNull final short expectedLen) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.readBinary(offset, expectedLen);
+            }
+        });
+    }
+
+    /**
+     * Writes data into the selected file.
+     *
+     * @param offset Offset within the file.
+     * @param data   Data to be written.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> updateBinary(
+            @NotNull final short offset, @NotNull final byte[] data) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.updateBinary(offset, data);
+            }
+        });
+    }
+
+    /**
+     * Reads a data object of the NBT application.
+     *
+     * @param tag Tag of the data object.
+     * @return Future receiving the response with data and status word.
+     */
+    public CompletableFuture<NbtApduResponse> getData(
+            @NotNull final short tag) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.getData(tag);
+            }
+        });
+    }
+
+    /**
+     * Reads the available memory of the NBT application.
+     *
+     * @return Future receiving the available memory.
+     */
+    public CompletableFuture<AvailableMemory> getDataAvailableMemory() {
+        return submit(new NbtOperation<AvailableMemory>() {
+            @Override
+            AvailableMemory run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.getDataAvailableMemory();
+            }
+        });
+    }
+
+    /**
+     * Reads the version of the NBT application.
+     *
+     * @return Future receiving the applet version.
+     */
+    public CompletableFuture<AppletVersion> getDataAppletVersion() {
+        return submit(new NbtOperation<AppletVersion>() {
+            @Override
+            AppletVersion run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.getDataAppletVersion();
+            }
+        });
+    }
+
+    /**
+     * Authenticates the tag with a challenge.
+     *
+     * @param challenge Challenge to be signed by the tag.
+     * @return Future receiving the response with signature and status word.
+     */
+    public CompletableFuture<NbtApduResponse> authenticateTag(
+            @NotNull final byte[] challenge) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.authenticateTag(challenge);
+            }
+        });
+    }
+
+    /**
+     * Reads and decodes all file access policies.
+     *
+     * @param masterPassword Master password or null.
+     * @return Future receiving the list of file access policies.
+     */
+    public CompletableFuture<List<FileAccessPolicy>> readFapList(
+            final byte[] masterPassword) {
+        return submit(new NbtOperation<List<FileAccessPolicy>>() {
+            @Override
+            List<FileAccessPolicy> run(NbtCommandSet commandSet)
+                    throws Exception {
+                return commandSet.readFapList(masterPassword);
+            }
+        });
+    }
+
+    /**
+     * Updates the file access policy of a file.
+     *
+     * @param fapPolicy      File access policy to be written.
+     * @param masterPassword Master password or null.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> updateFap(
+            @NotNull final FileAccessPolicy fapPolicy,
+            final byte[] masterPassword) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.updateFap(fapPolicy, masterPassword);
+            }
+        });
+    }
+
+    /**
+     * Updates the file access policies of several files with a single
+     * selection of the FAP file.
+     *
+     * @param policies       File access policies to be written.
+     * @param masterPassword Master password or null.
+     * @return Future receiving the responses mapped by file identifier.
+     */
+    public CompletableFuture<Map<Short, NbtApduResponse>> updateFapList(
+            @NotNull final List<FileAccessPolicy> policies,
+            final byte[] masterPassword) {
+        return submit(new NbtOperation<Map<Short, NbtApduResponse>>() {
+            @Override
+            Map<Short, NbtApduResponse> run(NbtCommandSet commandSet)
+                    throws Exception {
+                return commandSet.updateFapList(policies, masterPassword);
+            }
+        });
+    }
+
+    /**
+     * Reads the NDEF message of an NDEF file.
+     *
+     * @param ndefFileId   File identifier of the NDEF file.
+     * @param readPassword Read password or null.
+     * @return Future receiving the response with NDEF message and status word.
+     */
+    public CompletableFuture<NbtApduResponse> readNdefMessage(
+            @NotNull final short ndefFileId, final byte[] readPassword) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.readNdefMessage(ndefFileId, readPassword);
+            }
+        });
+    }
+
+    /**
+     * Reads the NDEF message of the default NDEF file.
+     *
+     * @return Future receiving the response with NDEF message and status word.
+     */
+    public CompletableFuture<NbtApduResponse> readNdefMessage() {
+        return readNdefMessage(NbtConstants.NDEF_FILE_ID, null);
+    }
+
+    /**
+     * Writes an NDEF message into an NDEF file.
+     *
+     * @param ndefFileId    File identifier of the NDEF file.
+     * @param writePassword Write password or null.
+     * @param dataBytes     NDEF message.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> updateNdefMessage(
+            @NotNull final short ndefFileId, final byte[] writePassword,
+            @NotNull final byte[] dataBytes) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.updateNdefMessage(ndefFileId, writePassword,
+                                                    dataBytes);
+            }
+        });
+    }
+
+    /**
+     * Writes an NDEF message into the default NDEF file.
+     *
+     * @param dataBytes NDEF message.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> updateNdefMessage(
+            @NotNull byte[] dataBytes) {
+        return updateNdefMessage(NbtConstants.NDEF_FILE_ID, null, dataBytes);
+    }
+
+    /**
+     * Writes only the changed ranges of an NDEF message into the default NDEF
+     * file.
+     *
+     * @param newMessage NDEF message.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> updateNdefMessageDiff(
+            @NotNull final byte[] newMessage) {
+        return submit(new NbtOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSet commandSet) throws Exception {
+                return commandSet.updateNdefMessageDiff(newMessage);
+            }
+        });
+    }
+
+    /**
+     * Selects the NBT configurator application.
+     *
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> selectConfiguratorApplication() {
+        return submit(new ConfigOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSetConfig configCommandSet)
+                    throws Exception {
+                return configCommandSet.selectConfiguratorApplication();
+            }
+        });
+    }
+
+    /**
+     * Sets a configuration data object.
+     *
+     * @param tag  Tag of the configuration data object.
+     * @param data Value of the configuration data object.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> setConfigData(
+            @NotNull final short tag, @NotNull final byte[] data) {
+        return submit(new ConfigOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSetConfig configCommandSet)
+                    throws Exception {
+                return configCommandSet.setConfigData(tag, data);
+            }
+        });
+    }
+
+    /**
+     * Reads a configuration data object.
+     *
+     * @param tag Tag of the configuration data object.
+     * @return Future receiving the response with data and status word.
+     */
+    public CompletableFuture<NbtApduResponse> getConfigData(
+            @NotNull final short tag) {
+        return submit(new ConfigOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSetConfig configCommandSet)
+                    throws Exception {
+                return configCommandSet.getConfigData(tag);
+            }
+        });
+    }
+
+    /**
+     * Personalizes a data group of the NBT application.
+     *
+     * @param dgi             Data group identifier.
+     * @param personalizeData Data to be personalized.
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> personalizeData(
+            @NotNull final short dgi, @NotNull final byte[] personalizeData) {
+        return submit(new PersoOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSetPerso persoCommandSet)
+                    throws Exception {
+                return persoCommandSet.personalizeData(dgi, personalizeData);
+            }
+        });
+    }
+
+    /**
+     * Finalizes the personalization of the NBT application.
+     *
+     * @return Future receiving the response with status word.
+     */
+    public CompletableFuture<NbtApduResponse> finalizePersonalization() {
+        return submit(new PersoOperation<NbtApduResponse>() {
+            @Override
+            NbtApduResponse run(NbtCommandSetPerso persoCommandSet)
+                    throws Exception {
+                return persoCommandSet.finalizePersonalization();
+            }
+        });
+    }
+
+    /**
+     * Operation using only the command set of the NBT application.
+     *
+     * @param <T> Type of the operation result.
+     */
+    private abstract static class NbtOperation<T> implements INbtOperation<T> {
+        @Override
+        public T run(NbtCommandSet commandSet,
+                     NbtCommandSetConfig configCommandSet,
+                     NbtCommandSetPerso persoCommandSet) throws Exception {
+            return run(commandSet);
+        }
+
+        /**
+         * Executes the operation.
+         *
+         * @param commandSet Command set of the NBT application.
+         * @return Result of the operation.
+         * @throws Exception If the operation failed.
+         */
+        abstract T run(NbtCommandSet commandSet) throws Exception;
+    }
+
+    /**
+     * Operation using only the command set of the NBT configurator
+     * application.
+     *
+     * @param <T> Type of the operation result.
+     */
+    private abstract static class ConfigOperation<T>
+            implements INbtOperation<T> {
+        @Override
+        public T run(NbtCommandSet commandSet,
+                     NbtCommandSetConfig configCommandSet,
+                     NbtCommandSetPerso persoCommandSet) throws Exception {
+            return run(configCommandSet);
+        }
+
+        /**
+         * Executes the operation.
+         *
+         * @param configCommandSet Command set of the NBT configurator
+         *         application.
+         * @return Result of the operation.
+         * @throws Exception If the operation failed.
+         */
+        abstract T run(NbtCommandSetConfig configCommandSet) throws Exception;
+    }
+
+    /**
+     * Operation using only the personalization command set of the NBT
+     * application.
+     *
+     * @param <T> Type of the operation result.
+     */
+    private abstract static class PersoOperation<T>
+            implements INbtOperation<T> {
+        @Override
+        public T run(NbtCommandSet commandSet,
+                     NbtCommandSetConfig configCommandSet,
+                     NbtCommandSetPerso persoCommandSet) throws Exception {
+            return run(persoCommandSet);
+        }
+
+        /**
+         * Executes the operation.
+         *
+         * @param persoCommandSet Personalization command set of the NBT
+         *         application.
+         * @return Result of the operation.
+         * @throws Exception If the operation failed.
+         */
+        abstract T run(NbtCommandSetPerso persoCommandSet) throws Exception;
+    }
+}
@@ -9,11 +9,12 @@ import com.infineon.hsw.apdu.ApduCommand;
 import com.infineon.hsw.apdu.ApduCommandSet;
 import com.infineon.hsw.apdu.ApduException;
 import com.infineon.hsw.apdu.ApduResponse;
-import com.infineon.hsw.utils.Tlv;
-import com.infineon.hsw.utils.TlvParser;
+import com.infineon.hsw.apdu.ApduSession;
+import com.infineon.hsw.utils.TlvReader;
 import com.infineon.hsw.utils.UtilException;
+import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
-import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -40,6 +41,11 @@ public class NbtCommandSetConfig extends ApduCommandSet {
 
     private final NbtCommandBuilderConfig commandBuilder;
 
+    /**
+     * Key of the configuration snapshot within the session of the channel.
+     */
+    private static final Object SNAPSHOT_KEY = ConfigSnapshot.class;
+
     /**
      * Constructor of NBT configuration command set to configure the reference
      * of communication channel and log channel number.
@@ -62,7 +68,9 @@ public class NbtCommandSetConfig extends ApduCommandSet {
     }
 
     /**
-     * Selects the NBT configurator application.
+     * Selects the NBT configurator application. No command is sent if the
+     * application is already selected according to the {@link ApduSession} of
+     * the channel.
      *
      * @return Returns the response with status word.
      * @throws ApduException Throws an APDU exception, in case command creation
@@ -71,7 +79,14 @@ public class NbtCommandSetConfig extends ApduCommandSet {
     public NbtApduResponse selectConfiguratorApplication()
             throws ApduException {
         logger.info(LOG_MESSAGE_SELECT_AID_CONFIGURATOR);
-        return sendCommand(commandBuilder.selectConfiguratorApplication());
+        ApduCommand command = commandBuilder.selectConfiguratorApplication();
+        if (isSelectSatisfied(command)) {
+            return new NbtApduResponse(
+                    new ApduResponse(Utils.getBytes(ApduResponse.SW_NO_ERROR),
+                                     0),
+                    NbtConstants.INS_SELECT);
+        }
+        return sendCommand(command);
     }
 
     /**
@@ -89,9 +104,8 @@ public class NbtCommandSetConfig extends ApduCommandSet {
      */
     public NbtApduResponse setConfigData(@NotNull short tag, @NotNull byte data)
             throws ApduException, UtilException {
-        logger.info(LOG_MESSAGE_SET_CONFIGURATOR);
         byte[] dataArr = new byte[] { data };
-        return sendCommand(commandBuilder.setConfigData(tag, dataArr));
+        return setConfigData(tag, dataArr);
     }
 
     /**
@@ -111,7 +125,106 @@ public class NbtCommandSetConfig extends ApduCommandSet {
                                          @NotNull byte[] data)
             throws ApduException, UtilException {
         logger.info(LOG_MESSAGE_SET_CONFIGURATOR);
-        return sendCommand(commandBuilder.setConfigData(tag, data));
+        NbtApduResponse response =
+                sendCommand(commandBuilder.setConfigData(tag, data));
+        updateSnapshot(tag, data, response);
+        return response;
+    }
+
+    /**
+     * Sets several configuration values, sending one SET CONFIGURATION
+     * command per value which differs from the configuration snapshot of the
+     * session. Values not yet in the snapshot are written without reading
+     * them first, so the command count never exceeds the one of setting each
+     * value. The configurator application is selected if necessary.
+     *
+     * @param config Configuration data mapped by configuration tag.
+     * @return Returns the response of the last command sent, which is the
+     *         response with the first error status word if any.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or build command failure.
+     * @throws UtilException Throws an utility exception, if instance is unable
+     *         to build or parse configuration data.
+     */
+    public NbtApduResponse applyConfig(@NotNull Map<Short, byte[]> config)
+            throws ApduException, UtilException {
+        NbtApduResponse response = selectConfiguratorApplication();
+        if (response.isSwError()) {
+            return response;
+        }
+
+        ConfigSnapshot snapshot = getConfigSnapshot();
+        for (Map.Entry<Short, byte[]> entry : config.entrySet()) {
+            short tag = entry.getKey();
+            byte[] value = entry.getValue();
+            if (value == null) {
+                throw new IllegalArgumentException("Data cannot be null");
+            }
+            if (snapshot.matches(tag, value)) {
+                continue;
+            }
+
+            response = setConfigData(tag, value);
+            if (response.isSwError()) {
+                return response;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Returns the configuration snapshot of the session. The snapshot is
+     * shared by all configurator command sets using the same channel and
+     * replaced by an empty one after connect, disconnect or reset.
+     *
+     * @return Returns the configuration snapshot.
+     */
+    public ConfigSnapshot getConfigSnapshot() {
+        ApduSession session = getChannel().getSession();
+        synchronized (session) {
+            ConfigSnapshot snapshot =
+                    (ConfigSnapshot) session.getAttribute(SNAPSHOT_KEY);
+            if (snapshot == null) {
+                snapshot = new ConfigSnapshot();
+                session.setAttribute(SNAPSHOT_KEY, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Reads all known configuration tags not yet contained in the
+     * configuration snapshot of the session. Tags not supported by the tag
+     * ('6A88') are skipped. The configurator application is selected if
+     * necessary.
+     *
+     * @return Returns the configuration snapshot.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or if a command returns an error status word.
+     * @throws UtilException Throws an utility exception, if instance is unable
+     *         to parse configuration data.
+     */
+    public ConfigSnapshot readConfigSnapshot()
+            throws ApduException, UtilException {
+        NbtApduResponse response = selectConfiguratorApplication();
+        if (response.isSwError()) {
+            throw new ApduException(response.getError());
+        }
+
+        ConfigSnapshot snapshot = getConfigSnapshot();
+        for (NbtConstants.ConfigurationTags entry :
+             NbtConstants.ConfigurationTags.values()) {
+            if (snapshot.contains(entry.getTag())) {
+                continue;
+            }
+            response = readConfigTag(entry.getTag(), snapshot);
+            if (response.isSwError() &&
+                (response.getSW() !=
+                 (NbtErrorCodes.DATA_NOT_FOUND & 0xFFFF))) {
+                throw new ApduException(response.getError());
+            }
+        }
+        return snapshot;
     }
 
     /**
@@ -149,18 +262,62 @@ public class NbtCommandSetConfig extends ApduCommandSet {
         NbtApduResponse response = getConfigData(tag);
 
         if (response.getSW() == ApduResponse.SW_NO_ERROR) {
-            TlvParser parser = new TlvParser(response.getData());
-            List<Object> tlvList = parser.parseDgiTlvStructure();
-            if (tlvList.isEmpty()) {
+            byte[] data = response.getData();
+            TlvReader reader = new TlvReader(data, 0, data.length, true);
+            if (!reader.next()) {
                 return new byte[] {};
             }
-            return ((Tlv) tlvList.get(0)).getValue();
+            byte[] value = reader.copyValue();
+            getConfigSnapshot().put(tag, value);
+            return value;
         } else {
             throw new ApduException(
                     "Could not read tag data, command returned error SW");
         }
     }
 
+    /**
+     * Reads a configuration tag and stores all returned values in the
+     * configuration snapshot.
+     *
+     * @param tag      Configuration tag.
+     * @param snapshot Configuration snapshot of the session.
+     * @return Returns the response with status word.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems.
+     * @throws UtilException Throws an utility exception, if the response data
+     *         cannot be parsed.
+     */
+    private NbtApduResponse readConfigTag(short tag, ConfigSnapshot snapshot)
+            throws ApduException, UtilException {
+        NbtApduResponse response = getConfigData(tag);
+        if (response.getSW() == ApduResponse.SW_NO_ERROR) {
+            byte[] data = response.getData();
+            TlvReader reader = new TlvReader(data, 0, data.length, true);
+            while (reader.next()) {
+                snapshot.put((short) reader.tag(), data, reader.valueOffset(),
+                             reader.valueLength());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Updates the configuration snapshot after a SET CONFIGURATION command.
+     *
+     * @param tag      Configuration tag.
+     * @param data     Configuration data sent.
+     * @param response Response of the command.
+     */
+    private void updateSnapshot(short tag, byte[] data,
+                                NbtApduResponse response) {
+        if (response.isSwError()) {
+            getConfigSnapshot().invalidate(tag);
+        } else {
+            getConfigSnapshot().put(tag, data);
+        }
+    }
+
     /**
      * Sends a command and waits for response. This method modifies the
      * APDU response by adding an error message if response status word
@@ -175,6 +332,6 @@ public class NbtCommandSetConfig extends ApduCommandSet {
     private NbtApduResponse sendCommand(@NotNull ApduCommand command)
             throws ApduException {
         ApduResponse apduResponse = super.send(command);
-        return new NbtApduResponse(apduResponse, (byte) command.getINS());
+        return NbtApduResponse.wrap(apduResponse, (byte) command.getINS());
     }
 }
@@ -9,8 +9,12 @@ import com.infineon.hsw.apdu.ApduCommand;
 import com.infineon.hsw.apdu.ApduCommandSet;
 import com.infineon.hsw.apdu.ApduException;
 import com.infineon.hsw.apdu.ApduResponse;
+import com.infineon.hsw.apdu.nbt.NbtCommandBuilderPerso.Personalize_Data_Dgi;
+import com.infineon.hsw.utils.Tlv;
 import com.infineon.hsw.utils.UtilException;
+import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +31,11 @@ public class NbtCommandSetPerso extends ApduCommandSet {
      */
     private final NbtCommandBuilderPerso commandBuilder;
 
+    /**
+     * Maximum number of command data bytes of one PERSONALIZE DATA command.
+     */
+    private int maxCommandLength = NbtConstants.MAX_LC;
+
     /**
      * Constructor of NBT personalization command set to configure the reference
      * of communication channel and log channel number.
@@ -70,6 +79,117 @@ public class NbtCommandSetPerso extends ApduCommandSet {
                 commandBuilder.personalizeData(dgi, personalizeData));
     }
 
+    /**
+     * Personalizes a sequence of data elements of the applet with as few
+     * commands as possible. The DGIs are packed into PERSONALIZE DATA commands
+     * up to the maximum command length (see {@link #setMaxCommandLength(int)}).
+     * NDEF and proprietary file DGIs ([Offset (2 bytes)] [file content]) not
+     * fitting into one command are split into several DGIs with adjusted
+     * offsets. The finalize DGI 'BF63' may be part of the list.
+     *
+     * @param dgis DGIs in order of personalization. The tag of each TLV is the
+     *         DGI, its value the data to be personalized.
+     * @return Returns the response of the last command sent, which is the
+     *         response with the first error status word if any, or null if
+     *         the list is empty.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems, build command failure or if a DGI which cannot be
+     *         split exceeds the maximum command length.
+     * @throws UtilException Throws an utility exception, if the value of a
+     *         TLV cannot be encoded.
+     */
+    public NbtApduResponse personalizeData(@NotNull List<Tlv> dgis)
+            throws ApduException, UtilException {
+        logger.info(LOG_MESSAGE_PERSONALIZE_DATA);
+        byte[] frame = new byte[maxCommandLength];
+        int used = 0;
+        NbtApduResponse response = null;
+
+        for (Tlv dgi : dgis) {
+            short tag = (short) dgi.getTag();
+            byte[] value = dgi.getValue();
+            if (getDgiLength(value.length) <= maxCommandLength) {
+                if (used + getDgiLength(value.length) > maxCommandLength) {
+                    response = sendDgis(frame, used);
+                    used = 0;
+                    if (response.isSwError()) {
+                        return response;
+                    }
+                }
+                used = putDgi(frame, used, tag, value, 0, value.length);
+                continue;
+            }
+
+            if (!isFileContentDgi(tag) ||
+                (value.length < NbtConstants.DGI_FILE_OFFSET_LENGTH)) {
+                throw new ApduException(NbtErrorCodes.ERR_DGI_TOO_LONG);
+            }
+
+            // split file content into DGIs with adjusted file offsets
+            int fileOffset = Utils.getUINT16(value, 0);
+            int offset = NbtConstants.DGI_FILE_OFFSET_LENGTH;
+            while (offset < value.length) {
+                int chunk = Math.min(getMaxFileChunk(maxCommandLength - used),
+                                     value.length - offset);
+                if (chunk <= 0) {
+                    if (used == 0) {
+                        throw new ApduException(
+                                NbtErrorCodes.ERR_DGI_TOO_LONG);
+                    }
+                    response = sendDgis(frame, used);
+                    used = 0;
+                    if (response.isSwError()) {
+                        return response;
+                    }
+                    continue;
+                }
+
+                int chunkOffset = fileOffset + offset -
+                                  NbtConstants.DGI_FILE_OFFSET_LENGTH;
+                used = putDgiHeader(frame, used, tag,
+                                    NbtConstants.DGI_FILE_OFFSET_LENGTH +
+                                            chunk);
+                frame[used++] = (byte) (chunkOffset >> 8);
+                frame[used++] = (byte) chunkOffset;
+                System.arraycopy(value, offset, frame, used, chunk);
+                used += chunk;
+                offset += chunk;
+            }
+        }
+
+        if (used > 0) {
+            response = sendDgis(frame, used);
+        }
+        return response;
+    }
+
+    /**
+     * Sets the maximum number of command data bytes of one PERSONALIZE DATA
+     * command used by {@link #personalizeData(List)}, e.g. the write length
+     * negotiated by {@link NbtCommandSet#negotiateTransferLengths()}. Lengths
+     * beyond 255 bytes lead to extended length APDUs.
+     *
+     * @param maxCommandLength Maximum number of command data bytes.
+     */
+    public void setMaxCommandLength(int maxCommandLength) {
+        if ((maxCommandLength <= 0) ||
+            (maxCommandLength > NbtConstants.MAX_EXTENDED_LENGTH)) {
+            throw new IllegalArgumentException(
+                    "Invalid maximum command length");
+        }
+        this.maxCommandLength = maxCommandLength;
+    }
+
+    /**
+     * Returns the maximum number of command data bytes of one PERSONALIZE
+     * DATA command.
+     *
+     * @return Returns the maximum command length.
+     */
+    public int getMaxCommandLength() {
+        return maxCommandLength;
+    }
+
     /**
      * Finalizes the personalization state, thereby transitioning the secure
      * element to operational state.
@@ -83,6 +203,100 @@ public class NbtCommandSetPerso extends ApduCommandSet {
         return sendCommand(commandBuilder.finalizePersonalization());
     }
 
+    /**
+     * Sends a PERSONALIZE DATA command with already encoded DGIs.
+     *
+     * @param frame  Buffer containing the encoded DGIs.
+     * @param length Total length of the encoded DGIs.
+     * @return Returns the response with status word.
+     * @throws ApduException Throws an APDU exception, in case of communication
+     *         problems or build command failure.
+     */
+    private NbtApduResponse sendDgis(byte[] frame, int length)
+            throws ApduException {
+        return sendCommand(commandBuilder.personalizeData(frame, 0, length));
+    }
+
+    /**
+     * Returns the encoded length of a DGI including tag and length field.
+     *
+     * @param valueLength Length of the DGI value.
+     * @return Returns the encoded length.
+     */
+    private static int getDgiLength(int valueLength) {
+        return NbtConstants.DGI_TAG_LENGTH +
+               Tlv.encodeDgiLength(valueLength).length + valueLength;
+    }
+
+    /**
+     * Returns the largest file content fitting into a file DGI of the given
+     * encoded length.
+     *
+     * @param space Space available for the DGI.
+     * @return Returns the content length or a value less than one if no
+     *         content fits.
+     */
+    private static int getMaxFileChunk(int space) {
+        int header = NbtConstants.DGI_TAG_LENGTH +
+                     NbtConstants.DGI_FILE_OFFSET_LENGTH;
+        int shortChunk = Math.min(space - header - 1,
+                                  NbtConstants.DGI_MAX_SHORT_LENGTH -
+                                          NbtConstants.DGI_FILE_OFFSET_LENGTH);
+        return Math.max(shortChunk, space - header - 3);
+    }
+
+    /**
+     * Writes tag and length of a DGI into a buffer.
+     *
+     * @param frame       Buffer receiving the DGI.
+     * @param offset      Offset within the buffer.
+     * @param tag         Data group identifier.
+     * @param valueLength Length of the DGI value.
+     * @return Returns the offset following the length field.
+     */
+    private static int putDgiHeader(byte[] frame, int offset, short tag,
+                                    int valueLength) {
+        byte[] length = Tlv.encodeDgiLength(valueLength);
+        frame[offset++] = (byte) (tag >> 8);
+        frame[offset++] = (byte) tag;
+        System.arraycopy(length, 0, frame, offset, length.length);
+        return offset + length.length;
+    }
+
+    /**
+     * Writes a complete DGI into a buffer.
+     *
+     * @param frame       Buffer receiving the DGI.
+     * @param offset      Offset within the buffer.
+     * @param tag         Data group identifier.
+     * @param value       Buffer containing the DGI value.
+     * @param valueOffset Offset of the value within its buffer.
+     * @param valueLength Length of the DGI value.
+     * @return Returns the offset following the DGI.
+     */
+    private static int putDgi(byte[] frame, int offset, short tag,
+                              byte[] value, int valueOffset,
+                              int valueLength) {
+        offset = putDgiHeader(frame, offset, tag, valueLength);
+        System.arraycopy(value, valueOffset, frame, offset, valueLength);
+        return offset + valueLength;
+    }
+
+    /**
+     * Checks if a DGI contains NDEF or proprietary file content preceded by a
+     * file offset, which allows splitting it into several DGIs.
+     *
+     * @param tag Data group identifier.
+     * @return Returns true for file content DGIs.
+     */
+    private static boolean isFileContentDgi(short tag) {
+        return (tag == Personalize_Data_Dgi.E104.getDgi()) ||
+               (tag == Personalize_Data_Dgi.E1A1.getDgi()) ||
+               (tag == Personalize_Data_Dgi.E1A2.getDgi()) ||
+               (tag == Personalize_Data_Dgi.E1A3.getDgi()) ||
+               (tag == Personalize_Data_Dgi.E1A4.getDgi());
+    }
+
     /**
      * Sends a command and waits for response. This method modifies the
      * APDU response by adding an error message if response status word
@@ -97,6 +311,6 @@ public class NbtCommandSetPerso extends ApduCommandSet {
     private NbtApduResponse sendCommand(@NotNull ApduCommand command)
             throws ApduException {
         ApduResponse apduResponse = super.send(command);
-        return new NbtApduResponse(apduResponse, (byte) command.getINS());
+        return NbtApduResponse.wrap(apduResponse, (byte) command.getINS());
     }
 }
@@ -184,6 +184,28 @@ public final class NbtConstants {
      */
     public static final byte FILE_ID_LENGTH = (byte) 0x02;
 
+    /**
+     * Constant defines the length of a FAP record (FileID and policy bytes).
+     */
+    public static final byte FAP_RECORD_LENGTH =
+            FILE_ID_LENGTH + POLICY_FIELD_LENGTH;
+
+    /**
+     * Constant defines the length of a DGI tag.
+     */
+    public static final byte DGI_TAG_LENGTH = 0x02;
+
+    /**
+     * Constant defines the length of the file offset preceding the content of
+     * NDEF and proprietary file DGIs.
+     */
+    public static final byte DGI_FILE_OFFSET_LENGTH = 0x02;
+
+    /**
+     * Constant defines the largest DGI length encoded in a single byte.
+     */
+    public static final short DGI_MAX_SHORT_LENGTH = (short) 0x00FE;
+
     /**
      * Constant defines the LC as null, if LC is not present.
      */
@@ -231,6 +253,11 @@ public final class NbtConstants {
      */
     public static final short T4T_NDEF_MSG_START_OFFSET = (short) 0x0002;
 
+    /**
+     * Maximum length of an NDEF message, limited by the 2-byte NLEN field.
+     */
+    public static final int MAX_NDEF_LENGTH = 0xFFFF;
+
     /**
      * Constant defines the maximum possible LE value.
      */
@@ -241,6 +268,46 @@ public final class NbtConstants {
      */
     public static final short MAX_LC = (short) 0x00FF;
 
+    /**
+     * Constant defines the maximum LE/LC value used for extended length
+     * transfers. Offsets of READ/UPDATE BINARY are limited to 15 bits.
+     */
+    public static final short MAX_EXTENDED_LENGTH = (short) 0x7FFF;
+
+    /**
+     * Constant defines the overhead of an extended length command APDU
+     * (header and 3-byte LC).
+     */
+    public static final short EXTENDED_COMMAND_OVERHEAD = (short) 0x0007;
+
+    /**
+     * Constant defines the length of the status word in a response APDU.
+     */
+    public static final short SW_LENGTH = (short) 0x0002;
+
+    /**
+     * Constant defines the FileID of the capability container file.
+     */
+    public static final short CC_FILE_ID = (short) 0xE103;
+
+    /**
+     * Constant defines the offset of the maximum R-APDU data size (MLe) in the
+     * capability container file.
+     */
+    public static final short CC_OFFSET_MLE = (short) 0x0003;
+
+    /**
+     * Constant defines the offset of the maximum C-APDU data size (MLc) in the
+     * capability container file.
+     */
+    public static final short CC_OFFSET_MLC = (short) 0x0005;
+
+    /**
+     * Constant defines the number of bytes of the capability container file
+     * up to and including MLc.
+     */
+    public static final short CC_HEADER_LENGTH = (short) 0x0007;
+
     // cSpell:ignore GPIO
     /**
      * Enumeration defines the list of tags and length of the configuration
@@ -118,6 +118,50 @@ public final class NbtErrorCodes {
     public static final String
             ERR_DATA_NULL = "Input data bytes cannot be null";
 
+    /**
+     * Exception message if the NDEF file does not contain a valid NDEF
+     * message length or ends before the NDEF message.
+     */
+    public static final String
+            ERR_INVALID_NDEF_FILE = "Invalid NDEF file content";
+
+    /**
+     * Exception message if the target buffer cannot take the NDEF message.
+     */
+    public static final String
+            ERR_NDEF_BUFFER_TOO_SMALL = "Buffer too small for NDEF message";
+
+    /**
+     * Exception message if the NDEF message length cannot be encoded in NLEN.
+     */
+    public static final String
+            ERR_NDEF_MESSAGE_TOO_LONG = "NDEF message too long";
+
+    /**
+     * Exception message if the input data ends before the given length.
+     */
+    public static final String ERR_UNEXPECTED_END_OF_DATA =
+            "Input data ended before the given length";
+
+    /**
+     * Exception message if a list contains several policies of a file.
+     */
+    public static final String
+            ERR_DUPLICATE_FAP = "Duplicate file access policy for file";
+
+    /**
+     * Exception message if the number of FAP records per command is invalid.
+     */
+    public static final String ERR_INVALID_RECORDS_PER_COMMAND =
+            "Number of FAP records per command must be at least 1";
+
+    /**
+     * Exception message if a DGI does not fit into one command and cannot be
+     * split.
+     */
+    public static final String ERR_DGI_TOO_LONG =
+            "DGI exceeds the maximum command length";
+
     /**
      * Error message if unable to read the bytes.
      */
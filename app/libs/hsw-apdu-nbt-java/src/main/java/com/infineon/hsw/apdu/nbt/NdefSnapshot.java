@@ -0,0 +1,163 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+import com.infineon.hsw.utils.annotation.NotNull;
+
+/**
+ * Compact snapshot of an NDEF message stored in an NDEF formatted file. The
+ * message is divided into chunks aligned to file offsets which are multiples
+ * of the chunk size, so the first chunk also contains the 2-byte message
+ * length (NLEN). Instead of the message only the length and a 64-bit hash
+ * of every chunk are kept.
+ * <p>
+ * A snapshot of the last written message allows
+ * {@link NbtCommandSet#updateNdefMessageDiff(short, byte[], byte[],
+ * NdefSnapshot)} to rewrite only the changed chunks without reading the file
+ * or keeping a copy of the message. Using the maximum write length of the
+ * command set as chunk size leads to one UPDATE BINARY command per changed
+ * chunk, plus two commands for clearing and setting the message length.
+ */
+public class NdefSnapshot {
+    /**
+     * Offset basis of the FNV-1a hash.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    /**
+     * Prime of the FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Length of the NDEF message.
+     */
+    private final int length;
+
+    /**
+     * Number of file bytes per chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Hashes of the message bytes of every chunk.
+     */
+    private final long[] hashes;
+
+    /**
+     * Constructor of a snapshot of an NDEF message.
+     *
+     * @param message   NDEF message stored in the file.
+     * @param chunkSize Number of file bytes per chunk, e.g. the maximum write
+     *         length of the command set. The chunk size must be larger than
+     *         the 2-byte message length.
+     */
+    public NdefSnapshot(@NotNull byte[] message, int chunkSize) {
+        if (message == null) {
+            throw new IllegalArgumentException("NDEF message must not be null");
+        }
+        if (chunkSize <= NbtConstants.T4T_NDEF_MSG_START_OFFSET) {
+            throw new IllegalArgumentException(
+                    "Chunk size must be larger than the message length field");
+        }
+        this.length = message.length;
+        this.chunkSize = chunkSize;
+
+        int count = 0;
+        if (length > 0) {
+            // File offset of the last message byte determines the last chunk.
+            int lastOffset = length - 1 +
+                             NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+            count = lastOffset / chunkSize + 1;
+        }
+        hashes = new long[count];
+        int from = 0;
+        for (int chunk = 0; chunk < count; chunk++) {
+            int to = chunkEnd(from, chunkSize, length);
+            hashes[chunk] = hash(message, from, to);
+            from = to;
+        }
+    }
+
+    /**
+     * Returns the length of the NDEF message.
+     *
+     * @return Returns the message length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the number of file bytes per chunk.
+     *
+     * @return Returns the chunk size.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the number of chunks containing message bytes.
+     *
+     * @return Returns the number of chunks.
+     */
+    public int getChunkCount() {
+        return hashes.length;
+    }
+
+    /**
+     * Checks if a chunk of a new message equals the snapshot. The range must
+     * be a whole chunk of the new message as returned by
+     * {@link #chunkEnd(int, int, int)} with the chunk size of the snapshot.
+     *
+     * @param message New NDEF message.
+     * @param from    Index of the first message byte of the chunk.
+     * @param to      Index after the last message byte of the chunk.
+     * @return Returns true if the snapshot contains the same chunk.
+     */
+    /* default */ boolean matches(@NotNull byte[] message, int from, int to) {
+        int chunk = (from + NbtConstants.T4T_NDEF_MSG_START_OFFSET) /
+                    chunkSize;
+        if ((chunk >= hashes.length) ||
+            (chunkEnd(from, chunkSize, length) != to)) {
+            return false;
+        }
+        return hash(message, from, to) == hashes[chunk];
+    }
+
+    /**
+     * Returns the end of the chunk containing a message byte. Chunks are
+     * aligned to file offsets, the message starts after the 2-byte message
+     * length.
+     *
+     * @param from      Index of a message byte.
+     * @param chunkSize Number of file bytes per chunk.
+     * @param length    Length of the message.
+     * @return Returns the index after the last message byte of the chunk.
+     */
+    /* default */ static int chunkEnd(int from, int chunkSize, int length) {
+        int fileOffset = from + NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+        int end = (fileOffset / chunkSize + 1) * chunkSize -
+                  NbtConstants.T4T_NDEF_MSG_START_OFFSET;
+        return Math.min(end, length);
+    }
+
+    /**
+     * Calculates the FNV-1a hash of a part of a byte array.
+     *
+     * @param data Byte array to be hashed.
+     * @param from Index of the first byte.
+     * @param to   Index after the last byte.
+     * @return Returns the 64-bit hash.
+     */
+    private static long hash(@NotNull byte[] data, int from, int to) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (data[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -4,12 +4,10 @@
 
 package com.infineon.hsw.apdu.nbt.model;
 
-import com.infineon.hsw.utils.Tlv;
-import com.infineon.hsw.utils.TlvParser;
+import com.infineon.hsw.utils.TlvReader;
 import com.infineon.hsw.utils.UtilException;
 import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
-import java.util.List;
 
 /**
  * Parses the version of NBT applet.
@@ -67,12 +65,16 @@ public class AppletVersion {
 
     private static byte[] parseAppletVersionBytes(@NotNull byte[] data)
             throws UtilException {
-        TlvParser parser = new TlvParser(data);
-        List<Object> tlvList = parser.parseTlvStructure();
-        Tlv tlv6f = (Tlv) tlvList.get(0);
-        tlvList = new TlvParser(tlv6f.getValue()).parseTlvStructure();
-        Tlv tlvDf3a = (Tlv) tlvList.get(0);
-        return tlvDf3a.getValue();
+        TlvReader reader = new TlvReader(data);
+        // Extract 6f TLV, then DF3A TLV
+        if (!reader.next()) {
+            throw new UtilException("Missing FCI template");
+        }
+        reader.enter();
+        if (!reader.next()) {
+            throw new UtilException("Missing applet version");
+        }
+        return reader.copyValue();
     }
 
     /**
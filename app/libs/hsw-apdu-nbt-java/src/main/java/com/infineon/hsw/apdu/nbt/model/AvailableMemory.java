@@ -4,12 +4,10 @@
 
 package com.infineon.hsw.apdu.nbt.model;
 
-import com.infineon.hsw.utils.Tlv;
-import com.infineon.hsw.utils.TlvParser;
+import com.infineon.hsw.utils.TlvReader;
 import com.infineon.hsw.utils.UtilException;
 import com.infineon.hsw.utils.Utils;
 import com.infineon.hsw.utils.annotation.NotNull;
-import java.util.List;
 
 /**
  * Parses the available memory information from the NBT applet.
@@ -54,35 +52,32 @@ public class AvailableMemory {
      */
     public AvailableMemory(@NotNull byte[] data) throws NbtException {
         try {
-            TlvParser parser = new TlvParser(data);
+            TlvReader reader = new TlvReader(data);
 
             // Extract 6f TLV
-            List<Object> tlvList = parser.parseTlvStructure();
-            Tlv tlv6f = (Tlv) tlvList.get(0);
+            if (!reader.next()) {
+                throw new UtilException("Missing FCI template");
+            }
+            reader.enter();
 
             // Extract DF3B TLV
-            tlvList = new TlvParser(tlv6f.getValue()).parseTlvStructure();
-            Tlv tlvDf3b = (Tlv) tlvList.get(0);
+            if (!reader.next()) {
+                throw new UtilException("Missing available memory");
+            }
+            reader.enter();
 
             // Extract c6,c7,c8 TLVs
-            tlvList = new TlvParser(tlvDf3b.getValue()).parseTlvStructure();
-
-            for (Object tlvDf3bFragments : tlvList) {
-                Tlv tlvDf3bFragment = (Tlv) tlvDf3bFragments;
-
-                byte tag = (byte) tlvDf3bFragment.getTag();
-                byte[] value = tlvDf3bFragment.getValue();
+            while (reader.next()) {
+                byte tag = (byte) reader.tag();
 
                 if (tag == TAG_NVM_MEMORY) {
-                    this.setNvmMemory((short) Utils.getUINT16(value, 0));
+                    this.setNvmMemory(getMemorySize(reader, data));
                 }
                 if (tag == TAG_COR_MEMORY) {
-                    this.setAvailableTransientCor(
-                            (short) Utils.getUINT16(value, 0));
+                    this.setAvailableTransientCor(getMemorySize(reader, data));
                 }
                 if (tag == TAG_COD_MEMORY) {
-                    this.setAvailableTransientCod(
-                            (short) Utils.getUINT16(value, 0));
+                    this.setAvailableTransientCod(getMemorySize(reader, data));
                 }
             }
         } catch (UtilException ex) {
@@ -90,6 +85,24 @@ public class AvailableMemory {
         }
     }
 
+    /**
+     * Reads the 2-byte memory size of the current TLV.
+     *
+     * @param reader TLV reader positioned at a memory size TLV.
+     * @param data   Data bytes parsed by the reader.
+     * @return Returns the memory size.
+     * @throws UtilException Throws the utility exception, if the value is not
+     *                       2 bytes long.
+     */
+    private static short getMemorySize(@NotNull TlvReader reader,
+                                       @NotNull byte[] data)
+            throws UtilException {
+        if (reader.valueLength() != 2) {
+            throw new UtilException("Invalid length of memory size");
+        }
+        return (short) Utils.getUINT16(data, reader.valueOffset());
+    }
+
     /**
      * Getter for NVM memory
      *
@@ -0,0 +1,1182 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+import com.infineon.hsw.apdu.ApduCommand;
+import com.infineon.hsw.apdu.ApduException;
+import com.infineon.hsw.apdu.ApduResponse;
+import com.infineon.hsw.channel.ChannelConstants;
+import com.infineon.hsw.channel.ChannelException;
+import com.infineon.hsw.channel.IChannel;
+import com.infineon.hsw.channel.IChannelPropertyProvider;
+import com.infineon.hsw.utils.Tlv;
+import com.infineon.hsw.utils.UtilException;
+import com.infineon.hsw.utils.Utils;
+import com.infineon.hsw.utils.annotation.NotNull;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPrivateKeySpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * In-memory emulation of the NBT applet and the NBT configurator application
+ * behind a synchronous communication channel. The channel allows running
+ * personalization flows on a plain JVM without a reader and a tag, e.g. for
+ * throughput measurements.
+ * <p>
+ * The simulator behaves like the NFC interface of the product. File access
+ * policies are enforced once personalization has been finalized, so the same
+ * instance can be personalized multiple times before. The latency per APDU
+ * and per transferred byte as well as the maximum command and response
+ * lengths can be configured.
+ */
+public class NbtSimulatorChannel
+        implements IChannel, IChannelPropertyProvider {
+    // cSpell:ignore NLEN
+    /** Default maximum length of a command APDU (short APDU format) */
+    public static final int DEFAULT_MAX_COMMAND_LENGTH = 261;
+
+    /** Default maximum length of a response APDU including status word */
+    public static final int DEFAULT_MAX_RESPONSE_LENGTH = 258;
+
+    /** ATR returned on connect and reset (ISO 14443-4, T=1) */
+    private static final byte[] ATR = { (byte) 0x3B, (byte) 0x80, (byte) 0x80,
+                                        (byte) 0x01, (byte) 0x01 };
+
+    /** File ID of the capability container file */
+    private static final short CC_FILE_ID = (short) 0xE103;
+
+    /** File IDs of the proprietary files */
+    private static final short[] PP_FILE_IDS = { (short) 0xE1A1,
+                                                 (short) 0xE1A2,
+                                                 (short) 0xE1A3,
+                                                 (short) 0xE1A4 };
+
+    /** Size of the capability container file */
+    private static final int CC_FILE_SIZE = 0x40;
+
+    /**
+     * Default content of the capability container: mapping version 2.0, MLe
+     * and MLc not limited by the applet and the NDEF file control TLV.
+     */
+    private static final byte[] DEFAULT_CC = { 0x00, 0x0F, 0x20, (byte) 0xFF,
+                                               (byte) 0xFF, (byte) 0xFF,
+                                               (byte) 0xFF, 0x04, 0x06,
+                                               (byte) 0xE1, 0x04, 0x10, 0x00,
+                                               0x00, 0x00 };
+
+    /** Size of the NDEF file */
+    private static final int NDEF_FILE_SIZE = 0x1000;
+
+    /** Size of each proprietary file */
+    private static final int PP_FILE_SIZE = 0x0400;
+
+    /** Length of a single file access policy record */
+    private static final int FAP_RECORD_LENGTH = 6;
+
+    /** Access condition byte granting access */
+    private static final byte AC_ALWAYS = (byte) 0x40;
+
+    /** Marker bit of a password protected access condition */
+    private static final byte AC_PASSWORD = (byte) 0x80;
+
+    /** Offset of the NFC read access condition within a FAP record */
+    private static final int OFFSET_AC_NFC_READ = 4;
+
+    /** Offset of the NFC write access condition within a FAP record */
+    private static final int OFFSET_AC_NFC_WRITE = 5;
+
+    /** DGI of the brand signing key */
+    private static final short DGI_BSK = (short) 0xA002;
+
+    /** DGI finalizing the personalization */
+    private static final short DGI_FINALIZE = (short) 0xBF63;
+
+    /** Status word for wrong offset in READ BINARY */
+    private static final int SW_WRONG_OFFSET = 0x6B00;
+
+    /** Status word for blocked password */
+    private static final int SW_PASSWORD_BLOCKED = 0x6983;
+
+    /** Marker for no selected file */
+    private static final int NO_FILE = -1;
+
+    /** No application selected */
+    private static final int APP_NONE = 0;
+
+    /** NBT applet selected */
+    private static final int APP_NBT = 1;
+
+    /** NBT configurator application selected */
+    private static final int APP_CONFIGURATOR = 2;
+
+    /** Friendly name of channel */
+    private final String name;
+
+    /** Content of all files of the NBT applet, mapped by file ID */
+    private final Map<Short, byte[]> files = new LinkedHashMap<>();
+
+    /** Passwords created on the NBT applet, mapped by password ID */
+    private final Map<Integer, Password> passwords = new HashMap<>();
+
+    /** Personalized key data, mapped by DGI */
+    private final Map<Short, byte[]> keys = new HashMap<>();
+
+    /** Configuration data of the configurator application, mapped by tag */
+    private final Map<Short, byte[]> configuration = new LinkedHashMap<>();
+
+    /** Applet version returned by GET DATA */
+    private byte[] appletVersion = { 0x01, 0x00, 0x00, 0x01 };
+
+    /** Master password required for password management or null if none */
+    private byte[] masterPassword;
+
+    /** Marker if communication port is opened */
+    private boolean open;
+
+    /** Marker if connection to the simulated tag is established */
+    private boolean connected;
+
+    /** Marker if personalization has been finalized */
+    private boolean finalized;
+
+    /** Currently selected application */
+    private int selectedApplication = APP_NONE;
+
+    /** Currently selected file or NO_FILE */
+    private int selectedFile = NO_FILE;
+
+    /** Read password presented when selecting the current file */
+    private byte[] readPassword;
+
+    /** Write password presented when selecting the current file */
+    private byte[] writePassword;
+
+    /** Latency per APDU exchange in nanoseconds */
+    private long apduLatency;
+
+    /** Latency per transferred byte in nanoseconds */
+    private long byteLatency;
+
+    /** Maximum length of a command APDU */
+    private int maxCommandLength = DEFAULT_MAX_COMMAND_LENGTH;
+
+    /** Maximum length of a response APDU including status word */
+    private int maxResponseLength = DEFAULT_MAX_RESPONSE_LENGTH;
+
+    /**
+     * Container for a password created on the NBT applet.
+     */
+    private static final class Password {
+        /** Password value */
+        private byte[] value;
+
+        /** Password limit (initial retry counter) */
+        private final int limit;
+
+        /** Remaining retries */
+        private int retries;
+
+        /**
+         * Constructor of a password.
+         *
+         * @param value password value.
+         * @param limit password limit.
+         */
+        private Password(byte[] value, int limit) {
+            this.value = value;
+            this.limit = limit;
+            this.retries = limit;
+        }
+    }
+
+    /**
+     * Creates a simulated NBT in delivery state.
+     *
+     * @param name friendly name of the channel.
+     */
+    public NbtSimulatorChannel(@NotNull String name) {
+        this.name = name;
+        initialize();
+    }
+
+    /**
+     * Set the simulated latency.
+     *
+     * @param apduLatency latency per APDU exchange in nanoseconds.
+     * @param byteLatency latency per transferred byte in nanoseconds.
+     */
+    public void setLatency(long apduLatency, long byteLatency) {
+        this.apduLatency = apduLatency;
+        this.byteLatency = byteLatency;
+    }
+
+    /**
+     * Set the frame size limits of the simulated tag. Command APDUs exceeding
+     * the command length are rejected with 6700, response data is truncated
+     * to the response length. Extended Le values exceeding the response length
+     * are rejected with 6700. The smaller of both limits is reported as
+     * channel property {@link ChannelConstants#MAX_TRANSCEIVE_LENGTH}.
+     *
+     * @param maxCommandLength maximum length of a command APDU.
+     * @param maxResponseLength maximum length of a response APDU including
+     *         status word.
+     */
+    public void setFrameSize(int maxCommandLength, int maxResponseLength) {
+        this.maxCommandLength = maxCommandLength;
+        this.maxResponseLength = maxResponseLength;
+    }
+
+    /**
+     * Get the simulated latency per APDU exchange.
+     *
+     * @return latency per APDU exchange in nanoseconds.
+     */
+    public long getApduLatency() {
+        return apduLatency;
+    }
+
+    /**
+     * Get the simulated latency per transferred byte.
+     *
+     * @return latency per transferred byte in nanoseconds.
+     */
+    public long getByteLatency() {
+        return byteLatency;
+    }
+
+    /**
+     * Get the maximum length of a command APDU.
+     *
+     * @return maximum length of a command APDU.
+     */
+    public int getMaxCommandLength() {
+        return maxCommandLength;
+    }
+
+    /**
+     * Get the maximum length of a response APDU.
+     *
+     * @return maximum length of a response APDU including status word.
+     */
+    public int getMaxResponseLength() {
+        return maxResponseLength;
+    }
+
+    /**
+     * Set the master password required for password management commands.
+     *
+     * @param masterPassword 4 byte master password or null if no master
+     *         password is required.
+     */
+    public void setMasterPassword(byte[] masterPassword) {
+        this.masterPassword = (masterPassword != null) ? masterPassword.clone()
+                                                       : null;
+    }
+
+    /**
+     * Set the applet version returned by GET DATA.
+     *
+     * @param major major version.
+     * @param minor minor version.
+     * @param build build number.
+     */
+    public void setAppletVersion(byte major, byte minor, short build) {
+        appletVersion = new byte[] { major, minor, (byte) (build >> 8),
+                                     (byte) build };
+    }
+
+    /**
+     * Get a copy of the current content of a file.
+     *
+     * @param fileId ID of the file.
+     * @return file content or null if the file does not exist.
+     */
+    public byte[] getFileContent(short fileId) {
+        byte[] content = files.get(fileId);
+        return (content != null) ? content.clone() : null;
+    }
+
+    /**
+     * Set the simulated tag back to delivery state.
+     */
+    public final void initialize() {
+        files.clear();
+        byte[] cc = new byte[CC_FILE_SIZE];
+        System.arraycopy(DEFAULT_CC, 0, cc, 0, DEFAULT_CC.length);
+        files.put(CC_FILE_ID, cc);
+        files.put(NbtConstants.NDEF_FILE_ID, new byte[NDEF_FILE_SIZE]);
+        for (short fileId : PP_FILE_IDS) {
+            files.put(fileId, new byte[PP_FILE_SIZE]);
+        }
+
+        // one policy record for every file including the FAP file itself
+        byte[] fap = new byte[(files.size() + 1) * FAP_RECORD_LENGTH];
+        int offset = 0;
+        for (short fileId : files.keySet()) {
+            setFapRecord(fap, offset, fileId,
+                         (fileId == CC_FILE_ID) ? (byte) 0x00 : AC_ALWAYS);
+            offset += FAP_RECORD_LENGTH;
+        }
+        setFapRecord(fap, offset, NbtConstants.FAP_FILE_ID, AC_ALWAYS);
+        files.put(NbtConstants.FAP_FILE_ID, fap);
+
+        passwords.clear();
+        keys.clear();
+        finalized = false;
+
+        configuration.clear();
+        for (NbtConstants.ConfigurationTags tag :
+             NbtConstants.ConfigurationTags.values()) {
+            configuration.put(tag.getTag(), new byte[tag.getLength()]);
+        }
+        configuration.put(
+                NbtConstants.ConfigurationTags.TAG_GPIO_FUNCTION.getTag(),
+                new byte[] { 0x01 });
+        configuration.put(NbtConstants.ConfigurationTags
+                                  .TAG_COMMUNICATION_INTERFACE_ENABLE.getTag(),
+                          new byte[] { 0x11 });
+
+        resetSession();
+    }
+
+    @Override
+    public void open(boolean exclusive) throws ChannelException {
+        open = true;
+    }
+
+    @Override
+    public void close() throws ChannelException {
+        connected = false;
+        open = false;
+    }
+
+    @Override
+    public byte[] connect(byte[] request) throws ChannelException {
+        if (!open) {
+            throw new ChannelException("Channel not opened");
+        }
+        connected = true;
+        resetSession();
+        return ATR.clone();
+    }
+
+    @Override
+    public byte[] disconnect(byte[] request) throws ChannelException {
+        connected = false;
+        resetSession();
+        return new byte[0];
+    }
+
+    @Override
+    public byte[] reset(byte[] request) throws ChannelException {
+        return connect(request);
+    }
+
+    @Override
+    public byte[] transmit(byte[] stream) throws ChannelException {
+        checkConnected();
+        byte[] response = process(stream);
+        delay(apduLatency + (stream.length + response.length) * byteLatency);
+        return response;
+    }
+
+    /**
+     * Processes all streams within a single simulated round trip.
+     */
+    @Override
+    public byte[][] transmitBatch(byte[][] streams, int expectedTrailer)
+            throws ChannelException {
+        checkConnected();
+        byte[][] responses = new byte[streams.length][];
+        long bytes = 0;
+        int count = 0;
+        while (count < streams.length) {
+            byte[] response = process(streams[count]);
+            responses[count] = response;
+            bytes += streams[count].length + response.length;
+            count++;
+
+            if ((expectedTrailer >= 0) &&
+                (getTrailer(response) != expectedTrailer)) {
+                break;
+            }
+        }
+        delay(apduLatency + bytes * byteLatency);
+        return (count == streams.length) ? responses
+                                         : Arrays.copyOf(responses, count);
+    }
+
+    @Override
+    public byte[] control(byte[] stream) throws ChannelException {
+        throw new ChannelException("Control not supported");
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Properties getChannelProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(
+                ChannelConstants.MAX_TRANSCEIVE_LENGTH,
+                Integer.toString(Math.min(maxCommandLength,
+                                          maxResponseLength)));
+        return properties;
+    }
+
+    @Override
+    public void saveChannelProperties() {
+        // nothing to save for simulated tags
+    }
+
+    /**
+     * Processes a single command APDU.
+     *
+     * @param stream command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] process(byte[] stream) {
+        if (stream.length > maxCommandLength) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+
+        ApduCommand command;
+        try {
+            command = new ApduCommand(stream);
+        } catch (ApduException e) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+
+        if ((command.getINS() & 0xFF) == (NbtConstants.INS_SELECT & 0xFF)) {
+            if (command.getCLA() != NbtConstants.CLA) {
+                return status(NbtErrorCodes.CLA_NOT_SUPPORTED);
+            }
+            return select(command);
+        }
+
+        if (selectedApplication == APP_CONFIGURATOR) {
+            return processConfigurator(command);
+        }
+        if (selectedApplication == APP_NBT) {
+            return processApplet(command);
+        }
+        return status(NbtErrorCodes.CONDITIONS_NOT_SATISFIED);
+    }
+
+    /**
+     * Processes a command APDU for the NBT applet.
+     *
+     * @param command command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] processApplet(ApduCommand command) {
+        if (command.getCLA() != NbtConstants.CLA) {
+            return status(NbtErrorCodes.CLA_NOT_SUPPORTED);
+        }
+
+        switch ((byte) command.getINS()) {
+        case NbtConstants.INS_READ_BINARY:
+            return readBinary(command);
+        case NbtConstants.INS_UPDATE_BINARY:
+            return updateBinary(command);
+        case NbtConstants.INS_GET_DATA:
+            return getData(command);
+        case NbtConstants.INS_PERSONALIZE_DATA:
+            return personalizeData(command);
+        case NbtConstants.INS_AUTHENTICATE_TAG:
+            return authenticateTag(command);
+        case NbtConstants.INS_CREATE_PWD:
+            return createPassword(command);
+        case NbtConstants.INS_DELETE_PWD:
+            return deletePassword(command);
+        case NbtConstants.INS_CHANGE_PASSWORD:
+            return changeOrUnblockPassword(command);
+        default:
+            return status(NbtErrorCodes.INS_NOT_SUPPORTED);
+        }
+    }
+
+    /**
+     * Processes a command APDU for the configurator application.
+     *
+     * @param command command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] processConfigurator(ApduCommand command) {
+        if (command.getCLA() != NbtConstants.CLA_CONFIGURATION) {
+            return status(NbtErrorCodes.CLA_NOT_SUPPORTED);
+        }
+        if ((command.getP1() != 0) || (command.getP2() != 0)) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+
+        switch ((byte) command.getINS()) {
+        case NbtConstants.INS_SET_CONFIGURATION:
+            return setConfiguration(command.getData());
+        case NbtConstants.INS_GET_CONFIGURATION:
+            return getConfiguration(command.getData());
+        default:
+            return status(NbtErrorCodes.INS_NOT_SUPPORTED);
+        }
+    }
+
+    /**
+     * Processes SELECT by AID or by file ID.
+     *
+     * @param command SELECT command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] select(ApduCommand command) {
+        byte[] data = command.getData();
+
+        if (command.getP1() == NbtConstants.P1_SELECT_APPLICATION) {
+            resetSession();
+            if (Arrays.equals(data, NbtConstants.AID)) {
+                selectedApplication = APP_NBT;
+            } else if (Arrays.equals(data, NbtConstants.CONFIGURATOR_AID)) {
+                selectedApplication = APP_CONFIGURATOR;
+            } else {
+                return status(NbtErrorCodes.APPLICATION_OR_FILE_NOT_FOUND);
+            }
+            return status(ApduResponse.SW_NO_ERROR);
+        }
+
+        if ((command.getP1() != NbtConstants.P1_DEFAULT) ||
+            (command.getP2() != NbtConstants.P2_SELECT_FIRST)) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+        if (selectedApplication != APP_NBT) {
+            return status(NbtErrorCodes.APPLICATION_OR_FILE_NOT_FOUND);
+        }
+        if (data.length < NbtConstants.FILE_ID_LENGTH) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+
+        short fileId = (short) Utils.getUINT16(data, 0);
+        if (!files.containsKey(fileId)) {
+            return status(NbtErrorCodes.APPLICATION_OR_FILE_NOT_FOUND);
+        }
+
+        // parse optional password TLVs
+        byte[] read = null;
+        byte[] write = null;
+        int offset = NbtConstants.FILE_ID_LENGTH;
+        while (offset < data.length) {
+            if ((offset + 2 + NbtConstants.PWD_LENGTH > data.length) ||
+                (data[offset + 1] != NbtConstants.PWD_LENGTH)) {
+                return status(NbtErrorCodes.SELECT_FILE_WRONG_TLV);
+            }
+            byte[] value = Arrays.copyOfRange(data, offset + 2,
+                                              offset + 2 +
+                                                      NbtConstants.PWD_LENGTH);
+            if (data[offset] == NbtConstants.TAG_PWD_READ) {
+                read = value;
+            } else if (data[offset] == NbtConstants.TAG_PWD_WRITE) {
+                write = value;
+            } else {
+                return status(NbtErrorCodes.SELECT_FILE_WRONG_TLV);
+            }
+            offset += 2 + NbtConstants.PWD_LENGTH;
+        }
+
+        selectedFile = fileId & 0xFFFF;
+        readPassword = read;
+        writePassword = write;
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes READ BINARY on the selected file.
+     *
+     * @param command READ BINARY command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] readBinary(ApduCommand command) {
+        if (selectedFile == NO_FILE) {
+            return status(NbtErrorCodes.COMMAND_NOT_ALLOWED);
+        }
+        if ((command.getP1() & 0x80) != 0) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+        int sw = checkAccess(OFFSET_AC_NFC_READ, readPassword);
+        if (sw != ApduResponse.SW_NO_ERROR) {
+            return status(sw);
+        }
+
+        byte[] content = files.get((short) selectedFile);
+        int offset = getP1P2(command);
+        if (offset > content.length) {
+            return status(SW_WRONG_OFFSET);
+        }
+
+        if ((command.getLe() > NbtConstants.MAX_LE) &&
+            (command.getLe() > maxResponseLength - 2)) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+
+        int length = Math.min(command.getLe(), content.length - offset);
+        length = Math.min(length, maxResponseLength - 2);
+        return response(Arrays.copyOfRange(content, offset, offset + length),
+                        ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes UPDATE BINARY on the selected file. Updates of the FAP file
+     * replace the access conditions of the given files.
+     *
+     * @param command UPDATE BINARY command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] updateBinary(ApduCommand command) {
+        if (selectedFile == NO_FILE) {
+            return status(NbtErrorCodes.COMMAND_NOT_ALLOWED);
+        }
+        if ((command.getP1() & 0x80) != 0) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+        int sw = checkAccess(OFFSET_AC_NFC_WRITE, writePassword);
+        if (sw != ApduResponse.SW_NO_ERROR) {
+            return status(sw);
+        }
+
+        byte[] content = files.get((short) selectedFile);
+        byte[] data = command.getData();
+        int offset = getP1P2(command);
+
+        if ((short) selectedFile == NbtConstants.FAP_FILE_ID) {
+            return updateFap(content, data);
+        }
+        if (offset + data.length > content.length) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+        System.arraycopy(data, 0, content, offset, data.length);
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Replaces policy records of the FAP file.
+     *
+     * @param fap content of the FAP file.
+     * @param data one or more policy records (file ID and access conditions).
+     * @return response APDU including status word.
+     */
+    private byte[] updateFap(byte[] fap, byte[] data) {
+        if ((data.length == 0) || (data.length % FAP_RECORD_LENGTH != 0)) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+        for (int i = 0; i < data.length; i += FAP_RECORD_LENGTH) {
+            int record = findFapRecord(fap, (short) Utils.getUINT16(data, i));
+            if (record < 0) {
+                return status(NbtErrorCodes.INCORRECT_DATA);
+            }
+            System.arraycopy(data, i, fap, record, FAP_RECORD_LENGTH);
+        }
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes GET DATA for applet version and available memory.
+     *
+     * @param command GET DATA command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] getData(ApduCommand command) {
+        short tag = (short) getP1P2(command);
+        byte[] value;
+        if (tag == NbtConstants.TAG_APPLET_VERSION) {
+            value = appletVersion;
+        } else if (tag == NbtConstants.TAG_AVAILABLE_MEMORY) {
+            int nvm = 0;
+            for (byte[] content : files.values()) {
+                nvm += content.length;
+            }
+            int available = 0x7FFF - nvm;
+            value = new byte[] { (byte) 0xC6, 0x02, (byte) (available >> 8),
+                                 (byte) available, (byte) 0xC7, 0x02, 0x01,
+                                 0x00, (byte) 0xC8, 0x02, 0x01, 0x00 };
+        } else {
+            return status(NbtErrorCodes.DATA_NOT_FOUND);
+        }
+
+        try {
+            byte[] tlv = Tlv.buildTlv(tag & 0xFFFF, value, false);
+            return response(Tlv.buildTlv(0x6F, tlv, false),
+                            ApduResponse.SW_NO_ERROR);
+        } catch (UtilException e) {
+            return status(NbtErrorCodes.INCORRECT_DATA);
+        }
+    }
+
+    /**
+     * Processes PERSONALIZE DATA with one or more DGIs.
+     *
+     * @param command PERSONALIZE DATA command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] personalizeData(ApduCommand command) {
+        if (finalized) {
+            return status(NbtErrorCodes.CONDITIONS_NOT_SATISFIED);
+        }
+        if ((command.getP1() != 0) || (command.getP2() != 0)) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+
+        byte[] data = command.getData();
+        int offset = 0;
+        while (offset < data.length) {
+            if (offset + 3 > data.length) {
+                return status(NbtErrorCodes.INCORRECT_LC_LE);
+            }
+            short dgi = (short) Utils.getUINT16(data, offset);
+            int length = data[offset + 2] & 0xFF;
+            offset += 3;
+            if (length == 0xFF) {
+                if (offset + 2 > data.length) {
+                    return status(NbtErrorCodes.INCORRECT_LC_LE);
+                }
+                length = Utils.getUINT16(data, offset);
+                offset += 2;
+            }
+            if (offset + length > data.length) {
+                return status(NbtErrorCodes.INCORRECT_LC_LE);
+            }
+
+            int sw = personalizeDgi(dgi, Arrays.copyOfRange(data, offset,
+                                                            offset + length));
+            if (sw != ApduResponse.SW_NO_ERROR) {
+                return status(sw);
+            }
+            offset += length;
+        }
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Stores the value of a single DGI.
+     *
+     * @param dgi data group identifier.
+     * @param value value of the data group.
+     * @return status word.
+     */
+    private int personalizeDgi(short dgi, byte[] value) {
+        boolean supported = false;
+        for (NbtCommandBuilderPerso.Personalize_Data_Dgi entry :
+             NbtCommandBuilderPerso.Personalize_Data_Dgi.values()) {
+            supported |= (entry.getDgi() == dgi);
+        }
+        if (!supported) {
+            return NbtErrorCodes.UNSUPPORTED_DATA & 0xFFFF;
+        }
+
+        if (dgi == DGI_FINALIZE) {
+            finalized = true;
+        } else if (dgi == NbtConstants.FAP_FILE_ID) {
+            byte[] content = files.get(dgi);
+            if (value.length > content.length) {
+                return NbtErrorCodes.INCORRECT_LC_LE & 0xFFFF;
+            }
+            System.arraycopy(value, 0, content, 0, value.length);
+        } else if (files.containsKey(dgi)) {
+            // file content is preceded by the file offset
+            byte[] content = files.get(dgi);
+            if (value.length < 2) {
+                return NbtErrorCodes.INCORRECT_LC_LE & 0xFFFF;
+            }
+            int fileOffset = Utils.getUINT16(value, 0);
+            if (fileOffset + value.length - 2 > content.length) {
+                return NbtErrorCodes.INCORRECT_LC_LE & 0xFFFF;
+            }
+            System.arraycopy(value, 2, content, fileOffset, value.length - 2);
+        } else {
+            keys.put(dgi, value);
+        }
+        return ApduResponse.SW_NO_ERROR;
+    }
+
+    /**
+     * Processes AUTHENTICATE TAG by signing the challenge with the personalized
+     * brand signing key (ECDSA on secp256r1 with SHA-256).
+     *
+     * @param command AUTHENTICATE TAG command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] authenticateTag(ApduCommand command) {
+        if ((command.getP1() != 0) || (command.getP2() != 0)) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+        byte[] key = keys.get(DGI_BSK);
+        if (key == null) {
+            return status(NbtErrorCodes.CONDITIONS_NOT_SATISFIED);
+        }
+
+        try {
+            AlgorithmParameters parameters =
+                    AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            PrivateKey privateKey = KeyFactory.getInstance("EC").generatePrivate(
+                    new ECPrivateKeySpec(new BigInteger(1, key),
+                                         parameters.getParameterSpec(
+                                                 ECParameterSpec.class)));
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(privateKey);
+            signature.update(command.getData());
+            return response(signature.sign(), ApduResponse.SW_NO_ERROR);
+        } catch (GeneralSecurityException e) {
+            return status(NbtErrorCodes.CONDITIONS_NOT_SATISFIED);
+        }
+    }
+
+    /**
+     * Processes CREATE PASSWORD.
+     *
+     * @param command CREATE PASSWORD command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] createPassword(ApduCommand command) {
+        if ((command.getP1() != 0) || (command.getP2() != 0)) {
+            return status(NbtErrorCodes.WRONG_P1_P2);
+        }
+
+        // password ID, password, password response and password limit
+        final int passwordDataLength = 1 + NbtConstants.PWD_LENGTH + 2 + 2;
+        byte[] data = command.getData();
+        int offset = data.length - passwordDataLength;
+        if ((offset != 0) && (offset != NbtConstants.PWD_LENGTH)) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+        if (!checkMasterPassword(data, offset)) {
+            return status(NbtErrorCodes.SECURITY_NOT_SATISFIED);
+        }
+
+        int passwordId = data[offset] & NbtConstants.PASSWORD_ID_MASK;
+        if (passwordId == 0) {
+            return status(NbtErrorCodes.INCORRECT_DATA_PARAMETERS);
+        }
+        if (passwords.containsKey(passwordId)) {
+            return status(
+                    NbtErrorCodes.CONDITIONS_NOT_SATISFIED_CREATE_PASSWORD);
+        }
+
+        byte[] value = Arrays.copyOfRange(data, offset + 1,
+                                          offset + 1 + NbtConstants.PWD_LENGTH);
+        int limit = Utils.getUINT16(data, offset + 3 + NbtConstants.PWD_LENGTH);
+        passwords.put(passwordId, new Password(value, limit));
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes DELETE PASSWORD.
+     *
+     * @param command DELETE PASSWORD command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] deletePassword(ApduCommand command) {
+        byte[] data = command.getData();
+        if (!checkMasterPassword(data, data.length)) {
+            return status(NbtErrorCodes.SECURITY_NOT_SATISFIED);
+        }
+        int passwordId = command.getP2() & NbtConstants.PASSWORD_ID_MASK;
+        if (passwords.remove(passwordId) == null) {
+            return status(NbtErrorCodes.UNSUPPORTED_DATA);
+        }
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes CHANGE PASSWORD and UNBLOCK PASSWORD which share the same
+     * instruction byte.
+     *
+     * @param command CHANGE or UNBLOCK PASSWORD command APDU.
+     * @return response APDU including status word.
+     */
+    private byte[] changeOrUnblockPassword(ApduCommand command) {
+        byte[] data = command.getData();
+        Password password = passwords.get(command.getP2() &
+                                          NbtConstants.PASSWORD_ID_MASK);
+        boolean change = (command.getP2() & NbtConstants.P2_CHANGE_PWD) != 0;
+        int masterLength = change ? data.length - NbtConstants.PWD_LENGTH
+                                  : data.length;
+
+        if ((masterLength != 0) && (masterLength != NbtConstants.PWD_LENGTH)) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+        if (!checkMasterPassword(data, masterLength)) {
+            return status(NbtErrorCodes.SECURITY_NOT_SATISFIED);
+        }
+        if (password == null) {
+            return status(NbtErrorCodes.DATA_NOT_FOUND);
+        }
+
+        if (change) {
+            password.value = Arrays.copyOfRange(data, masterLength,
+                                                data.length);
+        }
+        password.retries = password.limit;
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes SET CONFIGURATION with one or more DGI structures.
+     *
+     * @param data command data.
+     * @return response APDU including status word.
+     */
+    private byte[] setConfiguration(byte[] data) {
+        int offset = 0;
+        Map<Short, byte[]> update = new LinkedHashMap<>();
+        while (offset < data.length) {
+            if (offset + 3 > data.length) {
+                return status(NbtErrorCodes.INCORRECT_LC_LE);
+            }
+            short tag = (short) Utils.getUINT16(data, offset);
+            int length = data[offset + 2] & 0xFF;
+            offset += 3;
+            if (length == 0xFF) {
+                if (offset + 2 > data.length) {
+                    return status(NbtErrorCodes.INCORRECT_LC_LE);
+                }
+                length = Utils.getUINT16(data, offset);
+                offset += 2;
+            }
+
+            byte[] current = configuration.get(tag);
+            if (current == null) {
+                return status(NbtErrorCodes.DATA_NOT_FOUND);
+            }
+            if ((length != current.length) || (offset + length > data.length)) {
+                return status(NbtErrorCodes.INCORRECT_LC_LE);
+            }
+            update.put(tag, Arrays.copyOfRange(data, offset, offset + length));
+            offset += length;
+        }
+        configuration.putAll(update);
+        return status(ApduResponse.SW_NO_ERROR);
+    }
+
+    /**
+     * Processes GET CONFIGURATION for a single tag.
+     *
+     * @param data command data containing the 2 byte tag.
+     * @return response APDU including status word.
+     */
+    private byte[] getConfiguration(byte[] data) {
+        if (data.length != 2) {
+            return status(NbtErrorCodes.INCORRECT_LC_LE);
+        }
+        short tag = (short) Utils.getUINT16(data, 0);
+        byte[] value = configuration.get(tag);
+        if (value == null) {
+            return status(NbtErrorCodes.DATA_NOT_FOUND);
+        }
+        try {
+            return response(Tlv.buildDgiTlv(tag, value),
+                            ApduResponse.SW_NO_ERROR);
+        } catch (UtilException e) {
+            return status(NbtErrorCodes.INCORRECT_DATA);
+        }
+    }
+
+    /**
+     * Checks the access condition of the selected file. Access is always
+     * granted as long as personalization has not been finalized.
+     *
+     * @param acOffset offset of the access condition within the FAP record.
+     * @param presented password presented when selecting the file or null.
+     * @return status word.
+     */
+    private int checkAccess(int acOffset, byte[] presented) {
+        if (!finalized) {
+            return ApduResponse.SW_NO_ERROR;
+        }
+
+        byte[] fap = files.get(NbtConstants.FAP_FILE_ID);
+        int record = findFapRecord(fap, (short) selectedFile);
+        if (record < 0) {
+            return NbtErrorCodes.APPLICATION_OR_FILE_NOT_FOUND & 0xFFFF;
+        }
+        byte condition = fap[record + acOffset];
+
+        if (condition == AC_ALWAYS) {
+            return ApduResponse.SW_NO_ERROR;
+        }
+        if ((condition & AC_PASSWORD) == 0) {
+            return NbtErrorCodes.SECURITY_NOT_SATISFIED & 0xFFFF;
+        }
+
+        Password password = passwords.get(condition &
+                                          NbtConstants.PASSWORD_ID_MASK);
+        if ((password == null) || (presented == null)) {
+            return NbtErrorCodes.SECURITY_NOT_SATISFIED & 0xFFFF;
+        }
+        if (password.retries == 0) {
+            return SW_PASSWORD_BLOCKED;
+        }
+        if (!Arrays.equals(password.value, presented)) {
+            password.retries--;
+            return NbtErrorCodes.SECURITY_NOT_SATISFIED & 0xFFFF;
+        }
+        password.retries = password.limit;
+        return ApduResponse.SW_NO_ERROR;
+    }
+
+    /**
+     * Checks the optional master password at the start of the command data.
+     *
+     * @param data command data.
+     * @param length length of the master password in the command data (0 if
+     *         not present).
+     * @return true if the master password is accepted.
+     */
+    private boolean checkMasterPassword(byte[] data, int length) {
+        if (masterPassword == null) {
+            return true;
+        }
+        return (length == NbtConstants.PWD_LENGTH) &&
+                Arrays.equals(masterPassword, Arrays.copyOf(data, length));
+    }
+
+    /**
+     * Clears selection and presented passwords.
+     */
+    private void resetSession() {
+        selectedApplication = APP_NONE;
+        selectedFile = NO_FILE;
+        readPassword = null;
+        writePassword = null;
+    }
+
+    /**
+     * Checks that the simulated tag is connected.
+     *
+     * @throws ChannelException if not connected.
+     */
+    private void checkConnected() throws ChannelException {
+        if (!connected) {
+            throw new ChannelException("Channel not connected");
+        }
+    }
+
+    /**
+     * Waits for the given simulated latency.
+     *
+     * @param nanos latency in nanoseconds.
+     * @throws ChannelException if the waiting thread has been interrupted.
+     */
+    private static void delay(long nanos) throws ChannelException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChannelException("Interrupted", e);
+        }
+    }
+
+    /**
+     * Searches the policy record of a file in the FAP file.
+     *
+     * @param fap content of the FAP file.
+     * @param fileId ID of the file.
+     * @return offset of the record or -1 if not found.
+     */
+    private static int findFapRecord(byte[] fap, short fileId) {
+        for (int i = 0; i + FAP_RECORD_LENGTH <= fap.length;
+             i += FAP_RECORD_LENGTH) {
+            if ((short) Utils.getUINT16(fap, i) == fileId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a policy record into the FAP file.
+     *
+     * @param fap content of the FAP file.
+     * @param offset offset of the record.
+     * @param fileId ID of the file.
+     * @param nfcWrite NFC write access condition, all other conditions are
+     *         set to always.
+     */
+    private static void setFapRecord(byte[] fap, int offset, short fileId,
+                                     byte nfcWrite) {
+        fap[offset] = (byte) (fileId >> 8);
+        fap[offset + 1] = (byte) fileId;
+        fap[offset + 2] = AC_ALWAYS;
+        fap[offset + 3] = nfcWrite;
+        fap[offset + OFFSET_AC_NFC_READ] = AC_ALWAYS;
+        fap[offset + OFFSET_AC_NFC_WRITE] = nfcWrite;
+    }
+
+    /**
+     * Get P1 and P2 of a command as unsigned 16 bit value.
+     *
+     * @param command command APDU.
+     * @return value of P1 and P2.
+     */
+    private static int getP1P2(ApduCommand command) {
+        return ((command.getP1() & 0xFF) << 8) | (command.getP2() & 0xFF);
+    }
+
+    /**
+     * Get the last two bytes of a response.
+     *
+     * @param response response APDU.
+     * @return status word.
+     */
+    private static int getTrailer(byte[] response) {
+        return ((response[response.length - 2] & 0xFF) << 8) |
+                (response[response.length - 1] & 0xFF);
+    }
+
+    /**
+     * Builds a response APDU without data.
+     *
+     * @param sw status word.
+     * @return response APDU.
+     */
+    private static byte[] status(int sw) {
+        return new byte[] { (byte) (sw >> 8), (byte) sw };
+    }
+
+    /**
+     * Builds a response APDU with data.
+     *
+     * @param data response data.
+     * @param sw status word.
+     * @return response APDU.
+     */
+    private static byte[] response(byte[] data, int sw) {
+        byte[] response = Arrays.copyOf(data, data.length + 2);
+        response[data.length] = (byte) (sw >> 8);
+        response[data.length + 1] = (byte) sw;
+        return response;
+    }
+}
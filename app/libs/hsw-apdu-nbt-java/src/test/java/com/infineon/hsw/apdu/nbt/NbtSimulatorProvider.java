@@ -0,0 +1,122 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.apdu.nbt;
+
+import com.infineon.hsw.channel.IChannel;
+import com.infineon.hsw.channel.IChannelProvider;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Channel provider for simulated NBT tags. The provider has to be registered
+ * via <code>ChannelFactory.registerProvider(new NbtSimulatorProvider())</code>
+ * and offers a fixed number of independent simulated tags. Each simulated tag
+ * keeps its state for the lifetime of the provider.
+ * <p>
+ * The channel properties are a list of <code>key=value</code> pairs separated
+ * by ';'. Supported keys are <code>latency</code> (latency per APDU in
+ * microseconds), <code>byteLatency</code> (latency per transferred byte in
+ * nanoseconds), <code>maxCommandLength</code> and
+ * <code>maxResponseLength</code>.
+ */
+public class NbtSimulatorProvider implements IChannelProvider {
+    /** Friendly name of the provider */
+    public static final String PROVIDER_NAME = "NBT Simulator";
+
+    /** Property key for the latency per APDU in microseconds */
+    public static final String PROPERTY_LATENCY = "latency";
+
+    /** Property key for the latency per transferred byte in nanoseconds */
+    public static final String PROPERTY_BYTE_LATENCY = "byteLatency";
+
+    /** Property key for the maximum command APDU length */
+    public static final String PROPERTY_MAX_COMMAND_LENGTH = "maxCommandLength";
+
+    /** Property key for the maximum response APDU length */
+    public static final String
+            PROPERTY_MAX_RESPONSE_LENGTH = "maxResponseLength";
+
+    /** Simulated tags mapped by channel name */
+    private final Map<String, NbtSimulatorChannel> channels =
+            new LinkedHashMap<>();
+
+    /**
+     * Creates a provider offering a single simulated tag.
+     */
+    public NbtSimulatorProvider() {
+        this(1);
+    }
+
+    /**
+     * Creates a provider offering the given number of simulated tags.
+     *
+     * @param count number of simulated tags.
+     */
+    public NbtSimulatorProvider(int count) {
+        for (int i = 0; i < count; i++) {
+            String name = PROVIDER_NAME + " " + i;
+            channels.put(name, new NbtSimulatorChannel(name));
+        }
+    }
+
+    @Override
+    public String getProviderName() {
+        return PROVIDER_NAME;
+    }
+
+    @Override
+    public String[] getChannelNames() {
+        return channels.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public IChannel getChannel(String channelName, String channelProperties) {
+        NbtSimulatorChannel channel = channels.get(channelName);
+        if ((channel != null) && (channelProperties != null)) {
+            applyProperties(channel, channelProperties);
+        }
+        return channel;
+    }
+
+    /**
+     * Applies channel properties to a simulated tag. Only the supplied
+     * properties are changed, unknown keys and invalid values are ignored.
+     *
+     * @param channel simulated tag.
+     * @param channelProperties list of key value pairs.
+     */
+    private static void applyProperties(NbtSimulatorChannel channel,
+                                        String channelProperties) {
+        long latency = channel.getApduLatency();
+        long byteLatency = channel.getByteLatency();
+        int maxCommandLength = channel.getMaxCommandLength();
+        int maxResponseLength = channel.getMaxResponseLength();
+
+        for (String property : channelProperties.split(";")) {
+            String[] pair = property.split("=", 2);
+            if (pair.length != 2) {
+                continue;
+            }
+            String key = pair[0].trim();
+            try {
+                long value = Long.parseLong(pair[1].trim());
+                if (PROPERTY_LATENCY.equals(key)) {
+                    latency = value * 1000;
+                } else if (PROPERTY_BYTE_LATENCY.equals(key)) {
+                    byteLatency = value;
+                } else if (PROPERTY_MAX_COMMAND_LENGTH.equals(key)) {
+                    maxCommandLength = (int) value;
+                } else if (PROPERTY_MAX_RESPONSE_LENGTH.equals(key)) {
+                    maxResponseLength = (int) value;
+                }
+            } catch (NumberFormatException e) {
+                // ignore invalid value
+            }
+        }
+
+        channel.setLatency(latency, byteLatency);
+        channel.setFrameSize(maxCommandLength, maxResponseLength);
+    }
+}
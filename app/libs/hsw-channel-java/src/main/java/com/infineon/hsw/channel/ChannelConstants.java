@@ -51,6 +51,13 @@ public final class ChannelConstants {
      */
     public static final String T1 = "T=1";
 
+    /**
+     * Property key for the maximum length of a command or response APDU
+     * supported by the channel. Channels supporting extended length APDUs
+     * should provide this property via IChannelPropertyProvider.
+     */
+    public static final String MAX_TRANSCEIVE_LENGTH = "Max Transceive Length";
+
     /**
      * String constant for disposition action
      */
@@ -4,15 +4,20 @@
 
 package com.infineon.hsw.channel;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Factory class to create communication channels.
+ * Factory class to create communication channels. The factory is thread-safe,
+ * the mapping of channel names to providers is cached and only rebuilt if a
+ * channel name is unknown, a provider is (un)registered or the channel names
+ * are queried explicitly. Listeners registered via
+ * {@link #addRegistryListener(IChannelRegistryListener)} are informed whenever
+ * the set of channel names changes.
  */
 public final class ChannelFactory {
     private static final String EXCEPTION_MESSAGE_FACTORY_ALREADY_REGISTER =
@@ -27,12 +32,26 @@ public final class ChannelFactory {
     /**
      * * List containing channel factory registry.
      */
-    private static final List<IChannelProvider> factoryRegistry = new ArrayList<>();
+    private static final List<IChannelProvider>
+            factoryRegistry = new CopyOnWriteArrayList<>();
 
     /**
-     * Map of channel names versus provider.
+     * List of listeners informed about changes of the channel names.
      */
-    private static final HashMap<String, IChannelProvider> channels = new HashMap<>();
+    private static final CopyOnWriteArrayList<IChannelRegistryListener>
+            registryListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Map of channel names versus provider. The map is never modified after
+     * publication, a refresh replaces the complete map.
+     */
+    private static volatile Map<String, IChannelProvider>
+            channels = Collections.emptyMap();
+
+    /**
+     * Sorted array of channel names related to the current map.
+     */
+    private static volatile String[] channelNames = new String[0];
 
     /**
      * Get a channel of the requested type and name. If the channel requires
@@ -75,15 +94,22 @@ public final class ChannelFactory {
      *         created.
      */
     public static IChannel getChannel(final String channelName) {
-        IChannel channel = null;
-        // force refresh of channel names
-        getChannelNames();
-
-        // get provider for this channel name and try to create channel
+        // get provider for this channel name from cache
         IChannelProvider provider = channels.get(channelName);
+        IChannel channel = null;
         if (provider != null) {
             channel = provider.getChannel(channelName, null);
         }
+
+        if (channel == null) {
+            // name unknown or cache outdated, force refresh of channel names
+            refresh();
+
+            IChannelProvider newProvider = channels.get(channelName);
+            if ((newProvider != null) && (newProvider != provider)) {
+                channel = newProvider.getChannel(channelName, null);
+            }
+        }
         // return channel or null if it could not be created
         return channel;
     }
@@ -94,12 +120,12 @@ public final class ChannelFactory {
      * @return array of friendly channel types.
      */
     public static String[] getChannelTypes() {
-        Enumeration<IChannelProvider> factory = Collections.enumeration(
-                factoryRegistry);
-        String[] channelTypes = new String[factoryRegistry.size()];
+        IChannelProvider[] providers =
+                factoryRegistry.toArray(new IChannelProvider[0]);
+        String[] channelTypes = new String[providers.length];
 
         for (int i = 0; i < channelTypes.length; i++) {
-            channelTypes[i] = factory.nextElement().getProviderName();
+            channelTypes[i] = providers[i].getProviderName();
         }
 
         return channelTypes;
@@ -131,19 +157,69 @@ public final class ChannelFactory {
      * @return array of friendly channel names.
      */
     public static String[] getChannelNames() {
-        channels.clear();
+        String[] names = refresh();
+        return names.clone();
+    }
+
+    /**
+     * Add a listener informed about changes of the available channel names.
+     *
+     * @param listener reference of listener object.
+     */
+    public static void addRegistryListener(
+            final IChannelRegistryListener listener) {
+        registryListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Remove a listener informed about changes of the available channel
+     * names.
+     *
+     * @param listener reference of registered listener object.
+     */
+    public static void removeRegistryListener(
+            final IChannelRegistryListener listener) {
+        registryListeners.remove(listener);
+    }
+
+    /**
+     * Helper method to rebuild the map of channel names versus provider. The
+     * first registered provider wins if more than one provider offers a
+     * channel with the same name. Listeners are informed if the channel names
+     * changed.
+     *
+     * @return sorted array of channel names, must not be modified.
+     */
+    private static String[] refresh() {
         String[] names;
-        Enumeration<IChannelProvider> factoryList = Collections.enumeration(
-                factoryRegistry);
-        while (factoryList.hasMoreElements()) {
-            IChannelProvider factory = factoryList.nextElement();
-            for (String strName : factory.getChannelNames()) {
-                channels.put(strName, factory);
+        boolean changed;
+
+        synchronized (factoryRegistry) {
+            Map<String, IChannelProvider> map = new HashMap<>();
+            for (IChannelProvider factory : factoryRegistry) {
+                for (String strName : factory.getChannelNames()) {
+                    if (!map.containsKey(strName)) {
+                        map.put(strName, factory);
+                    }
+                }
             }
+
+            names = map.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+
+            changed = !Arrays.equals(names, channelNames);
+            channels = Collections.unmodifiableMap(map);
+            channelNames = names;
         }
 
-        names = channels.keySet().toArray(new String[0]);
-        Arrays.sort(names);
+        if (changed) {
+            // notify from a snapshot, listeners may (un)register themselves
+            IChannelRegistryListener[] listeners = registryListeners.toArray(
+                    new IChannelRegistryListener[0]);
+            for (IChannelRegistryListener listener : listeners) {
+                listener.channelsChanged(names.clone());
+            }
+        }
 
         return names;
     }
@@ -157,13 +233,18 @@ public final class ChannelFactory {
      */
     public static void registerProvider(final IChannelProvider factory)
             throws ChannelException {
-        // Check for factory with this name already registered or not
-        if (lookupProvider(factory.getProviderName()) == null) {
-            factoryRegistry.add(factory);
-        } else {
-            throw new ChannelException(
-                    EXCEPTION_MESSAGE_FACTORY_ALREADY_REGISTER);
+        synchronized (factoryRegistry) {
+            // Check for factory with this name already registered or not
+            if (lookupProvider(factory.getProviderName()) == null) {
+                factoryRegistry.add(factory);
+            } else {
+                throw new ChannelException(
+                        EXCEPTION_MESSAGE_FACTORY_ALREADY_REGISTER);
+            }
         }
+
+        // update channel names and inform listeners
+        refresh();
     }
 
     /**
@@ -176,11 +257,20 @@ public final class ChannelFactory {
      *         name could be found.
      */
     public static IChannelProvider unregisterProvider(final String name) {
-        IChannelProvider factory = lookupProvider(name);
+        IChannelProvider factory;
+
+        synchronized (factoryRegistry) {
+            factory = lookupProvider(name);
+
+            // look for factory
+            if (factory != null) {
+                factoryRegistry.remove(factory);
+            }
+        }
 
-        // look for factory
+        // update channel names and inform listeners
         if (factory != null) {
-            factoryRegistry.remove(factory);
+            refresh();
         }
 
         return factory;
@@ -195,12 +285,7 @@ public final class ChannelFactory {
      * @return channel factory object or null if not found.
      */
     public static IChannelProvider lookupProvider(final String channelType) {
-        Enumeration<IChannelProvider> registry = Collections.enumeration(
-                factoryRegistry);
-
-        while (registry.hasMoreElements()) {
-            IChannelProvider provider = registry.nextElement();
-
+        for (IChannelProvider provider : factoryRegistry) {
             if (provider.getProviderName().compareTo(channelType) == 0) {
                 return provider;
             }
@@ -216,14 +301,20 @@ public final class ChannelFactory {
      * @return the registered Channel provider with the given channel name
      */
     public static IChannelProvider getChannelProvider(final String readerName) {
-        IChannelProvider channelProvider = null;
-        for (IChannelProvider iChannelProvider : factoryRegistry) {
-            channelProvider = iChannelProvider;
-            if (Arrays.asList(channelProvider.getChannelNames())
-                    .contains(readerName)) {
+        // read cache and registry under the lock used to replace them
+        synchronized (factoryRegistry) {
+            IChannelProvider channelProvider = channels.get(readerName);
+            if (channelProvider != null) {
                 return channelProvider;
             }
+            for (IChannelProvider iChannelProvider : factoryRegistry) {
+                channelProvider = iChannelProvider;
+                if (Arrays.asList(channelProvider.getChannelNames())
+                        .contains(readerName)) {
+                    return channelProvider;
+                }
+            }
+            return channelProvider;
         }
-        return channelProvider;
     }
 }
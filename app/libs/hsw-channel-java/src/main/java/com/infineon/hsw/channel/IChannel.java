@@ -59,6 +59,46 @@ public interface IChannel {
      */
     byte[] transmit(byte[] stream) throws ChannelException;
 
+    /**
+     * Send a sequence of byte streams via the channel and return the response
+     * streams in the same order. Channels which are able to pipeline several
+     * streams (e.g. remote readers or multi-frame transports) should override
+     * this method to save the round trip per stream. The default
+     * implementation sends the streams one after the other via
+     * {@link #transmit(byte[])}.
+     * <p>
+     * If <code>expectedTrailer</code> is not negative, the channel stops after
+     * the first response whose last two bytes differ from this value. In this
+     * case the returned array is shorter than the array of streams, the
+     * remaining streams have not been sent.
+     *
+     * @param streams array of byte streams to be sent.
+     * @param expectedTrailer expected value of the last two bytes of each
+     *         response or -1 if all streams shall be sent.
+     * @return array of received response streams.
+     * @throws ChannelException if any communication problem occurred.
+     */
+    default byte[][] transmitBatch(byte[][] streams, int expectedTrailer)
+            throws ChannelException {
+        byte[][] responses = new byte[streams.length][];
+        for (int i = 0; i < streams.length; i++) {
+            byte[] response = transmit(streams[i]);
+            responses[i] = response;
+
+            if ((expectedTrailer >= 0) && (response != null) &&
+                (response.length >= 2)) {
+                int trailer = ((response[response.length - 2] & 0xFF) << 8) |
+                              (response[response.length - 1] & 0xFF);
+                if (trailer != expectedTrailer) {
+                    byte[][] partial = new byte[i + 1][];
+                    System.arraycopy(responses, 0, partial, 0, i + 1);
+                    return partial;
+                }
+            }
+        }
+        return responses;
+    }
+
     /**
      * Send a control byte stream via the channel and return response stream.
      * @param stream byte array with control stream to be sent.
@@ -0,0 +1,19 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.channel;
+
+/**
+ * Interface to be implemented by any class interested in changes of the
+ * channels available via the {@link ChannelFactory}, e.g. when a provider is
+ * registered or a reader is plugged in.
+ */
+public interface IChannelRegistryListener {
+    /**
+     * Notify the listener that the set of available channel names changed.
+     *
+     * @param channelNames sorted array of all available channel names.
+     */
+    void channelsChanged(String[] channelNames);
+}
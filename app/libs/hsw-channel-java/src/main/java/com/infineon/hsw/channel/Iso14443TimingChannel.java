@@ -0,0 +1,517 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.channel;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Channel decorator modelling the timing of an ISO/IEC 14443-4 contactless
+ * link. Every stream sent via {@link #transmit(byte[])} or
+ * {@link #transmitBatch(byte[][], int)} is forwarded to the wrapped channel
+ * and charged with the time a real NFC link would need:
+ * transmission of the I-blocks at the configured bit rate including block
+ * chaining according to the frame sizes FSC and FSD, frame delay times, the
+ * card processing time per instruction and frame waiting time extensions
+ * (S(WTX)) if the processing time exceeds the frame waiting time.
+ * <p>
+ * If charging is enabled, the calling thread is delayed until the modelled
+ * time has elapsed, so execution times measured by higher layers reflect the
+ * modelled link, e.g. the execution times of APDU responses. The modelled and
+ * actual times are accumulated and can be queried before and after a command
+ * to compare both. Note that one APDU command sent by an APDU channel may
+ * result in several transmissions, e.g. GET RESPONSE after '61XX', so the
+ * accumulated times should be compared rather than the times of the last
+ * transmission.
+ * <p>
+ * The channel properties of the wrapped channel are passed through, so
+ * command sets negotiate the same transfer lengths as without the timing
+ * model. The maximum transceive length may be limited additionally to
+ * compare different chunk sizes.
+ */
+public class Iso14443TimingChannel
+        implements IChannel, IChannelPropertyProvider {
+    /** Default frame size of card and reader */
+    public static final int DEFAULT_FRAME_SIZE = 256;
+
+    /** Default frame waiting time integer */
+    public static final int DEFAULT_FWI = 8;
+
+    /** Default guard time between two frames in nanoseconds */
+    public static final long DEFAULT_FRAME_DELAY = 86400;
+
+    /** Default card processing time per command in nanoseconds */
+    public static final long DEFAULT_PROCESSING_TIME = 1000000;
+
+    /** Carrier frequency in Hz */
+    private static final double CARRIER_FREQUENCY = 13.56e6;
+
+    /** Number of bits transmitted per byte (8 data bits and parity) */
+    private static final int BITS_PER_BYTE = 9;
+
+    /** Number of bits for start and end of frame */
+    private static final int BITS_PER_FRAME = 2;
+
+    /** Length of the block prologue (PCB) and epilogue (CRC) */
+    private static final int BLOCK_OVERHEAD = 3;
+
+    /** Length of an R(ACK) block */
+    private static final int ACK_BLOCK_LENGTH = 3;
+
+    /** Length of an S(WTX) block */
+    private static final int WTX_BLOCK_LENGTH = 4;
+
+    /** Supported bit rates in kbit/s */
+    private static final int[] BIT_RATES = { 106, 212, 424, 848 };
+
+    /** Wrapped channel */
+    private final IChannel channel;
+
+    /** Bit rate in kbit/s */
+    private int bitRate = 106;
+
+    /** Maximum frame size accepted by the card (FSC) */
+    private int fsc = DEFAULT_FRAME_SIZE;
+
+    /** Maximum frame size accepted by the reader (FSD) */
+    private int fsd = DEFAULT_FRAME_SIZE;
+
+    /** Frame waiting time integer (FWI) */
+    private int fwi = DEFAULT_FWI;
+
+    /** Guard time between two frames in nanoseconds */
+    private long frameDelay = DEFAULT_FRAME_DELAY;
+
+    /** Card processing time per instruction byte in nanoseconds */
+    private final long[] processingTimes = new long[256];
+
+    /** Limit of the maximum transceive length or 0 if not limited */
+    private int maxTransceiveLength;
+
+    /** Marker if the modelled time is charged to the caller */
+    private boolean charging = true;
+
+    /** Sum of modelled times in nanoseconds */
+    private long modelledTime;
+
+    /** Sum of actual times of the wrapped channel in nanoseconds */
+    private long actualTime;
+
+    /** Number of transmitted streams */
+    private long exchanges;
+
+    /** Modelled time of the last transmission in nanoseconds */
+    private long lastModelledTime;
+
+    /** Actual time of the last transmission in nanoseconds */
+    private long lastActualTime;
+
+    /**
+     * Creates a timing model for the given channel with 106 kbit/s, frame
+     * sizes of 256 bytes and FWI 8.
+     *
+     * @param channel channel to be wrapped.
+     */
+    public Iso14443TimingChannel(IChannel channel) {
+        this.channel = channel;
+        Arrays.fill(processingTimes, DEFAULT_PROCESSING_TIME);
+    }
+
+    /**
+     * Set the bit rate of the link.
+     *
+     * @param kbps bit rate in kbit/s (106, 212, 424 or 848).
+     * @throws IllegalArgumentException if the bit rate is not supported.
+     */
+    public synchronized void setBitRate(int kbps) {
+        for (int rate : BIT_RATES) {
+            if (rate == kbps) {
+                bitRate = kbps;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported bit rate: " + kbps);
+    }
+
+    /**
+     * Set the maximum frame sizes of card and reader.
+     *
+     * @param fsc maximum frame size accepted by the card (16..4096).
+     * @param fsd maximum frame size accepted by the reader (16..4096).
+     * @throws IllegalArgumentException if a frame size is out of range.
+     */
+    public synchronized void setFrameSizes(int fsc, int fsd) {
+        if ((fsc < 16) || (fsc > 4096) || (fsd < 16) || (fsd > 4096))
+            throw new IllegalArgumentException(
+                    "Frame size must be in range 16..4096");
+        this.fsc = fsc;
+        this.fsd = fsd;
+    }
+
+    /**
+     * Set the frame waiting time integer of the card. The frame waiting time
+     * is (256 * 16 / fc) * 2^FWI.
+     *
+     * @param fwi frame waiting time integer (0..14).
+     * @throws IllegalArgumentException if the value is out of range.
+     */
+    public synchronized void setFrameWaitingTimeInteger(int fwi) {
+        if ((fwi < 0) || (fwi > 14))
+            throw new IllegalArgumentException("FWI must be in range 0..14");
+        this.fwi = fwi;
+    }
+
+    /**
+     * Set the guard time between two frames.
+     *
+     * @param nanos guard time in nanoseconds.
+     */
+    public synchronized void setFrameDelay(long nanos) {
+        frameDelay = Math.max(0, nanos);
+    }
+
+    /**
+     * Set the card processing time of an instruction.
+     *
+     * @param ins instruction byte.
+     * @param nanos processing time in nanoseconds.
+     */
+    public synchronized void setProcessingTime(int ins, long nanos) {
+        processingTimes[ins & 0xFF] = Math.max(0, nanos);
+    }
+
+    /**
+     * Set the card processing time of all instructions.
+     *
+     * @param nanos processing time in nanoseconds.
+     */
+    public synchronized void setDefaultProcessingTime(long nanos) {
+        Arrays.fill(processingTimes, Math.max(0, nanos));
+    }
+
+    /**
+     * Limit the maximum transceive length reported by
+     * {@link #getChannelProperties()}. The limit only applies if the wrapped
+     * channel reports a maximum transceive length.
+     *
+     * @param length maximum transceive length in bytes or 0 to report the
+     *         value of the wrapped channel.
+     */
+    public synchronized void setMaxTransceiveLength(int length) {
+        maxTransceiveLength = Math.max(0, length);
+    }
+
+    /**
+     * Enable or disable charging of the modelled time. If enabled, each
+     * transmission takes at least the modelled time.
+     *
+     * @param charging true to delay the caller by the modelled time.
+     */
+    public synchronized void setCharging(boolean charging) {
+        this.charging = charging;
+    }
+
+    /**
+     * Return the sum of modelled times of all transmitted streams.
+     *
+     * @return modelled time in nanoseconds.
+     */
+    public synchronized long getModelledTime() {
+        return modelledTime;
+    }
+
+    /**
+     * Return the sum of the times the wrapped channel needed for all
+     * transmitted streams.
+     *
+     * @return actual time in nanoseconds.
+     */
+    public synchronized long getActualTime() {
+        return actualTime;
+    }
+
+    /**
+     * Return the number of transmitted streams.
+     *
+     * @return number of exchanges.
+     */
+    public synchronized long getExchangeCount() {
+        return exchanges;
+    }
+
+    /**
+     * Return the modelled time of the last call of {@link #transmit(byte[])}
+     * or {@link #transmitBatch(byte[][], int)}. This covers a single
+     * transmission, not necessarily a complete APDU command of an APDU
+     * channel.
+     *
+     * @return modelled time in nanoseconds.
+     */
+    public synchronized long getLastModelledTime() {
+        return lastModelledTime;
+    }
+
+    /**
+     * Return the time the wrapped channel needed for the last call of
+     * {@link #transmit(byte[])} or {@link #transmitBatch(byte[][], int)}. This
+     * covers a single transmission, not necessarily a complete APDU command
+     * of an APDU channel.
+     *
+     * @return actual time in nanoseconds.
+     */
+    public synchronized long getLastActualTime() {
+        return lastActualTime;
+    }
+
+    /**
+     * Reset the accumulated times.
+     */
+    public synchronized void resetTimes() {
+        modelledTime = 0;
+        actualTime = 0;
+        exchanges = 0;
+        lastModelledTime = 0;
+        lastActualTime = 0;
+    }
+
+    /**
+     * Calculate the modelled time of one exchange.
+     *
+     * @param command command stream.
+     * @param responseLength length of the response stream.
+     * @return modelled time in nanoseconds.
+     */
+    public synchronized long getModelledTime(byte[] command,
+                                             int responseLength) {
+        double etu = 128.0 / ((bitRate / 106.0) * CARRIER_FREQUENCY) * 1e9;
+        double time = 0;
+        int frames = 0;
+
+        // command I-blocks, each chained block is acknowledged by the card
+        int commandBlocks = blocks(command.length, fsc);
+        time += transferTime(command.length, commandBlocks, etu);
+        time += (commandBlocks - 1) * frameTime(ACK_BLOCK_LENGTH, etu);
+        frames += 2 * commandBlocks - 1;
+
+        // card processing, S(WTX) exchanges if longer than FWT
+        long processing = (command.length > 1)
+                                  ? processingTimes[command[1] & 0xFF]
+                                  : 0;
+        double fwt = 256.0 * 16 / CARRIER_FREQUENCY * (1 << fwi) * 1e9;
+        long wtx = (long) Math.ceil(processing / fwt) - 1;
+        if (wtx > 0) {
+            time += wtx * 2 * frameTime(WTX_BLOCK_LENGTH, etu);
+            frames += (int) (2 * wtx);
+        }
+        time += processing;
+
+        // response I-blocks, each chained block is acknowledged by the reader
+        int responseBlocks = blocks(responseLength, fsd);
+        time += transferTime(responseLength, responseBlocks, etu);
+        time += (responseBlocks - 1) * frameTime(ACK_BLOCK_LENGTH, etu);
+        frames += 2 * responseBlocks - 1;
+
+        return (long) time + frames * frameDelay;
+    }
+
+    @Override
+    public void open(boolean exclusive) throws ChannelException {
+        channel.open(exclusive);
+    }
+
+    @Override
+    public void close() throws ChannelException {
+        channel.close();
+    }
+
+    @Override
+    public byte[] connect(byte[] request) throws ChannelException {
+        return channel.connect(request);
+    }
+
+    @Override
+    public byte[] disconnect(byte[] request) throws ChannelException {
+        return channel.disconnect(request);
+    }
+
+    @Override
+    public byte[] reset(byte[] request) throws ChannelException {
+        return channel.reset(request);
+    }
+
+    @Override
+    public byte[] transmit(byte[] stream) throws ChannelException {
+        long start = System.nanoTime();
+        byte[] response = channel.transmit(stream);
+        long actual = System.nanoTime() - start;
+
+        long modelled = getModelledTime(stream,
+                                        (response != null) ? response.length
+                                                           : 0);
+        account(start, actual, modelled, 1);
+        return response;
+    }
+
+    /**
+     * Forwards the streams to the batch transmission of the wrapped channel
+     * and charges the modelled time of all exchanged streams, as each stream
+     * still needs its own exchange on the contactless link.
+     */
+    @Override
+    public byte[][] transmitBatch(byte[][] streams, int expectedTrailer)
+            throws ChannelException {
+        long start = System.nanoTime();
+        byte[][] responses = channel.transmitBatch(streams, expectedTrailer);
+        long actual = System.nanoTime() - start;
+
+        long modelled = 0;
+        for (int i = 0; i < responses.length; i++) {
+            modelled += getModelledTime(streams[i],
+                                        (responses[i] != null)
+                                                ? responses[i].length
+                                                : 0);
+        }
+        account(start, actual, modelled, responses.length);
+        return responses;
+    }
+
+    @Override
+    public byte[] control(byte[] stream) throws ChannelException {
+        return channel.control(stream);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isConnected();
+    }
+
+    @Override
+    public String getName() {
+        return channel.getName();
+    }
+
+    /**
+     * Returns the channel properties of the wrapped channel, with the
+     * maximum transceive length limited by
+     * {@link #setMaxTransceiveLength(int)}.
+     */
+    @Override
+    public Properties getChannelProperties() {
+        Properties properties = new Properties();
+        if (channel instanceof IChannelPropertyProvider) {
+            Properties wrapped =
+                    ((IChannelPropertyProvider) channel).getChannelProperties();
+            if (wrapped != null) {
+                properties.putAll(wrapped);
+            }
+        }
+
+        int limit;
+        synchronized (this) {
+            limit = maxTransceiveLength;
+        }
+        String value =
+                properties.getProperty(ChannelConstants.MAX_TRANSCEIVE_LENGTH);
+        if ((limit > 0) && (value != null)) {
+            try {
+                int length = Math.min(Integer.parseInt(value.trim()), limit);
+                properties.setProperty(ChannelConstants.MAX_TRANSCEIVE_LENGTH,
+                                       Integer.toString(length));
+            } catch (NumberFormatException e) {
+                // keep the value of the wrapped channel
+            }
+        }
+        return properties;
+    }
+
+    @Override
+    public void saveChannelProperties() {
+        if (channel instanceof IChannelPropertyProvider) {
+            ((IChannelPropertyProvider) channel).saveChannelProperties();
+        }
+    }
+
+    /**
+     * Return the wrapped channel.
+     *
+     * @return wrapped channel.
+     */
+    public IChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Helper method to accumulate the times of a transmission and to delay
+     * the caller until the modelled time has elapsed.
+     *
+     * @param start start of the transmission in nanoseconds.
+     * @param actual time of the wrapped channel in nanoseconds.
+     * @param modelled modelled time in nanoseconds.
+     * @param count number of exchanged streams.
+     */
+    private void account(long start, long actual, long modelled, int count) {
+        boolean charge;
+        synchronized (this) {
+            modelledTime += modelled;
+            actualTime += actual;
+            exchanges += count;
+            lastModelledTime = modelled;
+            lastActualTime = actual;
+            charge = charging;
+        }
+
+        if (charge) {
+            // wait for the remaining modelled time
+            long deadline = start + modelled;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Helper method to calculate the number of I-blocks of a stream.
+     *
+     * @param length length of the stream.
+     * @param frameSize maximum frame size of the receiver.
+     * @return number of blocks (at least 1).
+     */
+    private static int blocks(int length, int frameSize) {
+        int payload = frameSize - BLOCK_OVERHEAD;
+        return Math.max(1, (length + payload - 1) / payload);
+    }
+
+    /**
+     * Helper method to calculate the time to transfer a stream in I-blocks.
+     *
+     * @param length length of the stream.
+     * @param blocks number of blocks.
+     * @param etu elementary time unit in nanoseconds.
+     * @return transfer time in nanoseconds.
+     */
+    private static double transferTime(int length, int blocks, double etu) {
+        return ((length + blocks * BLOCK_OVERHEAD) * BITS_PER_BYTE +
+                blocks * BITS_PER_FRAME) *
+               etu;
+    }
+
+    /**
+     * Helper method to calculate the time to transfer a single frame.
+     *
+     * @param length length of the frame including prologue and epilogue.
+     * @param etu elementary time unit in nanoseconds.
+     * @return transfer time in nanoseconds.
+     */
+    private static double frameTime(int length, double etu) {
+        return (length * BITS_PER_BYTE + BITS_PER_FRAME) * etu;
+    }
+}
@@ -0,0 +1,356 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.channel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the provider registry and the channel name cache of
+ * {@link ChannelFactory}.
+ */
+public class ChannelFactoryTest {
+    /**
+     * Name of the first test provider.
+     */
+    private static final String PROVIDER_A = "ChannelFactoryTest A";
+
+    /**
+     * Name of the second test provider.
+     */
+    private static final String PROVIDER_B = "ChannelFactoryTest B";
+
+    /**
+     * Listeners registered by a test, removed afterwards.
+     */
+    private final List<IChannelRegistryListener> listeners = new ArrayList<>();
+
+    /**
+     * Removes the test providers and listeners from the global factory.
+     */
+    @After
+    public void tearDown() {
+        for (IChannelRegistryListener listener : listeners) {
+            ChannelFactory.removeRegistryListener(listener);
+        }
+        ChannelFactory.unregisterProvider(PROVIDER_A);
+        ChannelFactory.unregisterProvider(PROVIDER_B);
+    }
+
+    /**
+     * Checks that a registered channel is found and reused.
+     *
+     * @throws ChannelException if the provider cannot be registered.
+     */
+    @Test
+    public void registeredChannelIsReused() throws ChannelException {
+        TestProvider provider = new TestProvider(PROVIDER_A, "Reader 1");
+        ChannelFactory.registerProvider(provider);
+
+        IChannel channel = ChannelFactory.getChannel("Reader 1");
+        assertNotNull(channel);
+        assertSame(channel, ChannelFactory.getChannel("Reader 1"));
+        assertSame(channel,
+                   ChannelFactory.getChannel(PROVIDER_A, "Reader 1", null));
+        assertSame(provider, ChannelFactory.getChannelProvider("Reader 1"));
+        assertTrue(Arrays.asList(ChannelFactory.getChannelNames())
+                           .contains("Reader 1"));
+    }
+
+    /**
+     * Checks that a reader connected after the cache has been built is found.
+     *
+     * @throws ChannelException if the provider cannot be registered.
+     */
+    @Test
+    public void newReaderRefreshesCache() throws ChannelException {
+        TestProvider provider = new TestProvider(PROVIDER_A, "Reader 1");
+        ChannelFactory.registerProvider(provider);
+        assertNull(ChannelFactory.getChannel("Reader 2"));
+
+        provider.add("Reader 2");
+        IChannel channel = ChannelFactory.getChannel("Reader 2");
+        assertNotNull(channel);
+        assertEquals("Reader 2", channel.getName());
+        assertSame(provider, ChannelFactory.getChannelProvider("Reader 2"));
+    }
+
+    /**
+     * Checks that a removed reader and an unregistered provider are evicted
+     * from the cache.
+     *
+     * @throws ChannelException if the provider cannot be registered.
+     */
+    @Test
+    public void removedChannelsAreEvicted() throws ChannelException {
+        TestProvider provider = new TestProvider(PROVIDER_A, "Reader 1",
+                                                 "Reader 2");
+        ChannelFactory.registerProvider(provider);
+        assertNotNull(ChannelFactory.getChannel("Reader 2"));
+
+        provider.remove("Reader 2");
+        assertNull(ChannelFactory.getChannel("Reader 2"));
+        assertFalse(Arrays.asList(ChannelFactory.getChannelNames())
+                            .contains("Reader 2"));
+
+        assertSame(provider, ChannelFactory.unregisterProvider(PROVIDER_A));
+        assertNull(ChannelFactory.getChannel("Reader 1"));
+        assertNull(ChannelFactory.lookupProvider(PROVIDER_A));
+    }
+
+    /**
+     * Checks that the first registered provider wins for duplicate channel
+     * names and the second one takes over after unregistering the first.
+     *
+     * @throws ChannelException if a provider cannot be registered.
+     */
+    @Test
+    public void firstProviderWinsForDuplicateNames() throws ChannelException {
+        TestProvider first = new TestProvider(PROVIDER_A, "Reader 1");
+        TestProvider second = new TestProvider(PROVIDER_B, "Reader 1");
+        ChannelFactory.registerProvider(first);
+        ChannelFactory.registerProvider(second);
+
+        assertSame(first.get("Reader 1"),
+                   ChannelFactory.getChannel("Reader 1"));
+
+        ChannelFactory.unregisterProvider(PROVIDER_A);
+        assertSame(second.get("Reader 1"),
+                   ChannelFactory.getChannel("Reader 1"));
+        assertSame(second, ChannelFactory.getChannelProvider("Reader 1"));
+    }
+
+    /**
+     * Checks that a provider name can only be registered once.
+     *
+     * @throws ChannelException expected for the second registration.
+     */
+    @Test(expected = ChannelException.class)
+    public void duplicateProviderIsRejected() throws ChannelException {
+        ChannelFactory.registerProvider(new TestProvider(PROVIDER_A));
+        ChannelFactory.registerProvider(new TestProvider(PROVIDER_A));
+    }
+
+    /**
+     * Checks that listeners are only informed if the channel names change.
+     *
+     * @throws ChannelException if the provider cannot be registered.
+     */
+    @Test
+    public void listenersAreInformedAboutChanges() throws ChannelException {
+        final List<String[]> events = new ArrayList<>();
+        addListener(new IChannelRegistryListener() {
+            @Override
+            public void channelsChanged(String[] channelNames) {
+                events.add(channelNames);
+            }
+        });
+
+        TestProvider provider = new TestProvider(PROVIDER_A, "Reader 1");
+        ChannelFactory.registerProvider(provider);
+        assertEquals(1, events.size());
+        assertTrue(Arrays.asList(events.get(0)).contains("Reader 1"));
+
+        // no change, no event
+        ChannelFactory.getChannelNames();
+        assertEquals(1, events.size());
+
+        ChannelFactory.unregisterProvider(PROVIDER_A);
+        assertEquals(2, events.size());
+        assertFalse(Arrays.asList(events.get(1)).contains("Reader 1"));
+    }
+
+    /**
+     * Checks that a listener can remove itself during a notification without
+     * affecting the notification of the other listeners.
+     *
+     * @throws ChannelException if the provider cannot be registered.
+     */
+    @Test
+    public void listenerMayRemoveItself() throws ChannelException {
+        final List<String> calls = new ArrayList<>();
+        addListener(new IChannelRegistryListener() {
+            @Override
+            public void channelsChanged(String[] channelNames) {
+                calls.add("first");
+                ChannelFactory.removeRegistryListener(this);
+            }
+        });
+        addListener(new IChannelRegistryListener() {
+            @Override
+            public void channelsChanged(String[] channelNames) {
+                calls.add("second");
+            }
+        });
+
+        ChannelFactory.registerProvider(new TestProvider(PROVIDER_A,
+                                                         "Reader 1"));
+        ChannelFactory.unregisterProvider(PROVIDER_A);
+        assertArrayEquals(new String[] { "first", "second", "second" },
+                          calls.toArray(new String[0]));
+    }
+
+    /**
+     * Registers a listener and remembers it for removal.
+     *
+     * @param listener listener to be registered.
+     */
+    private void addListener(IChannelRegistryListener listener) {
+        listeners.add(listener);
+        ChannelFactory.addRegistryListener(listener);
+    }
+
+    /**
+     * Provider of test channels whose set of readers can be changed.
+     */
+    private static final class TestProvider implements IChannelProvider {
+        /**
+         * Name of the provider.
+         */
+        private final String name;
+
+        /**
+         * Channels mapped by name.
+         */
+        private final Map<String, IChannel> channels = new LinkedHashMap<>();
+
+        /**
+         * Creates a provider.
+         *
+         * @param name name of the provider.
+         * @param channelNames names of the initially available readers.
+         */
+        private TestProvider(String name, String... channelNames) {
+            this.name = name;
+            for (String channelName : channelNames) {
+                add(channelName);
+            }
+        }
+
+        /**
+         * Adds a reader.
+         *
+         * @param channelName name of the reader.
+         */
+        private synchronized void add(String channelName) {
+            channels.put(channelName, new TestChannel(channelName));
+        }
+
+        /**
+         * Removes a reader.
+         *
+         * @param channelName name of the reader.
+         */
+        private synchronized void remove(String channelName) {
+            channels.remove(channelName);
+        }
+
+        /**
+         * Returns the channel of a reader.
+         *
+         * @param channelName name of the reader.
+         * @return channel or null if not available.
+         */
+        private synchronized IChannel get(String channelName) {
+            return channels.get(channelName);
+        }
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+
+        @Override
+        public synchronized String[] getChannelNames() {
+            return channels.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public IChannel getChannel(String channelName,
+                                   String channelProperties) {
+            return get(channelName);
+        }
+    }
+
+    /**
+     * Channel without any communication.
+     */
+    private static final class TestChannel implements IChannel {
+        /**
+         * Name of the channel.
+         */
+        private final String name;
+
+        /**
+         * Creates a channel.
+         *
+         * @param name name of the channel.
+         */
+        private TestChannel(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void open(boolean exclusive) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public byte[] connect(byte[] request) {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] disconnect(byte[] request) {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] reset(byte[] request) {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] transmit(byte[] stream) {
+            return new byte[] { (byte) 0x90, 0x00 };
+        }
+
+        @Override
+        public byte[] control(byte[] stream) {
+            return new byte[0];
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table driven 16-bits CRC with the polynomial x^16 + x^12 + x^5 + 1 as used
+ * by ISO-14443-3 Type-A and Type-B. Data may be added incrementally by the
+ * update methods.
+ * <p>
+ * The CRC is computed LSB first like in ISO-14443-3. With bit inversion the
+ * bits of every data byte and of the result bytes are reversed, which is
+ * computed MSB first with a second table instead of reversing each byte, see
+ * {@link Utils#computeCRC(short, byte[], boolean)}.
+ */
+public class Crc16 {
+    /** Initial value of ISO-14443-3 Type-A CRC */
+    public static final short INIT_TYPE_A = (short) 0x6363;
+    /** Initial value of ISO-14443-3 Type-B CRC */
+    public static final short INIT_TYPE_B = (short) 0xFFFF;
+    /** Final XOR value of ISO-14443-3 Type-B CRC */
+    public static final short XOR_TYPE_B = (short) 0xFFFF;
+
+    /** Reflected polynomial for LSB first computation */
+    private static final int POLYNOMIAL_REFLECTED = 0x8408;
+    /** Polynomial for MSB first computation */
+    private static final int POLYNOMIAL = 0x1021;
+
+    /** CRC of every byte value for LSB first computation */
+    private static final int[] TABLE_REFLECTED = new int[256];
+    /** CRC of every byte value for MSB first computation */
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int reflected = i;
+            int normal = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                reflected = ((reflected & 1) != 0)
+                                    ? (reflected >>> 1) ^ POLYNOMIAL_REFLECTED
+                                    : reflected >>> 1;
+                normal = ((normal & 0x8000) != 0) ? (normal << 1) ^ POLYNOMIAL
+                                                  : normal << 1;
+            }
+            TABLE_REFLECTED[i] = reflected;
+            TABLE[i] = normal & 0xFFFF;
+        }
+    }
+
+    /** Initial value of the register */
+    private final int initValue;
+    /** Value XORed to the register for the result */
+    private final int xorValue;
+    /** True if the bits of data and result bytes are reversed */
+    private final boolean invertBits;
+    /** Current CRC register */
+    private int crc;
+
+    /**
+     * Constructor of a new CRC without final XOR value.
+     *
+     * @param initValue  initial value, e.g. {@link #INIT_TYPE_A}.
+     * @param invertBits true if the bits of data and result bytes are
+     *                   reversed.
+     */
+    public Crc16(short initValue, boolean invertBits) {
+        this(initValue, (short) 0, invertBits);
+    }
+
+    /**
+     * Constructor of a new CRC.
+     *
+     * @param initValue  initial value, e.g. {@link #INIT_TYPE_B}.
+     * @param xorValue   value XORed to the result, e.g. {@link #XOR_TYPE_B}.
+     * @param invertBits true if the bits of data and result bytes are
+     *                   reversed.
+     */
+    public Crc16(short initValue, short xorValue, boolean invertBits) {
+        this.invertBits = invertBits;
+        this.xorValue = xorValue & 0xFFFF;
+        // MSB first computation needs the bit reversed register
+        this.initValue = invertBits ? reverse(initValue) : initValue & 0xFFFF;
+        reset();
+    }
+
+    /**
+     * Create a CRC of ISO-14443-3 Type-A.
+     *
+     * @return new CRC.
+     */
+    public static Crc16 typeA() {
+        return new Crc16(INIT_TYPE_A, false);
+    }
+
+    /**
+     * Create a CRC of ISO-14443-3 Type-B.
+     *
+     * @return new CRC.
+     */
+    public static Crc16 typeB() {
+        return new Crc16(INIT_TYPE_B, XOR_TYPE_B, false);
+    }
+
+    /**
+     * Reset the CRC to its initial value.
+     *
+     * @return reference to 'this' to allow simple concatenation of operations.
+     */
+    public Crc16 reset() {
+        crc = initValue;
+        return this;
+    }
+
+    /**
+     * Add one byte to the CRC.
+     *
+     * @param data data byte.
+     * @return reference to 'this' to allow simple concatenation of operations.
+     */
+    public Crc16 update(byte data) {
+        if (invertBits) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ data) & 0xFF]) & 0xFFFF;
+        } else {
+            crc = (crc >>> 8) ^ TABLE_REFLECTED[(crc ^ data) & 0xFF];
+        }
+        return this;
+    }
+
+    /**
+     * Add all bytes of an array to the CRC.
+     *
+     * @param data data bytes.
+     * @return reference to 'this' to allow simple concatenation of operations.
+     */
+    public Crc16 update(byte[] data) {
+        return update(data, 0, data.length);
+    }
+
+    /**
+     * Add a part of an array to the CRC.
+     *
+     * @param data   data bytes.
+     * @param offset offset of the first byte.
+     * @param length number of bytes.
+     * @return reference to 'this' to allow simple concatenation of operations.
+     */
+    public Crc16 update(byte[] data, int offset, int length) {
+        if ((offset < 0) || (length < 0) || (offset + length > data.length) ||
+            (offset + length < 0))
+            throw new IndexOutOfBoundsException("Invalid offset or length");
+
+        int value = crc;
+        int end = offset + length;
+        if (invertBits) {
+            for (int i = offset; i < end; i++) {
+                int index = ((value >>> 8) ^ data[i]) & 0xFF;
+                value = ((value << 8) ^ TABLE[index]) & 0xFFFF;
+            }
+        } else {
+            for (int i = offset; i < end; i++) {
+                int index = (value ^ data[i]) & 0xFF;
+                value = (value >>> 8) ^ TABLE_REFLECTED[index];
+            }
+        }
+        crc = value;
+        return this;
+    }
+
+    /**
+     * Add the remaining bytes of a buffer to the CRC. The position of the
+     * buffer is advanced to its limit.
+     *
+     * @param buffer data bytes.
+     * @return reference to 'this' to allow simple concatenation of operations.
+     */
+    public Crc16 update(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                   length);
+            buffer.position(buffer.limit());
+        } else {
+            for (int i = 0; i < length; i++) {
+                update(buffer.get());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Return the CRC of all bytes added since construction or reset.
+     *
+     * @return 16-bits CRC value.
+     */
+    public int getValue() {
+        return crc ^ xorValue;
+    }
+
+    /**
+     * Return the CRC bytes in the order of
+     * {@link Utils#computeCRC(short, byte[], boolean)}: the most significant
+     * byte first, with bit inversion the reversed least significant byte
+     * first.
+     *
+     * @return CRC bytes.
+     */
+    public byte[] getBytes() {
+        int value = getValue();
+        if (invertBits) {
+            return new byte[] { (byte) value, (byte) (value >>> 8) };
+        }
+        return new byte[] { (byte) (value >>> 8), (byte) value };
+    }
+
+    /**
+     * Reverse the bit order of a 16-bits value.
+     *
+     * @param value value to be reversed.
+     * @return reversed value.
+     */
+    private static int reverse(short value) {
+        return Integer.reverse(value & 0xFFFF) >>> 16;
+    }
+}
@@ -4,8 +4,6 @@
 
 package com.infineon.hsw.utils;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -115,17 +113,7 @@ public class Tlv {
      * @throws UtilException throws Util Exception in case error in length.
      */
     public int getLength() throws UtilException {
-        int length = 0;
-
-        for (Object v : value) {
-            if (v instanceof Tlv) {
-                length += ((Tlv) v).toBytes().length;
-            } else {
-                length += Utils.toBytes(v).length;
-            }
-        }
-
-        return length;
+        return new TlvEncoder().measureValue(this);
     }
 
     /**
@@ -137,17 +125,7 @@ public class Tlv {
      *                       concatenation.
      */
     public byte[] getValue() throws UtilException {
-        byte[] tlv = new byte[0];
-
-        for (Object v : value) {
-            if (v instanceof Tlv) {
-                tlv = Utils.concat(tlv, ((Tlv) v).toBytes());
-            } else {
-                tlv = Utils.concat(tlv, Utils.toBytes(v));
-            }
-        }
-
-        return tlv;
+        return new TlvEncoder().encodeValue(this);
     }
 
     /**
@@ -155,11 +133,22 @@ public class Tlv {
      * and) length.
      *
      * @return byte array representation of TLV or LV structure.
+     * @throws UtilException if a value cannot be converted into a byte array.
+     */
+    public byte[] encode() throws UtilException {
+        return new TlvEncoder().encode(this);
+    }
+
+    /**
+     * Return byte array representation of TLV or LV structure including (tag
+     * and) length. Failures are logged and result in an empty array, use
+     * {@link #encode()} to get the exception instead.
+     *
+     * @return byte array representation of TLV or LV structure.
      */
     public byte[] toBytes() {
         try {
-            // surround with (tag and) length
-            return buildTlv(tag, getValue(), allowLength80);
+            return encode();
         } catch (UtilException e) {
             logger.log(Level.SEVERE, "Build TLV Failed with Util Exception.",
                        e);
@@ -366,17 +355,7 @@ public class Tlv {
      */
     public static byte[] buildDgiTlvList(List<Tlv> tlvList)
             throws UtilException {
-        ByteArrayOutputStream tlvStream = new ByteArrayOutputStream();
-        try {
-            for (Tlv tlv : tlvList) {
-                byte[] encodedDgiTLV = Tlv.buildDgiTlv((short) tlv.getTag(),
-                                                       tlv.getValue());
-                tlvStream.write(encodedDgiTLV);
-            }
-            return tlvStream.toByteArray();
-        } catch (IOException ex) {
-            throw new UtilException("Failed to process the input TLVs", ex);
-        }
+        return new TlvEncoder(true).encode(tlvList);
     }
 
     /**
@@ -392,13 +371,14 @@ public class Tlv {
     }
 
     /**
-     * Build encoded Dgi length.
+     * Build encoded Dgi length. Lengths up to 254 bytes are encoded in one
+     * byte, longer lengths as 'FF' followed by two length bytes.
      *
      * @param length Length to be encoded.
      * @return Byte array containing length information.
      */
     public static byte[] encodeDgiLength(int length) {
-        if ((length & 0xFF) == length) {
+        if ((length >= 0) && (length < 0xFF)) {
             return Utils.toBytes(length, 1);
         } else {
             byte[] lengthBytes = new byte[3];
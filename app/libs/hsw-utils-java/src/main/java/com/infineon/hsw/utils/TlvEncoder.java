@@ -0,0 +1,353 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encoder for trees of {@link Tlv} objects. The encoder first computes the
+ * value length of every element bottom-up in one traversal and then writes
+ * tags, lengths and values in a second traversal into an output of the exact
+ * size, so nested structures are encoded only once.
+ * <p>
+ * In DGI mode the given top level elements are encoded with 2 bytes tags and
+ * DGI lengths, while nested {@link Tlv} values are BER encoded, like
+ * {@link Tlv#buildDgiTlvList(List)} does.
+ * <p>
+ * An encoder instance may be reused but must not be shared between threads.
+ */
+public class TlvEncoder {
+    /** Largest length of a DGI value */
+    private static final int MAX_DGI_LENGTH = 0xFFFF;
+
+    /** True for DGI encoding of the top level elements */
+    private final boolean dgi;
+
+    /** Value lengths of all TLV objects in order of traversal */
+    private int[] lengths = new int[16];
+    /** Number of TLV objects measured */
+    private int count;
+    /** Values other than TLV objects in order of traversal */
+    private final ArrayList<byte[]> leaves = new ArrayList<>();
+
+    /** Index of next TLV object to be written */
+    private int nextLength;
+    /** Index of next value to be written */
+    private int nextLeaf;
+
+    /**
+     * Constructor of a BER encoder.
+     */
+    public TlvEncoder() {
+        this(false);
+    }
+
+    /**
+     * Constructor of a new encoder.
+     *
+     * @param dgi if true, top level elements are DGI encoded, otherwise BER
+     *            encoded.
+     */
+    public TlvEncoder(boolean dgi) {
+        this.dgi = dgi;
+    }
+
+    /**
+     * Compute the encoded length of a TLV structure.
+     *
+     * @param tlv TLV object to be measured.
+     * @return number of bytes written by {@link #encode(Tlv)}.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    public int measure(Tlv tlv) throws UtilException {
+        return measure(Collections.singletonList(tlv));
+    }
+
+    /**
+     * Compute the encoded length of a list of TLV structures.
+     *
+     * @param tlvs TLV objects to be measured.
+     * @return number of bytes written by {@link #encode(List)}.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    public int measure(List<Tlv> tlvs) throws UtilException {
+        reset();
+        int length = 0;
+        for (Tlv tlv : tlvs) {
+            length = add(length, measure(tlv, dgi));
+        }
+        return length;
+    }
+
+    /**
+     * Compute the length of the value part of a TLV structure.
+     *
+     * @param tlv TLV object to be measured.
+     * @return number of bytes written by {@link #encodeValue(Tlv)}.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    public int measureValue(Tlv tlv) throws UtilException {
+        reset();
+        return measureValues(tlv);
+    }
+
+    /**
+     * Encode a TLV structure.
+     *
+     * @param tlv TLV object to be encoded.
+     * @return byte array containing the encoded structure.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    public byte[] encode(Tlv tlv) throws UtilException {
+        return encode(Collections.singletonList(tlv));
+    }
+
+    /**
+     * Encode a list of TLV structures into one byte array.
+     *
+     * @param tlvs TLV objects to be encoded.
+     * @return byte array containing the concatenated structures.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    public byte[] encode(List<Tlv> tlvs) throws UtilException {
+        byte[] encoded = new byte[measure(tlvs)];
+        write(tlvs, ByteBuffer.wrap(encoded));
+        return encoded;
+    }
+
+    /**
+     * Encode a list of TLV structures into a buffer. The structures are
+     * written at the current position of the buffer, which is advanced.
+     *
+     * @param tlvs   TLV objects to be encoded.
+     * @param buffer buffer receiving the encoded structures.
+     * @throws UtilException if a value cannot be converted to a byte array,
+     *                       the structure is too long or does not fit into
+     *                       the remaining buffer.
+     */
+    public void encode(List<Tlv> tlvs, ByteBuffer buffer)
+            throws UtilException {
+        if (measure(tlvs) > buffer.remaining())
+            throw new UtilException("Buffer too small for TLV structure");
+        write(tlvs, buffer);
+    }
+
+    /**
+     * Encode the value part of a TLV structure without tag and length.
+     *
+     * @param tlv TLV object to be encoded.
+     * @return byte array containing the encoded value.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    public byte[] encodeValue(Tlv tlv) throws UtilException {
+        byte[] encoded = new byte[measureValue(tlv)];
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        writeValues(tlv, buffer);
+        return encoded;
+    }
+
+    /**
+     * Drop the results of a previous traversal.
+     */
+    private void reset() {
+        count = 0;
+        leaves.clear();
+        nextLength = 0;
+        nextLeaf = 0;
+    }
+
+    /**
+     * Measure a TLV object and store its value length.
+     *
+     * @param tlv TLV object to be measured.
+     * @param dgi true for DGI encoding of this object.
+     * @return encoded length including tag and length.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    private int measure(Tlv tlv, boolean dgi) throws UtilException {
+        if (count == lengths.length)
+            lengths = Arrays.copyOf(lengths, count * 2);
+
+        int index = count++;
+        int length = measureValues(tlv);
+        lengths[index] = length;
+
+        if (dgi) {
+            if (length > MAX_DGI_LENGTH)
+                throw new UtilException("DGI value too long");
+            return add(length, 2 + dgiLengthSize(length));
+        }
+        return add(length, tagSize(tlv.tag) +
+                                   lengthSize(length, tlv.allowLength80));
+    }
+
+    /**
+     * Measure the values of a TLV object.
+     *
+     * @param tlv TLV object to be measured.
+     * @return length of the value part.
+     * @throws UtilException if a value cannot be converted to a byte array or
+     *                       the structure is too long.
+     */
+    private int measureValues(Tlv tlv) throws UtilException {
+        int length = 0;
+        for (Object v : tlv.value) {
+            if (v instanceof Tlv) {
+                length = add(length, measure((Tlv) v, false));
+            } else {
+                byte[] bytes = Utils.toBytes(v);
+                leaves.add(bytes);
+                length = add(length, bytes.length);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Write the measured TLV structures.
+     *
+     * @param tlvs   TLV objects measured before.
+     * @param buffer buffer receiving the encoded structures.
+     */
+    private void write(List<Tlv> tlvs, ByteBuffer buffer) {
+        for (Tlv tlv : tlvs) {
+            write(tlv, dgi, buffer);
+        }
+    }
+
+    /**
+     * Write a measured TLV object.
+     *
+     * @param tlv    TLV object measured before.
+     * @param dgi    true for DGI encoding of this object.
+     * @param buffer buffer receiving the encoded structure.
+     */
+    private void write(Tlv tlv, boolean dgi, ByteBuffer buffer) {
+        int length = lengths[nextLength++];
+        if (dgi) {
+            buffer.putShort((short) tlv.tag);
+            if (length < 0xFF) {
+                buffer.put((byte) length);
+            } else {
+                buffer.put((byte) 0xFF);
+                buffer.putShort((short) length);
+            }
+        } else {
+            putNumber(buffer, tlv.tag, tagSize(tlv.tag));
+            int size = lengthSize(length, tlv.allowLength80);
+            if (size == 1) {
+                buffer.put((byte) length);
+            } else {
+                buffer.put((byte) (0x80 | (size - 1)));
+                putNumber(buffer, length, size - 1);
+            }
+        }
+        writeValues(tlv, buffer);
+    }
+
+    /**
+     * Write the values of a measured TLV object.
+     *
+     * @param tlv    TLV object measured before.
+     * @param buffer buffer receiving the encoded values.
+     */
+    private void writeValues(Tlv tlv, ByteBuffer buffer) {
+        for (Object v : tlv.value) {
+            if (v instanceof Tlv) {
+                write((Tlv) v, false, buffer);
+            } else {
+                buffer.put(leaves.get(nextLeaf++));
+            }
+        }
+    }
+
+    /**
+     * Write the lower bytes of a number in big endian order.
+     *
+     * @param buffer buffer receiving the bytes.
+     * @param number number to be written.
+     * @param size   number of bytes.
+     */
+    private static void putNumber(ByteBuffer buffer, int number, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            buffer.put((byte) (number >>> (8 * i)));
+        }
+    }
+
+    /**
+     * Add lengths and check for overflow.
+     *
+     * @param a first length.
+     * @param b second length.
+     * @return sum of both lengths.
+     * @throws UtilException if the sum exceeds the integer range.
+     */
+    private static int add(int a, int b) throws UtilException {
+        int sum = a + b;
+        if (sum < 0)
+            throw new UtilException("TLV structure too long");
+        return sum;
+    }
+
+    /**
+     * Return the size of a BER tag, like {@link Tlv#encodeTag(int)}.
+     *
+     * @param tag tag or zero for LV structures.
+     * @return number of tag bytes.
+     */
+    private static int tagSize(int tag) {
+        if (tag == 0)
+            return 0;
+        if ((tag & 0xFF) == tag)
+            return 1;
+        if ((tag & 0xFFFF) == tag)
+            return 2;
+        if ((tag & 0xFFFFFF) == tag)
+            return 3;
+        return 4;
+    }
+
+    /**
+     * Return the size of a BER length, like
+     * {@link Tlv#encodeLength(int, boolean)}.
+     *
+     * @param length        length to be encoded.
+     * @param allowLength80 code length of 128 bytes as simple length '80'.
+     * @return number of length bytes.
+     */
+    private static int lengthSize(int length, boolean allowLength80) {
+        if (((length & 0x7F) == length) ||
+            ((length == 0x80) && allowLength80))
+            return 1;
+        if ((length & 0xFF) == length)
+            return 2;
+        if ((length & 0xFFFF) == length)
+            return 3;
+        if ((length & 0xFFFFFF) == length)
+            return 4;
+        return 5;
+    }
+
+    /**
+     * Return the size of a DGI length, like {@link Tlv#encodeDgiLength(int)}.
+     *
+     * @param length length to be encoded.
+     * @return number of length bytes.
+     */
+    private static int dgiLengthSize(int length) {
+        return (length < 0xFF) ? 1 : 3;
+    }
+}
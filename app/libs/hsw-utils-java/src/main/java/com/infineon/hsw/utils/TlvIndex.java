@@ -0,0 +1,353 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.utils;
+
+import java.util.Arrays;
+
+/**
+ * Index of all elements of a BER or DGI encoded TLV structure. The index is
+ * built by one pass of a {@link TlvReader} and stores every element as a
+ * node number referring to primitive arrays (tag, offsets, length, first
+ * child, next sibling and parent), so searching nested tags does not create
+ * {@link Tlv} objects or lists. Nodes are numbered in order of appearance in
+ * the encoded data, node 0 is the first top level element.
+ * <p>
+ * Constructed BER elements are indexed recursively, DGI values are not. The
+ * input array is not copied and must not be modified while the index is in
+ * use.
+ */
+public class TlvIndex {
+    /** Node number returned if no node is found */
+    public static final int NOT_FOUND = -1;
+
+    /** Initial number of nodes before the arrays grow */
+    private static final int INITIAL_SIZE = 16;
+
+    /** Input byte array, not copied */
+    private final byte[] data;
+
+    /** Number of indexed nodes */
+    private int size;
+    /** Tags of the nodes */
+    private int[] tags = new int[INITIAL_SIZE];
+    /** Offsets of the nodes including tag and length */
+    private int[] elementOffsets = new int[INITIAL_SIZE];
+    /** Offsets of the values of the nodes */
+    private int[] valueOffsets = new int[INITIAL_SIZE];
+    /** Lengths of the values of the nodes */
+    private int[] valueLengths = new int[INITIAL_SIZE];
+    /** Lengths of the nodes including tag, length and end-of-contents */
+    private int[] elementLengths = new int[INITIAL_SIZE];
+    /** First child of the nodes or NOT_FOUND */
+    private int[] firstChildren = new int[INITIAL_SIZE];
+    /** Next sibling of the nodes or NOT_FOUND */
+    private int[] nextSiblings = new int[INITIAL_SIZE];
+    /** Parent of the nodes or NOT_FOUND for top level nodes */
+    private int[] parents = new int[INITIAL_SIZE];
+
+    /**
+     * Build the index of a BER encoded structure.
+     *
+     * @param data input byte array containing a TLV structure.
+     * @throws UtilException if the structure is not encoded correctly.
+     */
+    public TlvIndex(byte[] data) throws UtilException {
+        this(data, 0, (data != null) ? data.length : 0, false);
+    }
+
+    /**
+     * Build the index of a part of an input byte array.
+     *
+     * @param data   input byte array containing a TLV structure.
+     * @param offset offset of the TLV structure.
+     * @param length length of the TLV structure.
+     * @param dgi    if true, the structure is DGI encoded with 2 bytes tags,
+     *               otherwise BER encoded.
+     * @throws UtilException if the structure is not encoded correctly.
+     */
+    public TlvIndex(byte[] data, int offset, int length, boolean dgi)
+            throws UtilException {
+        TlvReader reader = new TlvReader(data, offset, length, dgi);
+        this.data = data;
+
+        // parent and last child of the current level, saved when entering
+        int[] stack = new int[2 * INITIAL_SIZE];
+        int parent = NOT_FOUND;
+        int last = NOT_FOUND;
+        while (true) {
+            if (reader.next()) {
+                int node = add(reader, parent);
+                if (last != NOT_FOUND) {
+                    nextSiblings[last] = node;
+                } else if (parent != NOT_FOUND) {
+                    firstChildren[parent] = node;
+                }
+                last = node;
+
+                if (reader.isConstructed()) {
+                    int top = 2 * reader.depth();
+                    if (top == stack.length)
+                        stack = Arrays.copyOf(stack, top * 2);
+                    stack[top] = parent;
+                    stack[top + 1] = last;
+
+                    reader.enter();
+                    parent = node;
+                    last = NOT_FOUND;
+                }
+            } else if (reader.depth() > 0) {
+                reader.exit();
+                int top = 2 * reader.depth();
+                parent = stack[top];
+                last = stack[top + 1];
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Return the input byte array. The array is not copied.
+     *
+     * @return input byte array.
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * Return the number of indexed nodes.
+     *
+     * @return number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the tag of a node.
+     *
+     * @param node node number.
+     * @return tag of the node.
+     */
+    public int tag(int node) {
+        checkNode(node);
+        return tags[node];
+    }
+
+    /**
+     * Return the offset of a node including tag and length in
+     * {@link #data()}.
+     *
+     * @param node node number.
+     * @return element offset.
+     */
+    public int elementOffset(int node) {
+        checkNode(node);
+        return elementOffsets[node];
+    }
+
+    /**
+     * Return the length of a node including tag, length and end-of-contents.
+     *
+     * @param node node number.
+     * @return element length.
+     */
+    public int elementLength(int node) {
+        checkNode(node);
+        return elementLengths[node];
+    }
+
+    /**
+     * Return the offset of the value of a node in {@link #data()}.
+     *
+     * @param node node number.
+     * @return value offset.
+     */
+    public int valueOffset(int node) {
+        checkNode(node);
+        return valueOffsets[node];
+    }
+
+    /**
+     * Return the length of the value of a node.
+     *
+     * @param node node number.
+     * @return value length.
+     */
+    public int valueLength(int node) {
+        checkNode(node);
+        return valueLengths[node];
+    }
+
+    /**
+     * Return the first child of a node.
+     *
+     * @param node node number.
+     * @return first child or {@link #NOT_FOUND} for primitive nodes.
+     */
+    public int firstChild(int node) {
+        checkNode(node);
+        return firstChildren[node];
+    }
+
+    /**
+     * Return the next sibling of a node.
+     *
+     * @param node node number.
+     * @return next sibling or {@link #NOT_FOUND} for the last node of a
+     *         level.
+     */
+    public int nextSibling(int node) {
+        checkNode(node);
+        return nextSiblings[node];
+    }
+
+    /**
+     * Return the parent of a node.
+     *
+     * @param node node number.
+     * @return parent or {@link #NOT_FOUND} for top level nodes.
+     */
+    public int parent(int node) {
+        checkNode(node);
+        return parents[node];
+    }
+
+    /**
+     * Copy the value of a node. Unlike the other methods this allocates a new
+     * array.
+     *
+     * @param node node number.
+     * @return copy of the value.
+     */
+    public byte[] copyValue(int node) {
+        checkNode(node);
+        return Arrays.copyOfRange(data, valueOffsets[node],
+                                  valueOffsets[node] + valueLengths[node]);
+    }
+
+    /**
+     * Find the first node with a path of tags starting at the top level, e.g.
+     * find(0x30, 0xA0, 0x04). If several nodes carry the tag of a path
+     * element, all of them are searched.
+     *
+     * @param path tags of the nodes from top level down to the result.
+     * @return first matching node or {@link #NOT_FOUND}.
+     */
+    public int find(int... path) {
+        if ((size == 0) || (path.length == 0))
+            return NOT_FOUND;
+        return find(0, path, 0);
+    }
+
+    /**
+     * Find the first node with a path of tags starting at the children of a
+     * node.
+     *
+     * @param node node number whose children are searched.
+     * @param path tags of the nodes from the children down to the result.
+     * @return first matching node or {@link #NOT_FOUND}.
+     */
+    public int findIn(int node, int... path) {
+        checkNode(node);
+        if ((firstChildren[node] == NOT_FOUND) || (path.length == 0))
+            return NOT_FOUND;
+        return find(firstChildren[node], path, 0);
+    }
+
+    /**
+     * Return the first node with a tag at any depth.
+     *
+     * @param tag tag to be searched.
+     * @return first node with the tag or {@link #NOT_FOUND}.
+     */
+    public int indexOf(int tag) {
+        return indexOf(tag, 0);
+    }
+
+    /**
+     * Return the next node with a tag at any depth, starting at a node. Calls
+     * with the previous result plus one iterate over all nodes with the tag.
+     *
+     * @param tag      tag to be searched.
+     * @param fromNode first node number to be checked.
+     * @return next node with the tag or {@link #NOT_FOUND}.
+     */
+    public int indexOf(int tag, int fromNode) {
+        for (int node = Math.max(fromNode, 0); node < size; node++) {
+            if (tags[node] == tag)
+                return node;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Search a path within a level and its descendants.
+     *
+     * @param first first node of the level.
+     * @param path  tags of the path.
+     * @param index index of the path element matching this level.
+     * @return first matching node or {@link #NOT_FOUND}.
+     */
+    private int find(int first, int[] path, int index) {
+        for (int node = first; node != NOT_FOUND; node = nextSiblings[node]) {
+            if (tags[node] != path[index])
+                continue;
+            if (index == path.length - 1)
+                return node;
+
+            if (firstChildren[node] != NOT_FOUND) {
+                int found = find(firstChildren[node], path, index + 1);
+                if (found != NOT_FOUND)
+                    return found;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Add the current element of a reader as new node.
+     *
+     * @param reader reader positioned at the element.
+     * @param parent parent node or {@link #NOT_FOUND}.
+     * @return number of the new node.
+     */
+    private int add(TlvReader reader, int parent) {
+        if (size == tags.length) {
+            int capacity = size * 2;
+            tags = Arrays.copyOf(tags, capacity);
+            elementOffsets = Arrays.copyOf(elementOffsets, capacity);
+            valueOffsets = Arrays.copyOf(valueOffsets, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+            elementLengths = Arrays.copyOf(elementLengths, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+
+        int node = size++;
+        tags[node] = reader.tag();
+        elementOffsets[node] = reader.elementOffset();
+        valueOffsets[node] = reader.valueOffset();
+        valueLengths[node] = reader.valueLength();
+        elementLengths[node] = reader.elementLength();
+        firstChildren[node] = NOT_FOUND;
+        nextSiblings[node] = NOT_FOUND;
+        parents[node] = parent;
+        return node;
+    }
+
+    /**
+     * Check a node number.
+     *
+     * @param node node number.
+     * @throws IndexOutOfBoundsException if the node does not exist.
+     */
+    private void checkNode(int node) {
+        if ((node < 0) || (node >= size))
+            throw new IndexOutOfBoundsException("Invalid TLV node " + node);
+    }
+}
@@ -212,25 +212,24 @@ public class TlvParser {
     }
 
     /**
-     * Parse the value in the given length and extract it as byte array.
+     * Parse the value in the given length and extract it as byte array. Values
+     * of indefinite length are returned as encoded, without the
+     * end-of-contents octets.
      *
-     * @param length length of value to parse.
+     * @param length length of value to parse or -1 for indefinite length.
      * @return byte array containing value part.
      * @throws UtilException if more data shall be parsed as available in the
      *                       structure.
      */
     public byte[] parseValue(int length) throws UtilException {
         if (indef && (length < 0)) {
-            TlvParser parser =
-                    new TlvParser(Arrays.copyOfRange(structure, offset,
-                                                     structure.length),
-                                  indef);
-            byte[] data = new byte[0];
-            for (Object o : parser.parseTlvStructure()) {
-                data = Utils.concat(data, Utils.toBytes(o));
-            }
-            offset += parser.offset;
-            return data;
+            // value is terminated by end-of-contents '0000'
+            length = new TlvReader(structure, offset,
+                                   structure.length - offset, false)
+                             .findEndOfContents();
+            offset += length + 2;
+            return Arrays.copyOfRange(structure, offset - length - 2,
+                                      offset - 2);
         }
 
         checkLength(length);
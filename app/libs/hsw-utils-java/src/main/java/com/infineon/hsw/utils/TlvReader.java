@@ -0,0 +1,465 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Pull parser for BER or DGI encoded TLV structures. In contrast to
+ * {@link TlvParser}, the reader neither copies the input nor creates objects
+ * for the parsed elements: {@link #next()} moves to the next element of the
+ * current level and {@link #tag()}, {@link #valueOffset()} and
+ * {@link #valueLength()} describe the element within {@link #data()}.
+ * Constructed values are parsed by {@link #enter()} and {@link #exit()}.
+ * BER values of indefinite length are supported, their end-of-contents
+ * octets are located by one forward scan and are not part of the value.
+ * <p>
+ * The input array must not be modified while it is read.
+ */
+public class TlvReader {
+    /** Initial number of nesting levels before the level stack grows */
+    private static final int INITIAL_DEPTH = 8;
+
+    /** Input byte array, not copied */
+    private final byte[] data;
+    /** True for DGI encoding, false for BER encoding */
+    private final boolean dgi;
+
+    /** End offset of the current level */
+    private int end;
+    /** Offset of the next element of the current level */
+    private int position;
+    /** Tag of the current element */
+    private int tag;
+    /** Offset of the first tag byte of the current element */
+    private int elementOffset = -1;
+    /** Offset of the value of the current element */
+    private int valueOffset;
+    /** Length of the value of the current element */
+    private int valueLength;
+    /** End offset of the current element including end-of-contents */
+    private int elementEnd;
+    /** True if the current element has an indefinite length */
+    private boolean indefinite;
+
+    /** End offsets of the enclosing levels */
+    private int[] ends = new int[INITIAL_DEPTH];
+    /** Offsets following the entered elements */
+    private int[] resumes = new int[INITIAL_DEPTH];
+    /** Nesting of indefinite length values during a scan */
+    private int[] scanStack = new int[INITIAL_DEPTH];
+    /** Value offsets of indefinite length values found by the last scan */
+    private int[] scanStarts = new int[INITIAL_DEPTH];
+    /** Value lengths of indefinite length values found by the last scan */
+    private int[] scanLengths = new int[INITIAL_DEPTH];
+    /** Number of indefinite length values found by the last scan */
+    private int scanCount;
+    /** Number of entered levels */
+    private int depth;
+
+    /**
+     * Constructor of a reader for BER encoded data.
+     *
+     * @param data input byte array containing a TLV structure.
+     */
+    public TlvReader(byte[] data) {
+        this(data, 0, (data != null) ? data.length : 0, false);
+    }
+
+    /**
+     * Constructor of a reader for a part of an input byte array.
+     *
+     * @param data   input byte array containing a TLV structure.
+     * @param offset offset of the TLV structure.
+     * @param length length of the TLV structure.
+     * @param dgi    if true, the structure is DGI encoded with 2 bytes tags,
+     *               otherwise BER encoded.
+     */
+    public TlvReader(byte[] data, int offset, int length, boolean dgi) {
+        if (data == null)
+            throw new IllegalArgumentException("No data");
+        if ((offset < 0) || (length < 0) ||
+            (offset + length > data.length) || (offset + length < 0))
+            throw new IllegalArgumentException("Invalid offset or length");
+
+        this.data = data;
+        this.dgi = dgi;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Constructor of a reader for the remaining bytes of a buffer. The
+     * position of the buffer is not changed. Buffers without accessible
+     * array are copied once.
+     *
+     * @param buffer buffer containing a TLV structure.
+     * @param dgi    if true, the structure is DGI encoded with 2 bytes tags,
+     *               otherwise BER encoded.
+     */
+    public TlvReader(ByteBuffer buffer, boolean dgi) {
+        if (buffer == null)
+            throw new IllegalArgumentException("No data");
+
+        if (buffer.hasArray()) {
+            this.data = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+        } else {
+            this.data = new byte[buffer.remaining()];
+            buffer.duplicate().get(this.data);
+            this.position = 0;
+        }
+        this.dgi = dgi;
+        this.end = this.position + buffer.remaining();
+    }
+
+    /**
+     * Move to the next element of the current level.
+     *
+     * @return true if an element has been read, false if the end of the
+     *         current level is reached.
+     * @throws UtilException if the element is not encoded correctly or
+     *                       exceeds the current level.
+     */
+    public boolean next() throws UtilException {
+        if (position >= end) {
+            elementOffset = -1;
+            return false;
+        }
+
+        elementOffset = position;
+        if (dgi) {
+            readDgiTag();
+            readDgiLength();
+        } else {
+            readTag();
+            readLength();
+        }
+        if (valueLength > end - position)
+            throw new UtilException("Invalid TLV structure");
+
+        valueOffset = position;
+        elementEnd = position + valueLength + (indefinite ? 2 : 0);
+        position = elementEnd;
+        return true;
+    }
+
+    /**
+     * Parse the value of the current element as nested TLV structure. The
+     * following calls of {@link #next()} return the nested elements.
+     *
+     * @throws UtilException if there is no current element.
+     */
+    public void enter() throws UtilException {
+        checkElement();
+        if (depth == ends.length) {
+            ends = Arrays.copyOf(ends, depth * 2);
+            resumes = Arrays.copyOf(resumes, depth * 2);
+        }
+
+        resumes[depth] = elementEnd;
+        ends[depth++] = end;
+        end = valueOffset + valueLength;
+        position = valueOffset;
+        elementOffset = -1;
+    }
+
+    /**
+     * Leave the level entered by {@link #enter()}. Remaining elements of the
+     * level are skipped and the following call of {@link #next()} returns
+     * the element following the constructed element.
+     *
+     * @throws UtilException if no level has been entered.
+     */
+    public void exit() throws UtilException {
+        if (depth == 0)
+            throw new UtilException("No TLV level entered");
+
+        position = resumes[--depth];
+        end = ends[depth];
+        elementOffset = -1;
+    }
+
+    /**
+     * Return the number of entered levels.
+     *
+     * @return nesting depth, 0 for the top level.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Return the tag of the current element.
+     *
+     * @return tag of the current element.
+     */
+    public int tag() {
+        return tag;
+    }
+
+    /**
+     * Check if the current element is constructed. DGIs are never flagged as
+     * constructed, but may still be entered.
+     *
+     * @return true if the constructed bit of a BER tag is set.
+     */
+    public boolean isConstructed() {
+        if (dgi || (elementOffset < 0))
+            return false;
+        return (data[elementOffset] & 0x20) != 0;
+    }
+
+    /**
+     * Check if the current element is encoded with indefinite length.
+     *
+     * @return true if the value is terminated by end-of-contents octets.
+     */
+    public boolean isIndefinite() {
+        return indefinite;
+    }
+
+    /**
+     * Return the offset of the value of the current element in
+     * {@link #data()}.
+     *
+     * @return value offset.
+     */
+    public int valueOffset() {
+        return valueOffset;
+    }
+
+    /**
+     * Return the length of the value of the current element.
+     *
+     * @return value length.
+     */
+    public int valueLength() {
+        return valueLength;
+    }
+
+    /**
+     * Return the offset of the current element including tag and length in
+     * {@link #data()}.
+     *
+     * @return element offset or -1 if there is no current element.
+     */
+    public int elementOffset() {
+        return elementOffset;
+    }
+
+    /**
+     * Return the length of the current element including tag, length and
+     * end-of-contents octets.
+     *
+     * @return element length.
+     */
+    public int elementLength() {
+        return elementEnd - elementOffset;
+    }
+
+    /**
+     * Return the input byte array. The array is not copied.
+     *
+     * @return input byte array.
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * Copy the value of the current element. Unlike the other methods this
+     * allocates a new array.
+     *
+     * @return copy of the value.
+     * @throws UtilException if there is no current element.
+     */
+    public byte[] copyValue() throws UtilException {
+        checkElement();
+        return Arrays.copyOfRange(data, valueOffset, valueOffset + valueLength);
+    }
+
+    /**
+     * Check if an element has been read on the current level.
+     *
+     * @throws UtilException if there is no current element.
+     */
+    private void checkElement() throws UtilException {
+        if (elementOffset < 0)
+            throw new UtilException("No current TLV element");
+    }
+
+    /**
+     * Check that enough bytes are left on the current level.
+     *
+     * @param length number of bytes required.
+     * @throws UtilException if less bytes are left.
+     */
+    private void checkLength(int length) throws UtilException {
+        if (length > end - position)
+            throw new UtilException("Invalid TLV structure");
+    }
+
+    /**
+     * Read a BER tag of up to 3 bytes, like {@link TlvParser#parseTag()}.
+     *
+     * @throws UtilException if the tag exceeds the current level.
+     */
+    private void readTag() throws UtilException {
+        checkLength(1);
+        tag = data[position++] & 0xFF;
+        // check if two byte tag
+        if ((tag & 0x1F) == 0x1F) {
+            checkLength(1);
+            tag = (tag << 8) | (data[position++] & 0xFF);
+            // check if three byte tag
+            if ((tag & 0x80) != 0) {
+                checkLength(1);
+                tag = (tag << 8) | (data[position++] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Read a BER length. For an indefinite length the value length is
+     * determined by {@link #findEndOfContents()}.
+     *
+     * @throws UtilException if the length is invalid.
+     */
+    private void readLength() throws UtilException {
+        valueLength = decodeLength();
+        indefinite = (valueLength < 0);
+        if (indefinite) {
+            valueLength = findEndOfContents();
+        }
+    }
+
+    /**
+     * Decode a BER length of up to 4 subsequent bytes.
+     *
+     * @return decoded length or -1 for an indefinite length.
+     * @throws UtilException if the length is invalid.
+     */
+    private int decodeLength() throws UtilException {
+        checkLength(1);
+        int first = data[position++] & 0xFF;
+        if (first < 0x80) {
+            return first;
+        }
+
+        int count = first & 0x7F;
+        if (count == 0)
+            return -1;
+        if (count > 4)
+            throw new UtilException("Unsupported TLV length");
+        checkLength(count);
+
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length = (length << 8) | (data[position++] & 0xFF);
+        }
+        if (length < 0)
+            throw new UtilException("Unsupported TLV length");
+        return length;
+    }
+
+    /**
+     * Find the end-of-contents octets of an indefinite length value starting
+     * at the current position. Definite length elements are skipped, nested
+     * indefinite length elements are tracked by an explicit stack and their
+     * value lengths are kept, so entering them later does not scan again.
+     * The position is not changed.
+     *
+     * @return length of the value without end-of-contents octets.
+     * @throws UtilException if the end-of-contents octets are missing.
+     */
+    /* default */ int findEndOfContents() throws UtilException {
+        int index = Arrays.binarySearch(scanStarts, 0, scanCount, position);
+        if (index >= 0) {
+            return scanLengths[index];
+        }
+
+        int start = position;
+        int elementTag = tag;
+        boolean found = false;
+        scanCount = 0;
+        try {
+            int nesting = 0;
+            scanStack[nesting++] = addScanEntry(start);
+            while (true) {
+                if (position >= end)
+                    throw new UtilException("Missing end-of-contents");
+
+                int eocOffset = position;
+                readTag();
+                int length = decodeLength();
+                if ((tag == 0) && (length == 0)) {
+                    index = scanStack[--nesting];
+                    scanLengths[index] = eocOffset - scanStarts[index];
+                    if (nesting == 0) {
+                        found = true;
+                        return scanLengths[index];
+                    }
+                } else if (length < 0) {
+                    if (nesting == scanStack.length)
+                        scanStack = Arrays.copyOf(scanStack, nesting * 2);
+                    scanStack[nesting++] = addScanEntry(position);
+                } else {
+                    checkLength(length);
+                    position += length;
+                }
+            }
+        } finally {
+            position = start;
+            tag = elementTag;
+            if (!found)
+                scanCount = 0;
+        }
+    }
+
+    /**
+     * Add an indefinite length value to the scan results.
+     *
+     * @param start offset of the value.
+     * @return index of the new entry.
+     */
+    private int addScanEntry(int start) {
+        if (scanCount == scanStarts.length) {
+            scanStarts = Arrays.copyOf(scanStarts, scanCount * 2);
+            scanLengths = Arrays.copyOf(scanLengths, scanCount * 2);
+        }
+        scanStarts[scanCount] = start;
+        return scanCount++;
+    }
+
+    /**
+     * Read a 2 bytes DGI tag.
+     *
+     * @throws UtilException if the tag exceeds the current level.
+     */
+    private void readDgiTag() throws UtilException {
+        checkLength(2);
+        tag = ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+        position += 2;
+    }
+
+    /**
+     * Read a DGI length, either 1 byte or 'FF' followed by 2 bytes.
+     *
+     * @throws UtilException if the length exceeds the current level.
+     */
+    private void readDgiLength() throws UtilException {
+        checkLength(1);
+        int length = data[position++] & 0xFF;
+        if (length == 0xFF) {
+            checkLength(2);
+            length = ((data[position] & 0xFF) << 8) |
+                     (data[position + 1] & 0xFF);
+            position += 2;
+        }
+        valueLength = length;
+    }
+}
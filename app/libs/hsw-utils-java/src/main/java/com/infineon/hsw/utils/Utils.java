@@ -643,7 +643,7 @@ public final class Utils {
 
     /**
      * Computes 16-bits CRC over given input byte array. Eg: as used in
-     * ISO-14443-3 Type-A CRC.
+     * ISO-14443-3 Type-A CRC. See {@link Crc16} for incremental computation.
      *
      * @param initValue  Initial value to be considered
      * @param inputData  Input byte stream
@@ -656,48 +656,8 @@ public final class Utils {
         if (inputData == null) {
             throw new UtilException("input data cannot be null");
         }
-        byte curByte;
-        byte[] pDat = inputData.clone();
-        int len = inputData.length;
-        short crc = initValue;
-        int pDatInc = 0;
-        byte first;
-        byte second;
-        if (invertBits) {
-            while (len > 0) {
-                curByte = reverseBitsOrder(pDat[pDatInc]);
-                pDatInc++;
-                crc = update(curByte, crc);
-                len--;
-            }
-
-            first = reverseBitsOrder((byte) (crc & 0xFF));
-            second = reverseBitsOrder((byte) ((crc >> 8) & 0xFF));
-        } else {
-            while (len > 0) {
-                curByte = pDat[pDatInc];
-                pDatInc++;
-                crc = update(curByte, crc);
-                len--;
-            }
-
-            first = (byte) (crc & 0xFF);
-            second = (byte) ((crc >> 8) & 0xFF);
-        }
         // for SAM Key Files Attributes
-        return new byte[] { second, first };
-    }
-
-    private static short update(int dataByte, int crc) {
-        dataByte = (dataByte ^ (crc & 0x00FF));
-        dataByte = dataByte & 0x00FF;
-        dataByte = (dataByte ^ (dataByte << 4));
-        dataByte = dataByte & 0x00FF;
-        crc = crc & 0x0000FFFF;
-        crc = ((crc >> 8) ^ (dataByte << 8) ^ (dataByte << 3) ^
-               (dataByte >> 4));
-        crc = crc & 0xFFFF;
-        return (short) crc;
+        return new Crc16(initValue, invertBits).update(inputData).getBytes();
     }
 
     /**
@@ -705,7 +665,11 @@ public final class Utils {
      *
      * @param ch byte for which the bits to be reverted
      * @return resulting byte
+     * @deprecated No longer used by
+     *             {@link #computeCRC(short, byte[], boolean)}, use
+     *             {@link Integer#reverse(int)} instead.
      */
+    @Deprecated
     public static byte reverseBitsOrder(byte ch) {
         // java way to reverse the bits in the byte
         return (byte) (Integer.reverse(ch) >>> (Integer.SIZE - Byte.SIZE));
@@ -0,0 +1,311 @@
+// SPDX-FileCopyrightText: 2024 Infineon Technologies AG
+//
+// SPDX-License-Identifier: MIT
+
+package com.infineon.hsw.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Compares the table driven {@link Crc16} with bitwise reference
+ * implementations.
+ */
+public class Crc16Test {
+    /**
+     * Reflected polynomial x^16 + x^12 + x^5 + 1 for LSB first computation.
+     */
+    private static final int POLYNOMIAL_REFLECTED = 0x8408;
+
+    /**
+     * Polynomial x^16 + x^12 + x^5 + 1 for MSB first computation.
+     */
+    private static final int POLYNOMIAL = 0x1021;
+
+    /**
+     * Number of random inputs per test.
+     */
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Initial values used for random inputs.
+     */
+    private static final short[] INIT_VALUES = { Crc16.INIT_TYPE_A,
+                                                 Crc16.INIT_TYPE_B, 0,
+                                                 (short) 0x1D0F };
+
+    /**
+     * Random generator with fixed seed to get reproducible inputs.
+     */
+    private final Random random = new Random(0x14443);
+
+    /**
+     * Checks CRC_A against the examples of ISO/IEC 14443-3.
+     */
+    @Test
+    public void typeAMatchesIsoExamples() {
+        // CRC_A is transmitted LSB first: 00 00 A0 1E and 12 34 26 CF.
+        assertEquals(0x1EA0, Crc16.typeA()
+                                     .update(new byte[] { 0x00, 0x00 })
+                                     .getValue());
+        assertEquals(0xCF26, Crc16.typeA()
+                                     .update(new byte[] { 0x12, 0x34 })
+                                     .getValue());
+    }
+
+    /**
+     * Checks CRC_B against the examples of ISO/IEC 14443-3.
+     */
+    @Test
+    public void typeBMatchesIsoExamples() {
+        // CRC_B is transmitted LSB first: 00 00 00 CC C6 and 0F AA FF FC D1.
+        assertEquals(0xC6CC, Crc16.typeB()
+                                     .update(new byte[] { 0x00, 0x00, 0x00 })
+                                     .getValue());
+        assertEquals(0xD1FC,
+                     Crc16.typeB()
+                             .update(new byte[] { 0x0F, (byte) 0xAA,
+                                                  (byte) 0xFF })
+                             .getValue());
+    }
+
+    /**
+     * Compares LSB first computation with the bitwise reference.
+     */
+    @Test
+    public void lsbFirstMatchesBitwiseReference() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] data = randomData();
+            short init = INIT_VALUES[i % INIT_VALUES.length];
+            short xor = (short) random.nextInt();
+
+            assertEquals(referenceLsbFirst(init, data) ^ (xor & 0xFFFF),
+                         new Crc16(init, xor, false).update(data).getValue());
+        }
+    }
+
+    /**
+     * Compares computation with inverted bits with the bitwise MSB first
+     * reference.
+     */
+    @Test
+    public void invertedBitsMatchMsbFirstReference() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] data = randomData();
+            short init = INIT_VALUES[i % INIT_VALUES.length];
+
+            // Reversing data and result bits equals MSB first computation
+            // with reversed initial value.
+            int reversedInit = Integer.reverse(init & 0xFFFF) >>> 16;
+            assertEquals(referenceMsbFirst(reversedInit, data),
+                         new Crc16(init, true).update(data).getValue());
+        }
+    }
+
+    /**
+     * Compares the CRC bytes with the original byte wise computation.
+     *
+     * @throws UtilException if the CRC cannot be computed.
+     */
+    @Test
+    public void bytesMatchComputeCrcReference() throws UtilException {
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] data = randomData();
+            short init = INIT_VALUES[i % INIT_VALUES.length];
+            boolean invertBits = (i & 1) != 0;
+
+            byte[] expected = referenceComputeCrc(init, data, invertBits);
+            assertArrayEquals(expected, new Crc16(init, invertBits).update(data)
+                                                .getBytes());
+            assertArrayEquals(expected,
+                              Utils.computeCRC(init, data, invertBits));
+        }
+    }
+
+    /**
+     * Checks that splitting the data into several updates does not change
+     * the result.
+     */
+    @Test
+    public void incrementalUpdatesMatchSingleUpdate() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] data = randomData();
+            boolean invertBits = (i & 1) != 0;
+            Crc16 expected = new Crc16(Crc16.INIT_TYPE_A, invertBits)
+                                     .update(data);
+
+            // Splits the data at random points and adds single bytes in
+            // between.
+            Crc16 crc = new Crc16(Crc16.INIT_TYPE_A, invertBits);
+            int offset = 0;
+            while (offset < data.length) {
+                if (random.nextInt(4) == 0) {
+                    crc.update(data[offset++]);
+                } else {
+                    int length = random.nextInt(data.length - offset + 1);
+                    crc.update(data, offset, length);
+                    offset += length;
+                }
+            }
+            assertEquals(expected.getValue(), crc.getValue());
+            assertArrayEquals(expected.getBytes(), crc.getBytes());
+        }
+    }
+
+    /**
+     * Checks that an update with offset only processes the given range.
+     */
+    @Test
+    public void offsetUpdateIgnoresSurroundingBytes() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] data = randomData();
+            byte[] padded = new byte[data.length + 16];
+            random.nextBytes(padded);
+            int offset = random.nextInt(17);
+            System.arraycopy(data, 0, padded, offset, data.length);
+
+            assertEquals(Crc16.typeB().update(data).getValue(),
+                         Crc16.typeB()
+                                 .update(padded, offset, data.length)
+                                 .getValue());
+        }
+    }
+
+    /**
+     * Checks that heap and direct buffers give the same result as arrays.
+     */
+    @Test
+    public void bufferUpdateMatchesArrayUpdate() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] data = randomData();
+            int expected = Crc16.typeA().update(data).getValue();
+
+            // Heap buffer with array offset, position and limit.
+            byte[] padded = new byte[data.length + 12];
+            random.nextBytes(padded);
+            System.arraycopy(data, 0, padded, 8, data.length);
+            ByteBuffer heap = ByteBuffer.wrap(padded, 4, data.length + 8)
+                                      .slice();
+            heap.position(4).limit(4 + data.length);
+            assertEquals(expected, Crc16.typeA().update(heap).getValue());
+            assertEquals(heap.limit(), heap.position());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 4);
+            direct.position(2);
+            direct.put(data).flip().position(2);
+            assertEquals(expected, Crc16.typeA().update(direct).getValue());
+            assertEquals(direct.limit(), direct.position());
+        }
+    }
+
+    /**
+     * Checks that reset restores the initial value.
+     */
+    @Test
+    public void resetRestoresInitialValue() {
+        byte[] data = randomData();
+        Crc16 crc = Crc16.typeB().update(new byte[] { 1, 2, 3 });
+        assertEquals(Crc16.typeB().update(data).getValue(),
+                     crc.reset().update(data).getValue());
+    }
+
+    /**
+     * Checks that a range exceeding the array is rejected.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void invalidRangeIsRejected() {
+        Crc16.typeA().update(new byte[4], 2, 3);
+    }
+
+    /**
+     * Returns random data of random length including the empty array.
+     *
+     * @return random data.
+     */
+    private byte[] randomData() {
+        byte[] data = new byte[random.nextInt(300)];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Computes the CRC bit by bit LSB first.
+     *
+     * @param init initial value.
+     * @param data data bytes.
+     * @return CRC register.
+     */
+    private static int referenceLsbFirst(int init, byte[] data) {
+        int crc = init & 0xFFFF;
+        for (byte b : data) {
+            crc ^= b & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 1) != 0) ? (crc >>> 1) ^ POLYNOMIAL_REFLECTED
+                                       : crc >>> 1;
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * Computes the CRC bit by bit MSB first.
+     *
+     * @param init initial value.
+     * @param data data bytes.
+     * @return CRC register.
+     */
+    private static int referenceMsbFirst(int init, byte[] data) {
+        int crc = init & 0xFFFF;
+        for (byte b : data) {
+            crc ^= (b & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 0x8000) != 0) ? (crc << 1) ^ POLYNOMIAL
+                                            : crc << 1;
+                crc &= 0xFFFF;
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * Computes the CRC bytes like the original byte wise
+     * {@link Utils#computeCRC(short, byte[], boolean)}: with bit inversion
+     * the bits of every data byte and of both result bytes are reversed, the
+     * most significant byte comes first.
+     *
+     * @param init       initial value.
+     * @param data       data bytes.
+     * @param invertBits true if the bits are reversed.
+     * @return CRC bytes.
+     */
+    private static byte[] referenceComputeCrc(short init, byte[] data,
+                                              boolean invertBits) {
+        byte[] input = data.clone();
+        if (invertBits) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = reverse(input[i]);
+            }
+        }
+        int crc = referenceLsbFirst(init, input);
+        byte high = (byte) (crc >>> 8);
+        byte low = (byte) crc;
+        if (invertBits) {
+            return new byte[] { reverse(high), reverse(low) };
+        }
+        return new byte[] { high, low };
+    }
+
+    /**
+     * Reverses the bit order of a byte.
+     *
+     * @param value byte to be reversed.
+     * @return reversed byte.
+     */
+    private static byte reverse(byte value) {
+        return (byte) (Integer.reverse(value & 0xFF) >>> 24);
+    }
+}
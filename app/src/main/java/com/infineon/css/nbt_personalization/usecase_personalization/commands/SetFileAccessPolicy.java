@@ -22,6 +22,8 @@ import com.infineon.hsw.apdu.nbt.model.FileAccessPolicyException;
 import com.infineon.hsw.utils.UtilException;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * The SetFileAccessPolicy class generates and sends the commands to configure all single
@@ -109,26 +111,12 @@ public class SetFileAccessPolicy implements ICommandFlow {
         NbtApduResponse apduResponse = commandSet.selectApplication();
         apduResponse.checkOK();
 
-        apduResponse = commandSet.updateFap(FAP_CC);
-        apduResponse.checkOK();
-
-        apduResponse = commandSet.updateFap(FAP_NDEF);
-        apduResponse.checkOK();
-
-        apduResponse = commandSet.updateFap(FAP_FAP);
-        apduResponse.checkOK();
-
-        apduResponse = commandSet.updateFap(FAP_FILE1);
-        apduResponse.checkOK();
-
-        apduResponse = commandSet.updateFap(FAP_FILE2);
-        apduResponse.checkOK();
-
-        apduResponse = commandSet.updateFap(FAP_FILE3);
-        apduResponse.checkOK();
-
-        apduResponse = commandSet.updateFap(FAP_FILE4);
-        apduResponse.checkOK();
+        Map<Short, NbtApduResponse> apduResponses = commandSet.updateFapList(
+                Arrays.asList(FAP_CC, FAP_NDEF, FAP_FAP, FAP_FILE1, FAP_FILE2, FAP_FILE3,
+                        FAP_FILE4), null);
+        for (NbtApduResponse fapResponse : apduResponses.values()) {
+            fapResponse.checkOK();
+        }
 
         //Updating the CC file according to the FAP
         WriteCcFile writeCcFile = new WriteCcFile();
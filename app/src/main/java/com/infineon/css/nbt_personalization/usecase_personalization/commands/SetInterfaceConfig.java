@@ -18,6 +18,9 @@ import com.infineon.hsw.apdu.nbt.NbtApduResponse;
 import com.infineon.hsw.apdu.nbt.NbtCommandSetConfig;
 import com.infineon.hsw.utils.UtilException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * The SetInterfaceConfig class generates and sends the commands to configure the interface
  * configuration of a NBT sample, it only needs to be provided with a ApduChannel and
@@ -48,7 +51,7 @@ public class SetInterfaceConfig implements ICommandFlow {
     private byte interfaceConfig = NBT_INT_NFC_I2C;
 
     /**
-     * Writes the interface and gpio settings accordingly
+     * Writes the interface and gpio settings accordingly, skipping settings already written during the session
      *
      * @param apduChannel APDU channel to the NFC Interface
      * @throws UtilException Thrown by libraries utils
@@ -56,13 +59,13 @@ public class SetInterfaceConfig implements ICommandFlow {
      */
     public void execute(@NonNull ApduChannel apduChannel) throws ApduException, UtilException {
         NbtCommandSetConfig configCommandSet = new NbtCommandSetConfig(apduChannel, 0);
-        NbtApduResponse apduResponse = configCommandSet.selectConfiguratorApplication();
-        apduResponse.checkOK();
 
-        apduResponse = configCommandSet.setConfigData(TAG_GPIO_FUNCTION, gpioConfig);
-        apduResponse.checkOK();
+        // Values already written during this session are skipped
+        Map<Short, byte[]> config = new LinkedHashMap<>();
+        config.put(TAG_GPIO_FUNCTION, new byte[]{gpioConfig});
+        config.put(TAG_COMM_IF_ENABLE, new byte[]{interfaceConfig});
 
-        apduResponse = configCommandSet.setConfigData(TAG_COMM_IF_ENABLE, interfaceConfig);
+        NbtApduResponse apduResponse = configCommandSet.applyConfig(config);
         apduResponse.checkOK();
     }
 
@@ -0,0 +1,71 @@
+// SPDX-FileCopyrightText: Copyright (c) 2024-2025 Infineon Technologies AG
+// SPDX-License-Identifier: MIT
+
+package com.infineon.css.nbt_personalization.usecase_personalization.states;
+
+import androidx.annotation.NonNull;
+
+import com.infineon.css.nbt_personalization.usecase_personalization.states.usecases.IState;
+import com.infineon.hsw.apdu.ApduChannel;
+import com.infineon.hsw.apdu.ApduException;
+import com.infineon.hsw.apdu.ApduScript;
+import com.infineon.hsw.apdu.ApduScriptRecorder;
+import com.infineon.hsw.apdu.nbt.model.FileAccessPolicyException;
+import com.infineon.hsw.channel.IChannel;
+import com.infineon.hsw.ndef.exceptions.NdefException;
+import com.infineon.hsw.utils.UtilException;
+
+import java.io.IOException;
+import java.security.cert.CertificateException;
+
+/**
+ * Compiles a state into an APDU script to personalize many identical NBT samples. The state is
+ * executed once with the first sample, all further samples are personalized by replaying the
+ * recorded APDU commands without building the state configuration, NDEF message or command sets
+ * again.
+ */
+public class StateScript {
+
+    /**
+     * Executes a state with a NBT sample and records the exchanged commands
+     * - Connects to the sample
+     * - Executes the state
+     * - Disconnects from the sample
+     *
+     * @param state   State to be compiled, must not depend on sample individual data
+     * @param channel Communication channel to the first NBT sample
+     * @return Script personalizing further samples to the same state
+     * @throws UtilException             Thrown by libraries utils
+     * @throws ApduException             Thrown by command set of APDU library
+     * @throws FileAccessPolicyException Thrown by APDU library in case of FAP error
+     * @throws IOException               Signals that an I/O exception of some sort has occurred
+     * @throws NdefException             An exception in the NDEF file specific library occurred
+     * @throws CertificateException      Thrown if parsing of certificate fails
+     */
+    public static ApduScript compile(@NonNull IState state, @NonNull IChannel channel) throws UtilException, ApduException, CertificateException, IOException, FileAccessPolicyException, NdefException {
+
+        ApduScriptRecorder recorder = new ApduScriptRecorder(channel);
+        recorder.connect();
+        state.execute(recorder);
+        recorder.disconnect();
+
+        return recorder.getScript();
+    }
+
+    /**
+     * Personalizes a NBT sample by replaying a compiled script
+     * - Connects to the sample
+     * - Sends all commands of the script and checks their status words
+     * - Disconnects from the sample
+     *
+     * @param script      Script compiled by {@link #compile(IState, IChannel)}
+     * @param apduChannel APDU specific channel to the NBT sample
+     * @throws ApduException Thrown in case of communication errors or unexpected status words
+     */
+    public static void replay(@NonNull ApduScript script, @NonNull ApduChannel apduChannel) throws ApduException {
+
+        apduChannel.connect();
+        script.replay(apduChannel);
+        apduChannel.disconnect();
+    }
+}